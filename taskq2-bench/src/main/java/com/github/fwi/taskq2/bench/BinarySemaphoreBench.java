@@ -0,0 +1,72 @@
+package com.github.fwi.taskq2.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.fwi.taskq2.util.BinarySemaphore;
+
+/**
+ * Signalling with a {@link BinarySemaphore}, as done between task producers and the dispatcher.
+ * <br><tt>releaseAcquire</tt>: release and acquire in one thread (no waiting).
+ * <br><tt>pingPong</tt>: two threads that wake each other up (waiting and wake-up cost).
+ * A timed acquire is used so that a thread never hangs when the other thread stops at the end of an iteration.
+ * <br>Run with: <tt>java -jar taskq2-bench/target/benchmarks.jar BinarySemaphoreBench</tt>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinarySemaphoreBench {
+
+	@State(Scope.Group)
+	public static class Signals {
+
+		public final BinarySemaphore ping = new BinarySemaphore();
+		public final BinarySemaphore pong = new BinarySemaphore();
+	}
+
+	@State(Scope.Thread)
+	public static class Signal {
+
+		public final BinarySemaphore semaphore = new BinarySemaphore();
+	}
+
+	@Benchmark
+	public boolean releaseAcquire(Signal s) {
+
+		s.semaphore.release();
+		return s.semaphore.tryAcquire();
+	}
+
+	@Benchmark
+	@Group("pingPong")
+	@GroupThreads(1)
+	public boolean ping(Signals s) throws InterruptedException {
+
+		s.ping.release();
+		return s.pong.tryAcquire(10L, TimeUnit.MILLISECONDS);
+	}
+
+	@Benchmark
+	@Group("pingPong")
+	@GroupThreads(1)
+	public boolean pong(Signals s) throws InterruptedException {
+
+		boolean acquired = s.ping.tryAcquire(10L, TimeUnit.MILLISECONDS);
+		s.pong.release();
+		return acquired;
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.github.fwi.taskq2.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.fwi.taskq2.TaskHandler;
+import com.github.fwi.taskq2.TqFifo;
+import com.github.fwi.taskq2.TqGroup;
+
+/**
+ * End-to-end dispatch in a task queue group with a no-op task handler.
+ * <br><tt>latency</tt>: time from adding a task until the task is done (one task at a time).
+ * <br><tt>throughput</tt>: add a burst of tasks and wait until all tasks are done.
+ * <br>Run with: <tt>java -jar taskq2-bench/target/benchmarks.jar DispatchBench</tt>
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchBench {
+
+	public static final int BURST = 1000;
+
+	@State(Scope.Benchmark)
+	public static class Group {
+
+		@Param({ "false", "true" })
+		public boolean workerPull;
+
+		@Param({ "4" })
+		public int maxConcurrent;
+
+		public TqGroup tgroup;
+
+		@Setup(Level.Trial)
+		public void setup() {
+
+			tgroup = new TqGroup();
+			tgroup.setWorkerPull(workerPull);
+			TqFifo tq = new TqFifo("q", null);
+			tq.setMaxConcurrent(maxConcurrent);
+			tq.setTasksHandler(new TaskHandler() {
+				@Override
+				public void onTask(Object tdata) {}
+			});
+			tgroup.addQueue(tq);
+			tgroup.start();
+		}
+
+		@TearDown(Level.Trial)
+		public void stop() {
+			tgroup.stop();
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public Object latency(Group g) {
+		return g.tgroup.submit("q", Boolean.TRUE).join();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@OperationsPerInvocation(BURST)
+	public boolean throughput(Group g) throws InterruptedException {
+
+		for (int i = 0; i < BURST; i++) {
+			g.tgroup.addTask("q", Boolean.TRUE);
+		}
+		return g.tgroup.awaitAllTasksDone(10L, TimeUnit.SECONDS);
+	}
+
+}
@@ -0,0 +1,132 @@
+package com.github.fwi.taskq2.bench;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.fwi.taskq2.TaskHandler;
+import com.github.fwi.taskq2.TqGroup;
+import com.github.fwi.taskq2.TqQos;
+
+/**
+ * Fairness and throughput of {@link TqQos} with many Qos-keys and a skewed load:
+ * half of all tasks are for one "hot" Qos-key, the other half is spread over all other Qos-keys.
+ * <br><tt>maxPerKey</tt> 0 means no limit per Qos-key (the hot key can take all slots of the queue).
+ * <br>Run with: <tt>java -jar taskq2-bench/target/benchmarks.jar QosFairnessBench</tt>
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QosFairnessBench {
+
+	public static final int TASKS = 10_000;
+	public static final String HOT_KEY = "hot";
+
+	@State(Scope.Benchmark)
+	public static class SkewedQueue {
+
+		@Param({ "0", "2" })
+		public int maxPerKey;
+
+		@Param({ "10000" })
+		public int keys;
+
+		@Param({ "8" })
+		public int maxConcurrent;
+
+		/** CPU work per task, see {@link Blackhole#consumeCPU(long)}. */
+		@Param({ "1000", "50000" })
+		public int taskTokens;
+
+		public TqGroup tgroup;
+		public TqQos tq;
+		public String[] qosKeys;
+		public final Semaphore tasksDone = new Semaphore(0);
+
+		@Setup(Level.Trial)
+		public void setup() {
+
+			qosKeys = new String[keys];
+			for (int i = 0; i < keys; i++) {
+				qosKeys[i] = "customer-" + i;
+			}
+			tq = new TqQos("skewed", null);
+			tq.setMaxConcurrent(maxConcurrent);
+			tq.setMaxConcurrentPerQosKey(maxPerKey);
+			tq.setTasksHandler(new TaskHandler() {
+				@Override
+				public void onTask(Object tdata) {
+					if (tdata instanceof CountDownLatch) {
+						((CountDownLatch) tdata).countDown();
+					}
+					Blackhole.consumeCPU(taskTokens);
+					tasksDone.release();
+				}
+			});
+			tgroup = new TqGroup();
+			tgroup.addQueue(tq);
+			tgroup.start();
+		}
+
+		@TearDown(Level.Trial)
+		public void stop() {
+			tgroup.stop();
+		}
+
+		public String nextKey() {
+
+			ThreadLocalRandom r = ThreadLocalRandom.current();
+			return (r.nextBoolean() ? HOT_KEY : qosKeys[r.nextInt(keys)]);
+		}
+	}
+
+	/**
+	 * Adds {@link #TASKS} tasks with a skewed Qos-key distribution and waits for all tasks to finish.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@OperationsPerInvocation(TASKS)
+	public void skewedThroughput(SkewedQueue q) throws InterruptedException {
+
+		for (int i = 0; i < TASKS; i++) {
+			q.tgroup.addTask(q.tq.getName(), i, q.nextKey());
+		}
+		q.tasksDone.acquire(TASKS);
+	}
+
+	/**
+	 * Time it takes for a task with a "cold" Qos-key to start while the hot Qos-key has a backlog of tasks.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void coldKeyLatency(SkewedQueue q) throws InterruptedException {
+
+		int backlog = q.tq.getSize();
+		for (int i = backlog; i < 100; i++) {
+			q.tgroup.addTask(q.tq.getName(), i, HOT_KEY);
+		}
+		CountDownLatch started = new CountDownLatch(1);
+		q.tgroup.addTask(q.tq.getName(), started, q.qosKeys[ThreadLocalRandom.current().nextInt(q.keys)]);
+		started.await();
+	}
+
+}
@@ -0,0 +1,134 @@
+package com.github.fwi.taskq2.bench;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.fwi.taskq2.TqBase;
+import com.github.fwi.taskq2.TqEntry;
+import com.github.fwi.taskq2.TqQos;
+
+/**
+ * Compares {@link TqQos} with the original implementation ({@link LegacyTqQos}).
+ * <br>Run with: <tt>java -jar taskq2-bench/target/benchmarks.jar QosQueueBench</tt>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QosQueueBench {
+
+	@State(Scope.Benchmark)
+	public static class QosQueue {
+
+		@Param({ "TqQos", "LegacyTqQos" })
+		public String impl;
+
+		@Param({ "100", "10000", "50000" })
+		public int keys;
+
+		public TqBase tq;
+		public String[] qosKeys;
+
+		@Setup(Level.Trial)
+		public void setup() {
+
+			tq = createQueue(impl);
+			qosKeys = new String[keys];
+			for (int i = 0; i < keys; i++) {
+				qosKeys[i] = "customer-" + i;
+			}
+			// steady state: every Qos-key has tasks waiting.
+			for (int i = 0; i < keys * 2; i++) {
+				tq.addTask(new TqEntry(i, qosKeys[i % keys]));
+			}
+		}
+	}
+
+	public static TqBase createQueue(String impl) {
+		return ("LegacyTqQos".equals(impl) ? new LegacyTqQos() : new TqQos());
+	}
+
+	/**
+	 * One add and one poll with a random Qos-key, the amount of Qos-keys with tasks stays (about) the same.
+	 */
+	@Benchmark
+	@Threads(1)
+	public void addPoll(QosQueue q, Blackhole bh) {
+		addPollTask(q, bh);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void addPoll4(QosQueue q, Blackhole bh) {
+		addPollTask(q, bh);
+	}
+
+	protected void addPollTask(QosQueue q, Blackhole bh) {
+
+		q.tq.addTask(new TqEntry(bh, q.qosKeys[ThreadLocalRandom.current().nextInt(q.keys)]));
+		TqEntry te = q.tq.getNextTask();
+		if (te != null) {
+			q.tq.taskDone(te);
+		}
+		bh.consume(te);
+	}
+
+	@State(Scope.Thread)
+	public static class EmptyQosQueue {
+
+		@Param({ "TqQos", "LegacyTqQos" })
+		public String impl;
+
+		@Param({ "100", "10000" })
+		public int keys;
+
+		public TqBase tq;
+		public TqEntry[] entries;
+
+		@Setup(Level.Trial)
+		public void setup() {
+
+			tq = createQueue(impl);
+			entries = new TqEntry[keys];
+			for (int i = 0; i < keys; i++) {
+				entries[i] = new TqEntry(i, "customer-" + i);
+			}
+		}
+	}
+
+	/**
+	 * Adds one task for each Qos-key and then removes all tasks,
+	 * this adds and removes each Qos-key from the rotation of keys.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void fillAndDrain(EmptyQosQueue q, Blackhole bh) {
+
+		for (TqEntry te : q.entries) {
+			q.tq.addTask(te);
+		}
+		TqEntry te = null;
+		while ((te = q.tq.getNextTask()) != null) {
+			q.tq.taskDone(te);
+			bh.consume(te);
+		}
+	}
+
+}
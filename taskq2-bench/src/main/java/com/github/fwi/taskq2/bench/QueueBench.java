@@ -0,0 +1,111 @@
+package com.github.fwi.taskq2.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.fwi.taskq2.TqBase;
+import com.github.fwi.taskq2.TqEntry;
+import com.github.fwi.taskq2.TqFifo;
+import com.github.fwi.taskq2.TqQos;
+
+/**
+ * Add and poll tasks on {@link TqFifo} and {@link TqQos} without a task queue group.
+ * <br><tt>addPollN</tt>: N threads that each add and then poll a task.
+ * <br><tt>producers</tt>: 3 threads adding tasks and 1 thread polling tasks 
+ * (the queue grows when the poller cannot keep up, the queue is cleared for each iteration).
+ * <br>Run with: <tt>java -jar taskq2-bench/target/benchmarks.jar QueueBench</tt>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueueBench {
+
+	@State(Scope.Benchmark)
+	public static class Queue {
+
+		@Param({ "TqFifo", "TqQos" })
+		public String impl;
+
+		public TqBase tq;
+		public String[] qosKeys = new String[100];
+
+		@Setup(Level.Iteration)
+		public void setup() {
+
+			tq = ("TqQos".equals(impl) ? new TqQos() : new TqFifo());
+			for (int i = 0; i < qosKeys.length; i++) {
+				qosKeys[i] = "key" + i;
+			}
+		}
+
+		public TqEntry newEntry() {
+			return new TqEntry(Boolean.TRUE, qosKeys[(int) (Thread.currentThread().getId() % qosKeys.length)]);
+		}
+	}
+
+	@Benchmark
+	@Threads(1)
+	public void addPoll1(Queue q, Blackhole bh) {
+		addPoll(q, bh);
+	}
+
+	@Benchmark
+	@Threads(2)
+	public void addPoll2(Queue q, Blackhole bh) {
+		addPoll(q, bh);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void addPoll4(Queue q, Blackhole bh) {
+		addPoll(q, bh);
+	}
+
+	static void addPoll(Queue q, Blackhole bh) {
+
+		q.tq.addTask(q.newEntry());
+		TqEntry te = q.tq.getNextTask();
+		if (te != null) {
+			q.tq.taskDone(te);
+		}
+		bh.consume(te);
+	}
+
+	@Benchmark
+	@Group("producers")
+	@GroupThreads(3)
+	public void add(Queue q) {
+		q.tq.addTask(q.newEntry());
+	}
+
+	@Benchmark
+	@Group("producers")
+	@GroupThreads(1)
+	public TqEntry poll(Queue q) {
+
+		TqEntry te = q.tq.getNextTask();
+		if (te != null) {
+			q.tq.taskDone(te);
+		}
+		return te;
+	}
+
+}
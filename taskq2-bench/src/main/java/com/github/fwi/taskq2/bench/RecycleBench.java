@@ -0,0 +1,85 @@
+package com.github.fwi.taskq2.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.fwi.taskq2.TaskHandler;
+import com.github.fwi.taskq2.TqBase;
+import com.github.fwi.taskq2.TqFifo;
+import com.github.fwi.taskq2.TqGroup;
+import com.github.fwi.taskq2.TqRingFifo;
+
+/**
+ * Memory allocated per task in worker-pull mode with and without recycling task entries 
+ * (see {@link TqGroup#setRecycle(boolean)}) and with a linked ({@link TqFifo}) or array-backed ({@link TqRingFifo}) queue.
+ * <br>Run with the GC profiler and look at <tt>gc.alloc.rate.norm</tt> (bytes per task):
+ * <br><tt>java -jar taskq2-bench/target/benchmarks.jar RecycleBench -prof gc</tt>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecycleBench {
+
+	public static final int BURST = 1000;
+
+	@State(Scope.Benchmark)
+	public static class Group {
+
+		@Param({ "TqFifo", "TqRingFifo" })
+		public String impl;
+
+		@Param({ "false", "true" })
+		public boolean recycle;
+
+		public TqGroup tgroup;
+		public final Object tdata = Boolean.TRUE;
+
+		@Setup(Level.Trial)
+		public void setup() {
+
+			tgroup = new TqGroup();
+			tgroup.setWorkerPull(true);
+			tgroup.setRecycle(recycle);
+			TqBase tq = ("TqRingFifo".equals(impl) ? new TqRingFifo("q", null, 2 * BURST) : new TqFifo("q", null));
+			tq.setMaxConcurrent(2);
+			tq.setTasksHandler(new TaskHandler() {
+				@Override
+				public void onTask(Object tdata) {}
+			});
+			tgroup.addQueue(tq);
+			tgroup.start();
+		}
+
+		@TearDown(Level.Trial)
+		public void stop() {
+			tgroup.stop();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BURST)
+	public boolean addAndExecute(Group g) throws InterruptedException {
+
+		for (int i = 0; i < BURST; i++) {
+			g.tgroup.addTask("q", g.tdata, null);
+		}
+		return g.tgroup.awaitAllTasksDone(10L, TimeUnit.SECONDS);
+	}
+
+}
@@ -0,0 +1,102 @@
+package com.github.fwi.taskq2.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.fwi.taskq2.TqEntry;
+import com.github.fwi.taskq2.TqQos;
+import com.github.fwi.taskq2.TqStats;
+
+/**
+ * Measures the overhead of latency statistics ({@link TqStats}) per task: 
+ * the clock reads done by the task queue group plus recording the latencies.
+ * Compare <tt>lifecycle</tt> with and without statistics (without statistics and limiter, the clock is not read).
+ * The target is an overhead below 100 ns per task without statistics per Qos-key.
+ * <br>Run with: <tt>java -jar taskq2-bench/target/benchmarks.jar TqStatsBench</tt>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TqStatsBench {
+
+	@State(Scope.Benchmark)
+	public static class Queue {
+
+		@Param({ "false", "true" })
+		public boolean stats;
+
+		@Param({ "0", "100" })
+		public int maxQosKeys;
+
+		@Param({ "4", "1" })
+		public int waitTimeSampling;
+
+		public TqQos tq;
+		public String[] qosKeys = new String[1000];
+
+		@Setup
+		public void setup() {
+
+			tq = new TqQos();
+			tq.setStatsEnabled(stats);
+			if (stats) {
+				tq.getStats().setMaxQosKeys(maxQosKeys);
+				tq.getStats().setWaitTimeSampling(waitTimeSampling);
+			}
+			for (int i = 0; i < qosKeys.length; i++) {
+				qosKeys[i] = "key" + i;
+			}
+		}
+	}
+
+	/**
+	 * Add a task, take it from the queue and mark it done, the way the task queue group does in worker-pull mode.
+	 */
+	@Benchmark
+	@Threads(1)
+	public TqEntry lifecycle(Queue q) {
+		return lifecycleTask(q);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public TqEntry lifecycle4(Queue q) {
+		return lifecycleTask(q);
+	}
+
+	static TqEntry lifecycleTask(Queue q) {
+
+		final TqQos tq = q.tq;
+		final TqStats stats = tq.getStats();
+		TqEntry te = new TqEntry(null, q.qosKeys[(int) (Thread.currentThread().getId() % q.qosKeys.length)]);
+		if (stats != null) {
+			stats.taskAdded(te);
+		}
+		tq.addTask(te);
+		TqEntry next = tq.getNextTask();
+		if (next == null) {
+			return te;
+		}
+		if (stats != null) {
+			final long start = System.nanoTime();
+			stats.record(next, start, System.nanoTime());
+		}
+		tq.taskDone(next);
+		return next;
+	}
+
+}
@@ -0,0 +1,224 @@
+package com.github.fwi.taskq2.bench.db;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.fwi.taskq2.TqEntry;
+import com.github.fwi.taskq2.db.TqDbConf;
+import com.github.fwi.taskq2.db.TqDbGroup;
+import com.github.fwi.taskq2.db.TqDbInit;
+import com.github.fwi.taskq2.db.TqDbServer;
+import com.github.fwi.taskq2.db.poll.ClaimReady;
+import com.github.fwi.taskq2.db.poll.TqDbPollDao;
+
+import nl.fw.util.jdbc.DbConnNamedStatement;
+import nl.fw.util.jdbc.hikari.DbConnHik;
+import nl.fw.util.jdbc.hikari.HikPool;
+
+/**
+ * Servers in one group competing for ready tasks using the {@link ClaimReady} queries (see {@link TqDbConf#isClaimMode()}).
+ * Each benchmark thread is a server that claims a batch of ready tasks, deletes them (the tasks are done) 
+ * and stores the same amount of new ready tasks so that the backlog remains the same (score per task).
+ * <br>Compare <tt>claim1</tt> to <tt>claim8</tt> to see how claiming scales with the amount of servers. 
+ * The in-memory HSQLDB uses the fallback queries without "skip locked": servers claim one after another.
+ * To measure "skip locked", run against PostgreSQL (or MySQL 8) with a HikariCP properties file 
+ * (same keys as used for the in-memory HSQLDB below) and a database type for the query and table definitions:
+ * <br><tt>java -Dtaskq2.bench.db=db-pgsql.properties -Dtaskq2.bench.db.type=pgsql -jar taskq2-bench/target/benchmarks.jar ClaimBench</tt>
+ * <br>Use a dedicated database: all task records are deleted before and after the benchmark.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClaimBench {
+
+	public static final String DB_PROPS_FILE = "taskq2.bench.db";
+	public static final String DB_TYPE = "taskq2.bench.db.type";
+	public static final String QNAME = "bench";
+	public static final int BATCH = 50;
+	public static final int BACKLOG = 10_000;
+
+	@State(Scope.Benchmark)
+	public static class Db {
+
+		public HikPool dbPool;
+		public TqDbConf dbConf;
+		public final AtomicInteger servers = new AtomicInteger();
+
+		@Setup(Level.Trial)
+		public void setup() throws IOException, SQLException {
+
+			Properties props = new Properties();
+			String propsFile = System.getProperty(DB_PROPS_FILE);
+			if (propsFile == null) {
+				props.setProperty("dataSourceClassName", "org.hsqldb.jdbc.JDBCDataSource");
+				props.setProperty("dataSource.url", "jdbc:hsqldb:mem:taskq2claim;shutdown=true");
+				props.setProperty("dataSource.user", "sa");
+				props.setProperty("dataSource.password", "");
+			} else {
+				try (InputStream in = new FileInputStream(propsFile)) {
+					props.load(in);
+				}
+			}
+			props.setProperty("autoCommit", "false");
+			props.setProperty("transactionIsolation", "TRANSACTION_READ_COMMITTED");
+			props.setProperty("maximumPoolSize", "16");
+			props.setProperty("poolName", "taskq2claim");
+			dbPool = new HikPool();
+			dbPool.open(props);
+			dbConf = newConf(null);
+			try (DbConnHik dbc = new DbConnHik(dbPool)) {
+				new TqDbInit(dbConf).initDb(dbc);
+			}
+			clear();
+			// fill the backlog using a server that does not claim tasks
+			TqDbGroup producer = newGroup(this);
+			List<TqEntry> entries = new ArrayList<>();
+			for (int i = 0; i < BACKLOG; i++) {
+				entries.add(new TqEntry("bench task"));
+			}
+			try (DbConnHik c = new DbConnHik(dbPool, dbConf.getNamedQueries())) {
+				producer.storeTasks(c, QNAME, entries);
+				c.commit();
+			}
+		}
+
+		/**
+		 * Configuration for a server in claim mode, all servers use the same named queries.
+		 */
+		public TqDbConf newConf(TqDbConf template) {
+
+			TqDbConf conf = new TqDbConf();
+			conf.setUseHostNameAsServerName(false);
+			conf.setServerGroup("claimbench");
+			conf.setClaimMode(true);
+			String dbType = System.getProperty(DB_TYPE);
+			if (template != null) {
+				conf.setNamedQueries(template.getNamedQueries());
+			} else if (dbType != null) {
+				new TqDbInit(conf).loadNamedQueries("taskq-db-queries.sql", 
+						"taskq-db-queries-" + dbType + ".sql", "taskq-db-queries-skip-locked.sql");
+			}
+			if (dbType != null) {
+				conf.setDbStructResource("taskq-db-struct-" + dbType + ".sql");
+			}
+			conf.setServerPort(conf.getServerPort() + servers.getAndIncrement());
+			return conf;
+		}
+
+		public void clear() throws SQLException {
+
+			try (Connection c = dbPool.getDataSource().getConnection(); Statement st = c.createStatement()) {
+				st.executeUpdate("delete from taskq_tasks");
+				c.commit();
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void close() throws SQLException {
+
+			clear();
+			dbPool.close();
+		}
+	}
+
+	static TqDbGroup newGroup(Db db) {
+
+		TqDbServer dbServer = new TqDbServer(db.newConf(db.dbConf));
+		try (DbConnHik dbc = new DbConnHik(db.dbPool, db.dbConf.getNamedQueries())) {
+			dbServer.registerServer(dbc);
+		}
+		return new TqDbGroup(dbServer);
+	}
+
+	@State(Scope.Thread)
+	public static class Server {
+
+		public TqDbGroup tgroup;
+		public TqDbPollDao dao;
+		public final long[] taskIds = new long[BATCH];
+		public final List<TqEntry> entries = new ArrayList<>(BATCH);
+
+		@Setup(Level.Trial)
+		public void setup(Db db) {
+
+			tgroup = newGroup(db);
+			dao = new TqDbPollDao(tgroup, db.dbPool.getDataSource());
+			for (int i = 0; i < BATCH; i++) {
+				entries.add(new TqEntry("bench task"));
+			}
+		}
+	}
+
+	@Benchmark
+	@Threads(1)
+	@OperationsPerInvocation(BATCH)
+	public int claim1(Server server) throws Exception {
+		return claimDoneStore(server);
+	}
+
+	@Benchmark
+	@Threads(2)
+	@OperationsPerInvocation(BATCH)
+	public int claim2(Server server) throws Exception {
+		return claimDoneStore(server);
+	}
+
+	@Benchmark
+	@Threads(4)
+	@OperationsPerInvocation(BATCH)
+	public int claim4(Server server) throws Exception {
+		return claimDoneStore(server);
+	}
+
+	@Benchmark
+	@Threads(8)
+	@OperationsPerInvocation(BATCH)
+	public int claim8(Server server) throws Exception {
+		return claimDoneStore(server);
+	}
+
+	static int claimDoneStore(Server server) throws Exception {
+
+		final TqDbGroup tgroup = server.tgroup;
+		int claimed = 0;
+		DbConnNamedStatement<?> c = server.dao.createDbc();
+		try {
+			int found = server.dao.claimReadyTasks(c, QNAME, server.taskIds, BATCH);
+			claimed = server.dao.updateClaimed(c, server.taskIds, found, tgroup.getExpireDate(QNAME));
+			c.commit();
+			tgroup.deleteTasks(c, server.taskIds, claimed);
+			tgroup.storeTasks(c, QNAME, server.entries.subList(0, claimed));
+			c.commitAndClose();
+		} catch (Exception e) {
+			c.rollbackAndClose(e);
+		}
+		return claimed;
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.github.fwi.taskq2.bench.db;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.fwi.taskq2.db.TaskDataSerializer;
+
+/**
+ * Round-trips (task data to bytes and back) with the {@link TaskDataSerializer}.
+ * <br>Run with: <tt>java -jar taskq2-bench/target/benchmarks.jar SerializerBench</tt>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializerBench {
+
+	@State(Scope.Benchmark)
+	public static class TaskData {
+
+		/** Amount of entries in the task data map. */
+		@Param({ "1", "10", "100" })
+		public int entries;
+
+		public TaskDataSerializer serializer = new TaskDataSerializer();
+		public Serializable tdata;
+		public byte[] bytes;
+
+		@Setup
+		public void setup() {
+
+			HashMap<String, Object> map = new HashMap<>();
+			for (int i = 0; i < entries; i++) {
+				map.put("key" + i, (i % 2 == 0 ? "value " + i : Long.valueOf(i)));
+			}
+			tdata = map;
+			bytes = serializer.taskDataToBytesRe(tdata);
+		}
+	}
+
+	@Benchmark
+	public byte[] toBytes(TaskData td) {
+		return td.serializer.taskDataToBytesRe(td.tdata);
+	}
+
+	@Benchmark
+	public Object roundTrip(TaskData td) {
+		return td.serializer.bytesToTaskDataRe(td.serializer.taskDataToBytesRe(td.tdata));
+	}
+
+}
@@ -0,0 +1,163 @@
+package com.github.fwi.taskq2.bench.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.fwi.taskq2.TqEntry;
+import com.github.fwi.taskq2.db.TqDbConf;
+import com.github.fwi.taskq2.db.TqDbEntry;
+import com.github.fwi.taskq2.db.TqDbGroup;
+import com.github.fwi.taskq2.db.TqDbIdAllocator;
+import com.github.fwi.taskq2.db.TqDbInit;
+import com.github.fwi.taskq2.db.TqDbServer;
+
+import nl.fw.util.jdbc.hikari.DbConnHik;
+import nl.fw.util.jdbc.hikari.HikPool;
+
+/**
+ * Storing and deleting tasks with a {@link TqDbGroup} (<tt>storeTask</tt> and <tt>deleteTask</tt>) 
+ * in an in-memory HSQLDB database, each in its own transaction.
+ * <br><tt>storeTask</tt> and <tt>storeTasks</tt> compare storing tasks one by one with storing tasks in JDBC batches
+ * (score per task, the tables are cleared after each iteration).
+ * <br><tt>idAllocator=true</tt> inserts tasks with IDs reserved by a {@link TqDbIdAllocator} instead of database generated IDs.
+ * <br>Run with: <tt>java -jar taskq2-bench/target/benchmarks.jar TqDbBench</tt>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TqDbBench {
+
+	@State(Scope.Benchmark)
+	public static class Db {
+
+		public HikPool dbPool;
+		public TqDbConf dbConf;
+		public TqDbGroup tgroup;
+
+		@Param({"false", "true"})
+		public boolean idAllocator;
+
+		@Setup(Level.Trial)
+		public void setup() {
+
+			Properties props = new Properties();
+			props.setProperty("dataSourceClassName", "org.hsqldb.jdbc.JDBCDataSource");
+			props.setProperty("autoCommit", "false");
+			props.setProperty("transactionIsolation", "TRANSACTION_READ_COMMITTED");
+			props.setProperty("maximumPoolSize", "4");
+			props.setProperty("dataSource.url", "jdbc:hsqldb:mem:taskq2bench;shutdown=true");
+			props.setProperty("dataSource.user", "sa");
+			props.setProperty("dataSource.password", "");
+			props.setProperty("poolName", "taskq2bench");
+			dbPool = new HikPool();
+			dbPool.open(props);
+			dbConf = new TqDbConf();
+			dbConf.setUseHostNameAsServerName(false);
+			try (DbConnHik dbc = new DbConnHik(dbPool)) {
+				new TqDbInit(dbConf).initDb(dbc);
+			}
+			TqDbServer dbServer = new TqDbServer(dbConf);
+			try (DbConnHik dbc = getDbConn()) {
+				dbServer.registerServer(dbc);
+			}
+			tgroup = new TqDbGroup(dbServer);
+			if (idAllocator) {
+				tgroup.setIdAllocator(new TqDbIdAllocator(dbConf, dbPool.getDataSource()));
+			}
+		}
+
+		public DbConnHik getDbConn() {
+			return new DbConnHik(dbPool, dbConf.getNamedQueries());
+		}
+
+		@TearDown(Level.Iteration)
+		public void clear() throws SQLException {
+
+			try (Connection c = dbPool.getDataSource().getConnection(); Statement st = c.createStatement()) {
+				st.executeUpdate("delete from taskq_tasks");
+				c.commit();
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void close() {
+			dbPool.close();
+		}
+	}
+
+	@Benchmark
+	@Threads(1)
+	public long storeDelete(Db db) throws Exception {
+		return storeDeleteTask(db);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public long storeDelete4(Db db) throws Exception {
+		return storeDeleteTask(db);
+	}
+
+	@Benchmark
+	public long storeTask(Db db) throws Exception {
+
+		try (DbConnHik c = db.getDbConn()) {
+			TqDbEntry dbEntry = db.tgroup.storeTask(c, "bench", "bench task", null);
+			c.commit();
+			return dbEntry.getTaskId();
+		}
+	}
+
+	public static final int BATCH = 100;
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public long storeTasks(Db db) throws Exception {
+
+		List<TqEntry> entries = new ArrayList<>(BATCH);
+		for (int i = 0; i < BATCH; i++) {
+			entries.add(new TqEntry("bench task"));
+		}
+		try (DbConnHik c = db.getDbConn()) {
+			db.tgroup.storeTasks(c, "bench", entries);
+			c.commit();
+		}
+		return entries.get(BATCH - 1).getTaskId();
+	}
+
+	static long storeDeleteTask(Db db) throws Exception {
+
+		long taskId = 0L;
+		try (DbConnHik c = db.getDbConn()) {
+			TqDbEntry dbEntry = db.tgroup.storeTask(c, "bench", "bench task", null);
+			taskId = dbEntry.getTaskId();
+			c.commit();
+			db.tgroup.deleteTask(c, taskId);
+			c.commit();
+		}
+		return taskId;
+	}
+
+}
@@ -0,0 +1,19 @@
+package com.github.fwi.taskq2;
+
+import java.util.List;
+
+/**
+ * A batch task handler that calls {@link #onTask(Object, String, String, long)} for each task in a batch.
+ * Override {@link #onTasks(List, String)} to execute all tasks in one go.
+ */
+public class BatchTaskHandler extends TaskHandler implements IBatchTaskHandler {
+
+	@Override
+	public void onTasks(List<TqEntry> tasks, String qname) {
+		
+		for (TqEntry te : tasks) {
+			onTask(te.getTaskData(), qname, te.getQosKey(), te.getTaskId());
+		}
+	}
+
+}
@@ -0,0 +1,22 @@
+package com.github.fwi.taskq2;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A completable task handler that waits for the task to complete when used as a blocking task handler
+ * (e.g. for batches).
+ */
+public abstract class CompletableTaskHandler implements ICompletableTaskHandler {
+
+	@Override
+	public void onTask(Object tdata, String qname, String qosKey, long taskId) {
+
+		CompletionStage<?> stage = onTaskAsync(tdata, qname, qosKey, taskId);
+		if (stage != null) {
+			CompletableFuture<?> f = stage.toCompletableFuture();
+			f.join();
+		}
+	}
+
+}
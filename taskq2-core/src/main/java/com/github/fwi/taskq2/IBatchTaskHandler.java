@@ -0,0 +1,20 @@
+package com.github.fwi.taskq2;
+
+import java.util.List;
+
+/**
+ * A task handler that can execute multiple tasks in one go, 
+ * e.g. to use one database transaction for all tasks.
+ * <br>Batches are only delivered when the queue's {@link TqBase#getMaxBatchSize()} is more than 1,
+ * otherwise {@link #onTask(Object, String, String, long)} is called for each task.
+ */
+public interface IBatchTaskHandler extends ITaskHandler {
+
+	/**
+	 * Executes a batch of tasks. 
+	 * When this method returns (or throws an exception), all tasks in the batch are considered done.
+	 * @param tasks one or more tasks, at most {@link TqBase#getMaxBatchSize()} tasks.
+	 */
+	void onTasks(List<TqEntry> tasks, String qname);
+
+}
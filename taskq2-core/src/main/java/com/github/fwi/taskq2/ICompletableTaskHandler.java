@@ -0,0 +1,23 @@
+package com.github.fwi.taskq2;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A task handler for non-blocking execution of tasks (e.g. asynchronous I/O).
+ * <br>A task stays in progress (counted for {@link TqBase#getMaxConcurrent()}) until the returned stage completes,
+ * but no thread is used while waiting for the stage to complete.
+ * This allows a few threads to keep many tasks in progress.
+ * <br>{@link #onTask(Object, String, String, long)} is still used for batches (see {@link TqBase#getMaxBatchSize()}),
+ * {@link CompletableTaskHandler} implements it by waiting for the stage to complete.
+ */
+public interface ICompletableTaskHandler extends ITaskHandler {
+
+	/**
+	 * Starts execution of a task. 
+	 * The task is done when the returned stage completes (normally or exceptionally) 
+	 * and the task queue group's task done administration is performed by the thread that completes the stage.
+	 * @return the stage that completes when the task is done, null if the task is already done.
+	 */
+	CompletionStage<?> onTaskAsync(Object tdata, String qname, String qosKey, long taskId);
+
+}
@@ -1,6 +1,11 @@
 package com.github.fwi.taskq2;
 
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.fwi.taskq2.limit.ITqLimiter;
+import com.github.fwi.taskq2.util.CapacityLimit;
+import com.github.fwi.taskq2.util.TokenBucket;
 
 public abstract class TqBase {
 
@@ -9,10 +14,21 @@ public abstract class TqBase {
 	private String name = this.getClass().getSimpleName() + "-" + qnumber.incrementAndGet();
 	private ITaskHandlerFactory handlerFactory; 
 	protected final AtomicInteger inProgress = new AtomicInteger();
+	private final LongAdder tasksDone = new LongAdder();
 	
 	private volatile int maxConcurrent = 4;
 	private volatile boolean paused;
-	
+	private volatile int dispatcher = -1;
+	/** Set by the task queue group that this queue is added to. */
+	private volatile boolean inGroup;
+	private volatile int maxBatchSize = 1;
+	private volatile long maxBatchLingerMs;
+	protected final AtomicInteger batchesInProgress = new AtomicInteger();
+	private final CapacityLimit capacityLimit = new CapacityLimit(name);
+	private volatile ITqLimiter limiter;
+	private volatile TokenBucket rateLimit;
+	private volatile TqStats stats;
+
 	public TqBase() {
 		this(null, null);
 	}
@@ -21,6 +37,7 @@ public abstract class TqBase {
 		super();
 		if (name != null) {
 			this.name = name;
+			capacityLimit.setName(name);
 		}
 		this.handlerFactory = handlerFactory;
 	}
@@ -30,6 +47,7 @@ public abstract class TqBase {
 	}
 	public void setName(String name) {
 		this.name = name;
+		capacityLimit.setName(name);
 	}
 	
 	public void setTasksHandler(ITaskHandler tasksHandler) {
@@ -57,6 +75,98 @@ public abstract class TqBase {
 		this.maxConcurrent = maxConcurrent;
 	}
 	
+	/**
+	 * The limiter that adjusts the amount of tasks executing at the same time, null (default) for no limiter.
+	 */
+	public ITqLimiter getLimiter() {
+		return limiter;
+	}
+	/**
+	 * Set a limiter (e.g. {@link com.github.fwi.taskq2.limit.AimdLimiter}) that measures task execution time 
+	 * and adjusts the amount of tasks executing at the same time, see {@link #getEffectiveMaxConcurrent()}.
+	 * <br>When batches are used, the limiter limits the amount of batches executing at the same time
+	 * and measures the execution time of a batch.
+	 */
+	public void setLimiter(ITqLimiter limiter) {
+		this.limiter = limiter;
+	}
+
+	/**
+	 * The amount of tasks (or batches) that can execute at the same time: 
+	 * the limit from the limiter but never more than {@link #getMaxConcurrent()}.
+	 */
+	public int getEffectiveMaxConcurrent() {
+
+		ITqLimiter l = limiter;
+		if (l == null) {
+			return maxConcurrent;
+		}
+		return Math.max(1, Math.min(maxConcurrent, l.getLimit()));
+	}
+
+	/**
+	 * Called after a task (or batch) was executed, before {@link #taskDone(TqEntry)}.
+	 * Updates the limiter (if any) with the execution time.
+	 * @param startNanos the value of {@link System#nanoTime()} before the task was executed.
+	 * @param endNanos the value of {@link System#nanoTime()} after the task was executed.
+	 * @param failed true if the task handler threw an exception.
+	 */
+	public void taskExecuted(long startNanos, long endNanos, boolean failed) {
+
+		ITqLimiter l = limiter;
+		if (l != null) {
+			l.onSample(endNanos - startNanos, (maxBatchSize > 1 ? getBatchesInProgress() : getInProgress()), failed);
+		}
+	}
+
+	/**
+	 * The latency statistics for this queue, null when statistics are not enabled.
+	 */
+	public TqStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * Enables (or disables) latency statistics for this queue (default disabled), see {@link TqStats}.
+	 * Enabling statistics costs two extra clock reads and a few atomic increments per task, see {@link TqStats}.
+	 */
+	public void setStatsEnabled(boolean enabled) {
+
+		if (enabled && stats == null) {
+			stats = new TqStats();
+		} else if (!enabled) {
+			stats = null;
+		}
+	}
+
+	/**
+	 * The rate limit for this queue, null (default) for no rate limit.
+	 */
+	public TokenBucket getRateLimit() {
+		return rateLimit;
+	}
+
+	/**
+	 * Limits the amount of tasks taken from this queue for execution per second.
+	 * A throttled queue is skipped by the dispatcher until the next token is available,
+	 * the dispatcher wakes up at that time (see {@link #getThrottleNanos()}).
+	 * @param tasksPerSecond the rate, 0 or less to remove the rate limit. 
+	 * @param burst the amount of tasks that can be taken at once after the queue was idle (minimum 1).
+	 */
+	public void setRateLimit(double tasksPerSecond, int burst) {
+		this.rateLimit = (tasksPerSecond > 0.0d ? new TokenBucket(tasksPerSecond, burst) : null);
+	}
+
+	/**
+	 * The time (nanos) until a task can be taken from this queue when tasks are waiting but throttled by a rate limit,
+	 * 0 when this queue is not throttled.
+	 */
+	public long getThrottleNanos() {
+
+		TokenBucket rl = rateLimit;
+		return (rl == null || getSize() < 1 ? 0L : rl.getWaitNanos(System.nanoTime()));
+	}
+
 	public boolean isPaused() {
 		return paused;
 	}
@@ -64,14 +174,107 @@ public abstract class TqBase {
 		this.paused = paused;
 	}
 	
+	/**
+	 * The index of the dispatcher (task execution loop) that executes tasks for this queue
+	 * when a task queue group uses more than one dispatcher (see {@link TqGroup#setDispatchers(int)}).
+	 * <br>Default -1: the dispatcher is selected using the hash of the queue name.
+	 */
+	public int getDispatcher() {
+		return dispatcher;
+	}
+	/**
+	 * See {@link #getDispatcher()}.
+	 * Must be set before the queue is added to a task queue group.
+	 * @throws IllegalStateException when the queue is part of a task queue group.
+	 */
+	public void setDispatcher(int dispatcher) {
+		
+		if (inGroup) {
+			throw new IllegalStateException("Dispatcher for queue " + getName() + " cannot be changed after the queue is added to a task queue group.");
+		}
+		this.dispatcher = dispatcher;
+	}
+
+	boolean isInGroup() {
+		return inGroup;
+	}
+	void setInGroup(boolean inGroup) {
+		this.inGroup = inGroup;
+	}
+
+	/**
+	 * The maximum amount of tasks delivered in one batch to a {@link IBatchTaskHandler} (default 1: no batches).
+	 * <br>When batches are enabled, {@link #getMaxConcurrent()} is the maximum amount of batches executing at the same time
+	 * and a task handler that is not a {@link IBatchTaskHandler} executes the tasks in a batch one after another.
+	 */
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+	public void setMaxBatchSize(int maxBatchSize) {
+		this.maxBatchSize = (maxBatchSize < 1 ? 1 : maxBatchSize);
+	}
+
+	/**
+	 * The maximum time to wait for a batch to fill up before executing less than {@link #getMaxBatchSize()} tasks (default 0: no waiting).
+	 * <br>The waiting time starts when the dispatcher first finds a partial batch, it is not used in worker-pull mode.
+	 */
+	public long getMaxBatchLingerMs() {
+		return maxBatchLingerMs;
+	}
+	public void setMaxBatchLingerMs(long maxBatchLingerMs) {
+		this.maxBatchLingerMs = maxBatchLingerMs;
+	}
+
 	public abstract int getSize();
-	
+
+	/**
+	 * The maximum amount of tasks waiting in this queue, 0 (default) for no limit.
+	 * <br>The capacity is enforced by the add-methods of {@link TqGroup} (e.g. {@link TqGroup#offer(String, TqEntry)})
+	 * and a slot is released when the task is taken from this queue for execution. 
+	 * Tasks added directly to this queue via {@link #addTask(TqEntry)} are not counted.
+	 * <br>See also {@link TqGroup#setCapacity(int)}.
+	 */
+	public int getCapacity() {
+		return capacityLimit.getCapacity();
+	}
+	public void setCapacity(int capacity) {
+		capacityLimit.setCapacity(capacity);
+	}
+
+	/**
+	 * The capacity administration for this queue, use it to set watermarks and a watermark listener.
+	 */
+	public CapacityLimit getCapacityLimit() {
+		return capacityLimit;
+	}
+
+	/**
+	 * True if {@link #getNextTask()} can return a task (default: when {@link #getSize()} is more than 0).
+	 * A queue can have tasks that are not available for execution, e.g. tasks for a Qos-key that is blocked.
+	 */
+	public boolean isTaskAvailable() {
+		return (getSize() > 0);
+	}
+
 	public int getInProgress() {
 		return inProgress.get();
 	}
 
+	public int getBatchesInProgress() {
+		return batchesInProgress.get();
+	}
+
+	/**
+	 * The amount of tasks done since this queue was created.
+	 */
+	public long getTasksDone() {
+		return tasksDone.sum();
+	}
+
 	public void taskDone(TqEntry te) {
+
 		inProgress.decrementAndGet();
+		tasksDone.increment();
 	}
 
 }
@@ -1,10 +1,24 @@
 package com.github.fwi.taskq2;
 
+import java.util.concurrent.CompletableFuture;
+
 public class TqEntry {
 
 	private Object taskData;
 	private String qosKey;
 	private long taskId;
+	private int priority;
+	private CompletableFuture<Object> completion;
+	/** Set by the task queue group when the task reserved a slot in the queue capacity. */
+	boolean queueSlot;
+	/** Set by the task queue group when the task reserved a slot in the group capacity. */
+	boolean groupSlot;
+	/** Time the task was added to the task queue group, only set when statistics are enabled for the queue. */
+	long enqueuedNanos;
+	/** Time the task was taken from the queue for execution, only set when statistics are enabled for the queue. */
+	long dispatchedNanos;
+	/** Set by the task queue group when this entry was taken from the recycle pool, see {@link TqGroup#setRecycle(boolean)}. */
+	boolean recycle;
 
 	public TqEntry() { super(); }
 	
@@ -46,4 +60,45 @@ public class TqEntry {
 		this.taskId = taskId;
 	}
 
+	/**
+	 * The priority of the task, a higher value is a higher priority (default 0).
+	 * Only used by queues that support priorities, see {@link TqPriority}.
+	 */
+	public int getPriority() {
+		return priority;
+	}
+
+	public void setPriority(int priority) {
+		this.priority = priority;
+	}
+
+	/**
+	 * The future that completes when this task is done, null (default) if nobody waits for the task.
+	 * See {@link TqGroup#submit(String, TqEntry)}.
+	 */
+	public CompletableFuture<Object> getCompletion() {
+		return completion;
+	}
+
+	public void setCompletion(CompletableFuture<Object> completion) {
+		this.completion = completion;
+	}
+
+	/**
+	 * Clears all values so that this entry can be re-used.
+	 */
+	void reset() {
+
+		taskData = null;
+		qosKey = null;
+		taskId = 0L;
+		priority = 0;
+		completion = null;
+		queueSlot = false;
+		groupSlot = false;
+		enqueuedNanos = 0L;
+		dispatchedNanos = 0L;
+		recycle = false;
+	}
+
 }
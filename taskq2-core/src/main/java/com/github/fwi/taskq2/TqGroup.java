@@ -1,9 +1,15 @@
 package com.github.fwi.taskq2;
 
 import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -11,46 +17,305 @@ import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.fwi.taskq2.jfr.TqJfr;
 import com.github.fwi.taskq2.util.BinarySemaphore;
+import com.github.fwi.taskq2.util.CapacityLimit;
 import com.github.fwi.taskq2.util.DaemonThreadPool;
 import com.github.fwi.taskq2.util.ExecutorTerminator;
+import com.github.fwi.taskq2.util.RecyclePool;
+import com.github.fwi.taskq2.util.TokenBucket;
+import com.github.fwi.taskq2.util.VirtualThreads;
 
 public class TqGroup implements Closeable {
 
 	private static final Logger log = LoggerFactory.getLogger(TqGroup.class);
 
+	/** Maximum amount of task entries (and task runners) shared between threads in recycle mode, see {@link #setRecycle(boolean)}. */
+	public static final int RECYCLE_POOL_SIZE = 8192;
+	/** Maximum amount of task entries (and task runners) cached per thread in recycle mode. */
+	public static final int RECYCLE_CACHE_SIZE = 64;
+
 	private ExecutorService executor;
 	private boolean closeExecutor;
 	private final ConcurrentHashMap<String, TqBase> taskQueues = new ConcurrentHashMap<>();
-	private final BinarySemaphore tasksAvailable = new BinarySemaphore();
-	private final BinarySemaphore pauseLock = new BinarySemaphore();
+	private volatile TaskExecLoop[] execLoops = new TaskExecLoop[] { new TaskExecLoop(0) };
+	private final ConcurrentHashMap<String, QueueWorkers> queueWorkers = new ConcurrentHashMap<>();
+	private volatile boolean workerPull;
+	private volatile int workerSpinCount;
+	private volatile boolean useVirtualThreads;
+	private volatile TqTimer timer;
+	private final CapacityLimit capacityLimit = new CapacityLimit(getClass().getSimpleName());
 	private final AtomicLong tasksAdded = new AtomicLong(); 
 	private final AtomicLong tasksDone = new AtomicLong();
 	private final AtomicInteger tasksQueued = new AtomicInteger();
-	private final CountDownLatch awaitTasksDone = new CountDownLatch(1);
-	private volatile boolean awaitingTasksDone;
-	private boolean stopping, started, paused;
+	private final Object tasksDoneLock = new Object();
+	/** Amount of threads waiting in {@link #awaitAllTasksDone(long, TimeUnit)}, only updated while holding the tasks-done lock. */
+	private volatile int awaitingTasksDone;
+	private volatile boolean stopping, started, paused;
+	private volatile RecyclePool<TqEntry> entryPool;
+	private volatile RecyclePool<TaskHandlerRun> runnerPool;
 	
 	public boolean addTask(String qname, Object tdata) {
 		return addTask(qname, tdata, null);
 	}
 
+	/**
+	 * Adds a task like {@link #addTask(String, TqEntry)}, 
+	 * the task entry is taken from the recycle pool when {@link #isRecycle()} is true.
+	 */
 	public boolean addTask(String qname, Object tdata, String qosKey) {
-		return addTask(qname, new TqEntry(tdata, qosKey));
+
+		final RecyclePool<TqEntry> pool = entryPool;
+		if (pool == null) {
+			return addTask(qname, new TqEntry(tdata, qosKey));
+		}
+		TqEntry te = pool.take();
+		te.setTaskData(tdata);
+		te.setQosKey(qosKey);
+		te.recycle = true;
+		if (addTask(qname, te)) {
+			return true;
+		}
+		te.reset();
+		pool.release(te);
+		return false;
 	}
 	
+	/**
+	 * Adds a task to the queue if there is room in the queue and in this task queue group
+	 * (see {@link #setCapacity(int)} and {@link TqBase#setCapacity(int)}).
+	 * @return false if the queue does not exist or there is no room for the task.
+	 */
 	public boolean addTask(String qname, TqEntry te) {
 		
 		TqBase tq = taskQueues.get(qname); 
 		if (tq == null) {
 			return false;
 		}
+		if (!capacityLimit.tryReserve()) {
+			return false;
+		}
+		if (!tq.getCapacityLimit().tryReserve()) {
+			capacityLimit.release();
+			return false;
+		}
+		enqueue(tq, te);
+		return true;
+	}
+
+	public CompletableFuture<Object> submit(String qname, Object tdata) {
+		return submit(qname, tdata, null);
+	}
+
+	public CompletableFuture<Object> submit(String qname, Object tdata, String qosKey) {
+		return submit(qname, new TqEntry(tdata, qosKey));
+	}
+
+	/**
+	 * Adds a task like {@link #addTask(String, TqEntry)} and returns a future that completes when the task is done.
+	 * The future completes exceptionally when the task handler throws an exception, 
+	 * and with the result of the returned stage for a {@link ICompletableTaskHandler}.
+	 * <br>If the task could not be added (see {@link #addTask(String, TqEntry)}), 
+	 * the returned future is completed exceptionally with a {@link RejectedExecutionException}.
+	 * <br>Futures of tasks that are not executed (e.g. because this task queue group stopped) do not complete.
+	 */
+	public CompletableFuture<Object> submit(String qname, TqEntry te) {
+
+		CompletableFuture<Object> completion = new CompletableFuture<>();
+		te.setCompletion(completion);
+		if (!addTask(qname, te)) {
+			te.setCompletion(null);
+			completion.completeExceptionally(new RejectedExecutionException("Queue " + qname + " does not exist or has no room for the task."));
+		}
+		return completion;
+	}
+
+	/**
+	 * Same as {@link #addTask(String, TqEntry)}: fails fast when there is no room for the task.
+	 */
+	public boolean offer(String qname, TqEntry te) {
+		return addTask(qname, te);
+	}
+
+	/**
+	 * Adds a task to the queue, waits for room in the queue and this task queue group if needed.
+	 * @return false if the queue does not exist or there was no room for the task within the given timeout.
+	 */
+	public boolean offer(String qname, TqEntry te, long timeout, TimeUnit tunit) throws InterruptedException {
+		return addTaskWait(qname, te, (timeout < 0L ? 0L : tunit.toNanos(timeout)));
+	}
+
+	/**
+	 * Adds a task to the queue, waits as long as needed for room in the queue and this task queue group.
+	 * @return false if the queue does not exist.
+	 */
+	public boolean put(String qname, TqEntry te) throws InterruptedException {
+		return addTaskWait(qname, te, -1L);
+	}
+
+	/**
+	 * @param timeoutNanos time to wait for room, negative value to wait forever.
+	 */
+	protected boolean addTaskWait(String qname, TqEntry te, long timeoutNanos) throws InterruptedException {
+
+		TqBase tq = taskQueues.get(qname); 
+		if (tq == null) {
+			return false;
+		}
+		final long start = (timeoutNanos > 0L ? System.nanoTime() : 0L);
+		if (!capacityLimit.reserve(timeoutNanos, TimeUnit.NANOSECONDS)) {
+			return false;
+		}
+		boolean reserved = false;
+		try {
+			long remaining = (timeoutNanos > 0L ? Math.max(0L, timeoutNanos - (System.nanoTime() - start)) : timeoutNanos);
+			reserved = tq.getCapacityLimit().reserve(remaining, TimeUnit.NANOSECONDS);
+		} finally {
+			if (!reserved) {
+				capacityLimit.release();
+			}
+		}
+		if (reserved) {
+			enqueue(tq, te);
+		}
+		return reserved;
+	}
+
+	/**
+	 * Adds the task to the queue after a slot was reserved in this task queue group and in the queue.
+	 */
+	protected void enqueue(TqBase tq, TqEntry te) {
+
+		te.groupSlot = true;
+		te.queueSlot = true;
+		final TqStats stats = tq.getStats();
+		if (stats != null) {
+			stats.taskAdded(te);
+		}
 		tq.addTask(te);
 		tasksAdded.incrementAndGet();
 		tasksQueued.incrementAndGet();
-		tasksAvailable.release();
+		if (TqJfr.ENABLED) {
+			TqJfr.taskEnqueued(tq, te);
+		}
+		signalTasksAvailable(tq);
+	}
+
+	/**
+	 * Takes the next task from the queue and releases the slot the task reserved in the queue.
+	 */
+	protected TqEntry nextTask(TqBase tq) {
+
+		final TokenBucket rateLimit = tq.getRateLimit();
+		if (rateLimit != null && !rateLimit.tryAcquire()) {
+			return null;
+		}
+		TqEntry te = tq.getNextTask();
+		if (te == null && rateLimit != null) {
+			rateLimit.cancel();
+		}
+		if (te != null && te.queueSlot) {
+			te.queueSlot = false;
+			tq.getCapacityLimit().release();
+		}
+		if (TqJfr.ENABLED && te != null) {
+			TqJfr.taskDispatched(tq, te);
+		}
+		return te;
+	}
+
+	/**
+	 * The maximum amount of tasks in this task queue group (waiting and executing), 0 (default) for no limit.
+	 * The amount of tasks for each queue can be limited via {@link TqBase#setCapacity(int)}.
+	 * <br>See also {@link #addTask(String, TqEntry)}, {@link #offer(String, TqEntry, long, TimeUnit)} 
+	 * and {@link #put(String, TqEntry)}.
+	 */
+	public int getCapacity() {
+		return capacityLimit.getCapacity();
+	}
+	public void setCapacity(int capacity) {
+		capacityLimit.setCapacity(capacity);
+	}
+
+	/**
+	 * The capacity administration for this task queue group, use it to set watermarks and a watermark listener.
+	 */
+	public CapacityLimit getCapacityLimit() {
+		return capacityLimit;
+	}
+	
+	/**
+	 * Adds the task to the queue after the given delay, see {@link #addTask(String, TqEntry, long)}.
+	 */
+	public boolean addTask(String qname, Object tdata, String qosKey, long delayMs) {
+		return addTask(qname, new TqEntry(tdata, qosKey), delayMs);
+	}
+
+	/**
+	 * Adds the task to the queue after the given delay (run no earlier than now + delay).
+	 * Delayed tasks are kept in memory by a timer (see {@link TqTimer}) 
+	 * and are not part of {@link #getSize()} until they are added to the queue, see also {@link #getDelayedSize()}.
+	 * <br>Delayed tasks are kept while this task queue group is stopped 
+	 * and are added to their queue once the task queue group is started again.
+	 * @return false if the queue does not exist.
+	 */
+	public boolean addTask(String qname, TqEntry te, long delayMs) {
+
+		if (delayMs < 1L) {
+			return addTask(qname, te);
+		}
+		if (!taskQueues.containsKey(qname)) {
+			return false;
+		}
+		getTimer().schedule(qname, te, delayMs);
 		return true;
 	}
+
+	protected TqTimer getTimer() {
+
+		TqTimer t = timer;
+		if (t == null) {
+			synchronized(this) {
+				if (timer == null) {
+					timer = createTimer();
+					if (started) {
+						executor.execute(timer);
+					}
+				}
+				t = timer;
+			}
+		}
+		return t;
+	}
+
+	/**
+	 * Creates the timer for delayed tasks when the first delayed task is added.
+	 * Override to use a timer with a different precision.
+	 */
+	protected TqTimer createTimer() {
+		return new TqTimer(this);
+	}
+
+	/**
+	 * Amount of delayed tasks that are not yet added to a queue.
+	 */
+	public int getDelayedSize() {
+
+		TqTimer t = timer;
+		return (t == null ? 0 : t.getSize());
+	}
+
+	protected void signalTasksAvailable(TqBase tq) {
+		
+		if (workerPull) {
+			QueueWorkers qw = queueWorkers.get(tq.getName());
+			if (qw != null) {
+				qw.signal();
+			}
+		} else {
+			getExecLoop(tq).tasksAvailable.release();
+		}
+	}
 	
 	public void setExecutor(ExecutorService executor) { this.executor = executor; }
 	public ExecutorService getExecutor() { return executor; }
@@ -58,16 +323,169 @@ public class TqGroup implements Closeable {
 	public void setCloseExecutor(boolean closeExecutor) { this.closeExecutor = closeExecutor; }
 	public boolean isCloseExecutor() { return closeExecutor; }
 	
+	public boolean isUseVirtualThreads() { return useVirtualThreads; }
+	
+	/**
+	 * If no executor is set, the executor created at start uses virtual threads (opt-in, default false).
+	 * Virtual threads are useful when task handlers mostly block on I/O (e.g. database queries):
+	 * a blocked virtual thread does not hold an OS thread.
+	 * The amount of tasks executing per queue is still limited by {@link TqBase#getMaxConcurrent()}.
+	 * <br>Virtual threads require Java 21 or later, on older Java versions a warning is logged and platform threads are used.
+	 * See also {@link VirtualThreads}.
+	 */
+	public void setUseVirtualThreads(boolean useVirtualThreads) { this.useVirtualThreads = useVirtualThreads; }
+	
 	public void addQueue(TqBase tq) {
-		taskQueues.put(tq.getName(), tq);
+		
+		TqBase old = taskQueues.put(tq.getName(), tq);
+		if (old != null) {
+			getExecLoop(old).queues.remove(old.getName(), old);
+			old.setInGroup(false);
+		}
+		tq.setInGroup(true);
+		getExecLoop(tq).queues.put(tq.getName(), tq);
+		if (workerPull) {
+			synchronized(this) {
+				if (started) {
+					startWorkers(tq);
+				}
+			}
+		}
 	}
 
 	public TqBase getQueue(String qname) {
 		return taskQueues.get(qname);
 	}
 
+	/**
+	 * The names of the queues in this task queue group (a copy).
+	 */
+	public List<String> getQueueNames() {
+		return new ArrayList<>(taskQueues.keySet());
+	}
+
 	public TqBase removeQueue(String qname) {
-		return taskQueues.remove(qname);
+		
+		TqBase tq = taskQueues.remove(qname);
+		if (tq != null) {
+			getExecLoop(tq).queues.remove(qname, tq);
+			tq.setInGroup(false);
+			QueueWorkers qw = queueWorkers.remove(qname);
+			if (qw != null) {
+				qw.stop();
+			}
+		}
+		return tq;
+	}
+	
+	public boolean isRecycle() {
+		return (entryPool != null);
+	}
+
+	/**
+	 * Re-use task entries and task runners (opt-in, default false) to prevent garbage for each task.
+	 * <br>Task entries created by {@link #addTask(String, Object, String)} are returned to a pool when the task is done
+	 * and task runners (the {@link Runnable} executed by the executor for each task) are returned to a pool after execution.
+	 * Task entries given to this task queue group (e.g. via {@link #addTask(String, TqEntry)} or {@link #submit(String, TqEntry)})
+	 * are never re-used. Task handlers that receive task entries (e.g. {@link IBatchTaskHandler})
+	 * must not keep a reference to a task entry after the task is done.
+	 * <br>Combined with worker-pull mode (see {@link #setWorkerPull(boolean)}) and a queue that does not allocate memory 
+	 * when a task is added (e.g. {@link TqRingFifo}), adding and executing a task does not allocate memory.
+	 * The executor used in dispatcher mode allocates memory for each task it executes.
+	 * @throws IllegalStateException when the task queue group is started.
+	 */
+	public synchronized void setRecycle(boolean recycle) {
+
+		if (started) {
+			throw new IllegalStateException("Recycle mode cannot be changed after task queue group is started.");
+		}
+		if (recycle) {
+			entryPool = new RecyclePool<>(TqEntry::new, RECYCLE_POOL_SIZE, RECYCLE_CACHE_SIZE);
+			runnerPool = new RecyclePool<>(TaskHandlerRun::new, RECYCLE_POOL_SIZE, RECYCLE_CACHE_SIZE);
+		} else {
+			entryPool = null;
+			runnerPool = null;
+		}
+	}
+
+	public boolean isWorkerPull() {
+		return workerPull;
+	}
+	
+	/**
+	 * In worker-pull mode, each queue gets a fixed set of worker threads 
+	 * (the amount is {@link TqBase#getMaxConcurrent()} at the time the workers are started)
+	 * that take tasks directly from the queue and execute them.
+	 * There is no dispatcher (task execution loop) in between and no {@link Runnable} is created per task,
+	 * which lowers the latency between adding a task and starting execution of the task. 
+	 * <br>The worker threads are long running tasks for the executor, a custom executor (see {@link #setExecutor(ExecutorService)})
+	 * must be able to provide a thread for each worker.
+	 * <br>Changing {@link TqBase#setMaxConcurrent(int)} does not change the amount of workers for a started queue,
+	 * use {@link #setMaxConcurrent(String, int)} instead.
+	 * @throws IllegalStateException when the task queue group is started.
+	 */
+	public synchronized void setWorkerPull(boolean workerPull) {
+		
+		if (started) {
+			throw new IllegalStateException("Worker-pull mode cannot be changed after task queue group is started.");
+		}
+		this.workerPull = workerPull;
+	}
+	
+	public int getWorkerSpinCount() {
+		return workerSpinCount;
+	}
+	
+	/**
+	 * The amount of times an idle worker (see {@link #setWorkerPull(boolean)}) checks the queue for a new task 
+	 * before it waits for a signal that a task was added (default 0).
+	 * Spinning costs CPU but gives the lowest latency for tasks added to a queue with idle workers. 
+	 */
+	public void setWorkerSpinCount(int workerSpinCount) {
+		this.workerSpinCount = workerSpinCount;
+	}
+	
+	/**
+	 * The amount of dispatchers (task execution loops) that execute tasks from the queues (default 1).
+	 */
+	public int getDispatchers() { 
+		return execLoops.length; 
+	}
+	
+	/**
+	 * Splits the queues over the given amount of dispatchers (task execution loops).
+	 * Each dispatcher has its own signal for "tasks available" and only handles the queues assigned to it,
+	 * see {@link TqBase#getDispatcher()} for how a queue is assigned to a dispatcher.
+	 * <br>Use more than one dispatcher when there are many queues and a high task throughput
+	 * (i.e. when one dispatcher is too busy to keep up with all the queues).
+	 * @throws IllegalStateException when the task queue group is started.
+	 */
+	public synchronized void setDispatchers(int dispatchers) {
+		
+		if (started) {
+			throw new IllegalStateException("Amount of dispatchers cannot be changed after task queue group is started.");
+		}
+		TaskExecLoop[] loops = new TaskExecLoop[dispatchers < 1 ? 1 : dispatchers];
+		for (int i = 0; i < loops.length; i++) {
+			loops[i] = new TaskExecLoop(i);
+		}
+		execLoops = loops;
+		for (TqBase tq : taskQueues.values()) {
+			getExecLoop(tq).queues.put(tq.getName(), tq);
+		}
+	}
+	
+	protected TaskExecLoop getExecLoop(TqBase tq) {
+		
+		final TaskExecLoop[] loops = execLoops;
+		if (loops.length == 1) {
+			return loops[0];
+		}
+		int i = tq.getDispatcher();
+		if (i < 0) {
+			i = tq.getName().hashCode() & Integer.MAX_VALUE;
+		}
+		return loops[i % loops.length];
 	}
 	
 	public synchronized void start() {
@@ -77,17 +495,54 @@ public class TqGroup implements Closeable {
 			return;
 		}
 		started = true;
-		starting();
+		// reset before starting, a loop started after a previous stop would otherwise stop right away
 		stopping = false;
+		starting();
 	}
 	
 	protected void starting() {
 		
 		if (executor == null) {
 			closeExecutor = true;
-			executor = new DaemonThreadPool(this.getClass().getSimpleName());
+			executor = createExecutor();
+		}
+		if (workerPull) {
+			for (TqBase tq : taskQueues.values()) {
+				startWorkers(tq);
+			}
+		} else {
+			for (TaskExecLoop execLoop : execLoops) {
+				executor.execute(execLoop);
+			}
+		}
+		if (timer != null) {
+			executor.execute(timer);
 		}
-		executor.execute(new TaskExecLoop());
+	}
+	
+	protected ExecutorService createExecutor() {
+		
+		if (useVirtualThreads) {
+			if (VirtualThreads.isAvailable()) {
+				log.debug("Using virtual threads for task execution.");
+				return VirtualThreads.newExecutor(this.getClass().getSimpleName());
+			}
+			log.warn("Virtual threads are not available (requires Java 21 or later), using platform threads for task execution.");
+		}
+		return new DaemonThreadPool(this.getClass().getSimpleName());
+	}
+	
+	protected void startWorkers(TqBase tq) {
+		
+		QueueWorkers qw = new QueueWorkers(tq);
+		QueueWorkers old = queueWorkers.put(tq.getName(), qw);
+		if (old != null) {
+			old.stop();
+		}
+		for (int i = 0; i < qw.workers; i++) {
+			executor.execute(new TaskWorker(qw, i + 1));
+		}
+		log.debug("Started {} workers for queue {}", qw.workers, tq.getName());
 	}
 
 	@Override
@@ -112,8 +567,17 @@ public class TqGroup implements Closeable {
 	
 	protected void stopping(long taskFinishPeriodMs, long taskStopPeriodMs) {
 		
-		pauseLock.release();
-		tasksAvailable.release();
+		for (TaskExecLoop execLoop : execLoops) {
+			execLoop.pauseLock.release();
+			execLoop.tasksAvailable.release();
+		}
+		for (QueueWorkers qw : queueWorkers.values()) {
+			qw.stop();
+		}
+		queueWorkers.clear();
+		if (timer != null) {
+			timer.stop();
+		}
 		if (closeExecutor) {
 			if (ExecutorTerminator.closeSilent(executor, taskFinishPeriodMs, taskStopPeriodMs)) {
 				log.debug("Task queue group executor stopped.");
@@ -124,7 +588,7 @@ public class TqGroup implements Closeable {
 		}
 	}
 	
-	public synchronized boolean isPaused() {
+	public boolean isPaused() {
 		return paused;
 	}
 	
@@ -139,8 +603,13 @@ public class TqGroup implements Closeable {
 		if (this.paused != paused) {
 			this.paused = paused;
 			if (!paused) {
-				tasksAvailable.release();
-				pauseLock.release();
+				for (TaskExecLoop execLoop : execLoops) {
+					execLoop.tasksAvailable.release();
+					execLoop.pauseLock.release();
+				}
+				for (QueueWorkers qw : queueWorkers.values()) {
+					qw.signalAll();
+				}
 			}
 		}
 	}
@@ -159,12 +628,46 @@ public class TqGroup implements Closeable {
 		if (tq.isPaused() != paused) {
 			tq.setPaused(paused);
 			if (!paused) {
-				tasksAvailable.release();
+				if (workerPull) {
+					QueueWorkers qw = queueWorkers.get(qname);
+					if (qw != null) {
+						qw.signalAll();
+					}
+				} else {
+					getExecLoop(tq).tasksAvailable.release();
+				}
 			}
 		}
 		return true;
 	}
 	
+	/**
+	 * Sets {@link TqBase#setMaxConcurrent(int)} for one queue and triggers the execution of queued tasks.
+	 * In worker-pull mode (see {@link #setWorkerPull(boolean)}) the workers of a started queue are replaced
+	 * by the new amount of workers, workers that are executing a task stop after the task is done.
+	 * @param qname the name of the queue.
+	 * @return false if the task queue with the given name is not available. 
+	 */
+	public boolean setMaxConcurrent(String qname, int maxConcurrent) {
+		
+		TqBase tq = taskQueues.get(qname); 
+		if (tq == null) {
+			return false;
+		}
+		tq.setMaxConcurrent(maxConcurrent);
+		if (workerPull) {
+			synchronized(this) {
+				QueueWorkers qw = queueWorkers.get(qname);
+				if (started && qw != null && qw.tq == tq && qw.workers != Math.max(1, maxConcurrent)) {
+					startWorkers(tq);
+				}
+			}
+		}
+		// more tasks may be executed now
+		triggerTaskExec();
+		return true;
+	}
+	
 	/**
 	 * Tasks in the queue might not get executed when, for example, a task-queue is paused 
 	 * via {@link TqBase#setPaused(boolean)} instead of via
@@ -173,18 +676,32 @@ public class TqGroup implements Closeable {
 	 */
 	public void triggerTaskExec() {
 		
-		tasksAvailable.release();
+		for (TaskExecLoop execLoop : execLoops) {
+			execLoop.tasksAvailable.release();
+		}
+		for (QueueWorkers qw : queueWorkers.values()) {
+			qw.signalAll();
+		}
 	}
 
 	protected void taskDone(TqBase tq, TqEntry te) {
 		
 		tq.taskDone(te);
 		tasksDone.incrementAndGet();
+		if (TqJfr.ENABLED) {
+			TqJfr.taskDone(tq, te);
+		}
 		tasksQueued.decrementAndGet();
-		if (awaitingTasksDone && tasksDone.get() >= tasksAdded.get()) {
-			awaitTasksDone.countDown();
-		} else {
-			tasksAvailable.release();
+		if (te.groupSlot) {
+			te.groupSlot = false;
+			capacityLimit.release();
+		}
+		if (awaitingTasksDone > 0 && tasksDone.get() >= tasksAdded.get()) {
+			synchronized (tasksDoneLock) {
+				tasksDoneLock.notifyAll();
+			}
+		} else if (!workerPull || tq.isTaskAvailable()) {
+			signalTasksAvailable(tq);
 		}
 	}
 	
@@ -193,16 +710,133 @@ public class TqGroup implements Closeable {
 	public long getTasksAdded() { return tasksAdded.get(); }
 	public long getTasksExecuted() { return tasksDone.get(); }
 	
+	/**
+	 * Waits until all added tasks are done, can be called any number of times by any number of threads.
+	 * @return false if tasks were still not done after the timeout.
+	 */
 	public boolean awaitAllTasksDone(long timeout, TimeUnit tunit) throws InterruptedException {
 		
-		awaitingTasksDone = true;
-		boolean allDone = (tasksDone.get() >= tasksAdded.get() ? true : awaitTasksDone.await(timeout, tunit));
-		awaitingTasksDone = false;
-		return allDone;
+		if (tasksDone.get() >= tasksAdded.get()) {
+			return true;
+		}
+		final long end = System.nanoTime() + tunit.toNanos(timeout);
+		synchronized (tasksDoneLock) {
+			awaitingTasksDone++;
+			try {
+				long waitNanos = 0L;
+				while (tasksDone.get() < tasksAdded.get()) {
+					if ((waitNanos = end - System.nanoTime()) <= 0L) {
+						return false;
+					}
+					TimeUnit.NANOSECONDS.timedWait(tasksDoneLock, waitNanos);
+				}
+			} finally {
+				awaitingTasksDone--;
+			}
+		}
+		return true;
 	}
 
 	protected class TaskExecLoop implements Runnable {
 		
+		protected final int dispatcher;
+		protected final ConcurrentHashMap<String, TqBase> queues = new ConcurrentHashMap<>();
+		protected final BinarySemaphore tasksAvailable = new BinarySemaphore();
+		protected final BinarySemaphore pauseLock = new BinarySemaphore();
+		/** Start time (nanos) of waiting for a partial batch to fill up per queue, only used by this loop's thread. */
+		protected final HashMap<String, Long> lingerStart = new HashMap<>();
+		protected boolean wakeUp;
+		protected long wakeUpNanos;
+
+		public TaskExecLoop(int dispatcher) {
+			this.dispatcher = dispatcher;
+		}
+
+		/**
+		 * Wakes up this loop at the given time (nanos) without a "tasks available" signal.
+		 */
+		protected void wakeUpAt(long nanos) {
+
+			if (!wakeUp || nanos - wakeUpNanos < 0L) {
+				wakeUpNanos = nanos;
+				wakeUp = true;
+			}
+		}
+
+		protected void executeBatches(TqBase tq) {
+
+			final int maxBatchSize = tq.getMaxBatchSize();
+			int batches = 0;
+			final int maxConcurrent = tq.getEffectiveMaxConcurrent();
+			while (tq.isTaskAvailable() && tq.getBatchesInProgress() < maxConcurrent) {
+				if (isLingering(tq, maxBatchSize)) {
+					break;
+				}
+				List<TqEntry> batch = pollBatch(tq, maxBatchSize);
+				if (batch.isEmpty()) {
+					if (tq.getThrottleNanos() < 1L) {
+						log.warn("Expected a task in queue " + tq.getName() + " but received no task data.");
+					}
+					break;
+				}
+				lingerStart.remove(tq.getName());
+				if (tq.getStats() != null) {
+					final long dispatchNanos = System.nanoTime();
+					for (TqEntry te : batch) {
+						te.dispatchedNanos = dispatchNanos;
+					}
+				}
+				ITaskHandler thandler = tq.getHandlerFactory().getTaskHandler(tq.getName());
+				tq.batchesInProgress.incrementAndGet();
+				executor.execute(new BatchHandlerRun(tq, thandler, batch));
+				batches++;
+				if (batches > maxConcurrent) {
+					// give other queues a chance, we'll come back here
+					if (tq.isTaskAvailable()) {
+						tasksAvailable.release();
+					}
+					break;
+				}
+			}
+			if (batches > 0 && log.isTraceEnabled()) {
+				log.trace("Executed " + batches + " batch(es) for queue " + tq.getName());
+			}
+			wakeUpWhenThrottled(tq);
+		}
+
+		/**
+		 * Wakes up this loop when the next task for a queue throttled by a rate limit can be taken.
+		 */
+		protected void wakeUpWhenThrottled(TqBase tq) {
+
+			long throttleNanos = tq.getThrottleNanos();
+			if (throttleNanos > 0L) {
+				wakeUpAt(System.nanoTime() + throttleNanos);
+			}
+		}
+
+		/**
+		 * @return true if a partial batch should wait for more tasks, see {@link TqBase#getMaxBatchLingerMs()}.
+		 */
+		protected boolean isLingering(TqBase tq, int maxBatchSize) {
+
+			long lingerMs = tq.getMaxBatchLingerMs();
+			if (lingerMs < 1L || tq.getSize() >= maxBatchSize) {
+				return false;
+			}
+			long now = System.nanoTime();
+			Long start = lingerStart.get(tq.getName());
+			if (start == null) {
+				lingerStart.put(tq.getName(), start = now);
+			}
+			long lingerEnd = start + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+			if (lingerEnd - now > 0L) {
+				wakeUpAt(lingerEnd);
+				return true;
+			}
+			return false;
+		}
+
 		@Override
 		public void run() {
 			final String originalThreadName = updateThreadName();
@@ -212,7 +846,18 @@ public class TqGroup implements Closeable {
 						if (paused) {
 							pauseLock.acquire();
 						}
-						tasksAvailable.acquire();
+						if (wakeUp) {
+							wakeUp = false;
+							long waitNanos = wakeUpNanos - System.nanoTime();
+							if (waitNanos > 0L) {
+								tasksAvailable.tryAcquire(waitNanos, TimeUnit.NANOSECONDS);
+							}
+						} else {
+							tasksAvailable.acquire();
+						}
+						if (paused) {
+							continue; // paused while waiting for tasks
+						}
 					} catch (InterruptedException ie) {
 						if (stopping) {
 							log.debug("Stopping task execution loop after interrupt exception.");
@@ -221,25 +866,40 @@ public class TqGroup implements Closeable {
 						}
 						continue; // check on stopping, retry getting locks
 					}
-					for (TqBase tq : taskQueues.values()) {
+					for (TqBase tq : queues.values()) {
 						if (tq.isPaused()) {
 							continue;
 						}
+						if (tq.getMaxBatchSize() > 1) {
+							executeBatches(tq);
+							continue;
+						}
 						// execute tasks in queue
 						int executed = 0;
-						while (tq.getSize() > 0 && tq.getInProgress() < tq.getMaxConcurrent()) {
-							TqEntry te = tq.getNextTask();
+						long dispatchNanos = 0L;
+						final int maxConcurrent = tq.getEffectiveMaxConcurrent();
+						while (tq.isTaskAvailable() && tq.getInProgress() < maxConcurrent) {
+							TqEntry te = nextTask(tq);
 							if (te == null) {
-								log.warn("Expected a task in queue " + tq.getName() + " but received no task data.");
+								if (tq.getThrottleNanos() < 1L) {
+									log.warn("Expected a task in queue " + tq.getName() + " but received no task data.");
+								}
 								break;
 							}
+							if (tq.getStats() != null) {
+								// one clock read for all tasks dispatched in this round
+								if (dispatchNanos == 0L) {
+									dispatchNanos = System.nanoTime();
+								}
+								te.dispatchedNanos = dispatchNanos;
+							}
 							ITaskHandler thandler = tq.getHandlerFactory().getTaskHandler(tq.getName());
-							Runnable taskRun = new TaskHandlerRun(tq, thandler, te);
+							Runnable taskRun = newTaskRun(tq, thandler, te);
 							executor.execute(taskRun);
 							executed++;
-							if (executed > tq.getMaxConcurrent()) {
+							if (executed > maxConcurrent) {
 								// give other queues a chance, we'll come back here
-								if (tq.getSize() > 0) {
+								if (tq.isTaskAvailable()) {
 									tasksAvailable.release();
 									if (log.isTraceEnabled()) {
 										log.trace("Delaying additional tasks to execute for queue " + tq.getName() + " after handling other queues.");
@@ -251,12 +911,13 @@ public class TqGroup implements Closeable {
 						if (executed > 0 && log.isTraceEnabled()) {
 							log.trace("Executed " + executed + " task(s) for queue " + tq.getName());
 						}
+						wakeUpWhenThrottled(tq);
 					} // for task queues
 				} catch (Exception e) {
 					log.error("Failed to complete task execution loop.", e);
 				}
 			} // while !stopping.
-			log.info("Task queue group executor loop stopped.");
+			log.info("Task queue group executor loop {} stopped.", dispatcher);
 			Thread.currentThread().setName(originalThreadName);
 		}
 		
@@ -265,20 +926,68 @@ public class TqGroup implements Closeable {
 			final String orgTname = Thread.currentThread().getName();
 			if (orgTname.contains("-thread-")) {
 				int i = orgTname.indexOf("-thread-");
-				String tname = orgTname.substring(0, i + 1) + TaskExecLoop.this.getClass().getSimpleName();
+				String tname = orgTname.substring(0, i + 1) + TaskExecLoop.this.getClass().getSimpleName()
+						+ (execLoops.length > 1 ? "-" + dispatcher : "");
 				Thread.currentThread().setName(tname);
 			}
 			return orgTname;
 		}
 	} // TaskExecLoop
 	
+	/**
+	 * Calls {@link #taskDone(TqBase, TqEntry)} and {@link #completeTask(TqEntry, Object, Throwable)}
+	 * and then recycles the task entry if it was taken from the recycle pool.
+	 * The task entry must not be used after this call.
+	 */
+	protected void finishTask(TqBase tq, TqEntry te, Object result, Throwable error) {
+
+		taskDone(tq, te);
+		completeTask(te, result, error);
+		if (te.recycle) {
+			recycle(te);
+		}
+	}
+
+	/**
+	 * The task entry is no longer used by this task queue group, re-use it.
+	 * Called as the last step of {@link #finishTask(TqBase, TqEntry, Object, Throwable)}.
+	 */
+	protected void recycle(TqEntry te) {
+
+		final RecyclePool<TqEntry> pool = entryPool;
+		te.reset();
+		if (pool != null) {
+			pool.release(te);
+		}
+	}
+
+	protected Runnable newTaskRun(TqBase tq, ITaskHandler thandler, TqEntry te) {
+
+		final RecyclePool<TaskHandlerRun> pool = runnerPool;
+		if (pool == null) {
+			return new TaskHandlerRun(tq, thandler, te);
+		}
+		TaskHandlerRun taskRun = pool.take();
+		taskRun.init(tq, thandler, te);
+		taskRun.pool = pool;
+		return taskRun;
+	}
+
 	class TaskHandlerRun implements Runnable {
 		
-		private final TqBase tq;
-		private final ITaskHandler thandler; 
-		private final TqEntry te;
-		
+		private TqBase tq;
+		private ITaskHandler thandler; 
+		private TqEntry te;
+		/** The pool to return this runner to after execution, null if this runner is not re-used. */
+		private RecyclePool<TaskHandlerRun> pool;
+
+		TaskHandlerRun() {}
+
 		public TaskHandlerRun(TqBase tq, ITaskHandler thandler, TqEntry te) {
+			init(tq, thandler, te);
+		}
+
+		void init(TqBase tq, ITaskHandler thandler, TqEntry te) {
 			this.tq = tq;
 			this.thandler = thandler;
 			this.te = te;
@@ -287,12 +996,397 @@ public class TqGroup implements Closeable {
 		@Override
 		public void run() {
 			
+			final TqBase tq = this.tq;
+			final ITaskHandler thandler = this.thandler;
+			final TqEntry te = this.te;
+			final RecyclePool<TaskHandlerRun> pool = this.pool;
+			if (pool != null) {
+				init(null, null, null);
+				this.pool = null;
+				pool.release(this);
+			}
+			if (thandler instanceof ICompletableTaskHandler) {
+				executeAsync(tq, (ICompletableTaskHandler) thandler, te);
+				return;
+			}
+			final long start = startNanos(tq, te);
+			Throwable error = null;
 			try {
 				thandler.onTask(te.getTaskData(), tq.getName(), te.getQosKey(), te.getTaskId());
+			} catch (RuntimeException | Error e) {
+				error = e;
+				throw e;
+			} finally {
+				taskExecuted(tq, te, start, error != null);
+				finishTask(tq, te, null, error);
+			}
+		}
+	}
+
+	/**
+	 * Starts a task using {@link ICompletableTaskHandler#onTaskAsync(Object, String, String, long)}.
+	 * {@link #finishTask(TqBase, TqEntry, Object, Throwable)} is called when the returned stage completes.
+	 */
+	protected void executeAsync(final TqBase tq, ICompletableTaskHandler thandler, final TqEntry te) {
+
+		final long start = startNanos(tq);
+		CompletionStage<?> stage = null;
+		try {
+			stage = thandler.onTaskAsync(te.getTaskData(), tq.getName(), te.getQosKey(), te.getTaskId());
+		} catch (RuntimeException | Error e) {
+			taskExecuted(tq, te, start, true);
+			finishTask(tq, te, null, e);
+			throw e;
+		}
+		if (stage == null) {
+			taskExecuted(tq, te, start, false);
+			finishTask(tq, te, null, null);
+			return;
+		}
+		stage.whenComplete((result, error) -> {
+			if (error != null) {
+				log.error("Failed to execute task for queue " + tq.getName(), error);
+			}
+			taskExecuted(tq, te, start, error != null);
+			finishTask(tq, te, result, error);
+		});
+	}
+
+	/**
+	 * The start time of a task for {@link #taskExecuted(TqBase, TqEntry, long, boolean)}, 
+	 * 0 when the queue has no limiter and no statistics and {@link TqJfr} is disabled (the clock is not read).
+	 */
+	protected long startNanos(TqBase tq) {
+		return (tq.getLimiter() != null || tq.getStats() != null || TqJfr.ENABLED ? System.nanoTime() : 0L);
+	}
+
+	/**
+	 * The start time of a dispatched task: the dispatcher's timestamp for the task when only statistics without
+	 * dispatch time use the start time (see {@link TqStats#setDispatchTimeEnabled(boolean)}), else {@link #startNanos(TqBase)}.
+	 */
+	protected long startNanos(TqBase tq, TqEntry te) {
+
+		final long dispatched = te.dispatchedNanos;
+		if (dispatched != 0L && tq.getLimiter() == null && !TqJfr.ENABLED) {
+			final TqStats stats = tq.getStats();
+			if (stats != null && !stats.isDispatchTimeEnabled()) {
+				return dispatched;
+			}
+		}
+		return startNanos(tq);
+	}
+
+	/**
+	 * Updates the queue's limiter and statistics (if any) after a task was executed, see also {@link TqJfr}.
+	 */
+	protected void taskExecuted(TqBase tq, TqEntry te, long startNanos, boolean failed) {
+
+		final TqStats stats = tq.getStats();
+		if (stats == null && tq.getLimiter() == null && !TqJfr.ENABLED) {
+			return;
+		}
+		final long endNanos = System.nanoTime();
+		tq.taskExecuted(startNanos, endNanos, failed);
+		if (stats != null) {
+			stats.record(te, startNanos, endNanos);
+		}
+		if (TqJfr.ENABLED) {
+			TqJfr.taskExecuted(tq, te, 1, startNanos, endNanos, failed);
+		}
+	}
+
+	/**
+	 * Updates the queue's limiter (once for the batch) and statistics (for each task) after a batch was executed.
+	 */
+	protected void batchExecuted(TqBase tq, List<TqEntry> batch, long startNanos, boolean failed) {
+
+		final TqStats stats = tq.getStats();
+		if (stats == null && tq.getLimiter() == null && !TqJfr.ENABLED) {
+			return;
+		}
+		final long endNanos = System.nanoTime();
+		tq.taskExecuted(startNanos, endNanos, failed);
+		if (stats != null) {
+			for (TqEntry te : batch) {
+				stats.record(te, startNanos, endNanos);
+			}
+		}
+		if (TqJfr.ENABLED) {
+			TqJfr.taskExecuted(tq, null, batch.size(), startNanos, endNanos, failed);
+		}
+	}
+
+	/**
+	 * Completes the task's future (if any) after the task is done, see {@link #submit(String, TqEntry)}.
+	 */
+	protected void completeTask(TqEntry te, Object result, Throwable error) {
+
+		CompletableFuture<Object> completion = te.getCompletion();
+		if (completion == null) {
+			return;
+		}
+		if (error == null) {
+			completion.complete(result);
+		} else {
+			completion.completeExceptionally(error);
+		}
+	}
+
+	class BatchHandlerRun implements Runnable {
+
+		private final TqBase tq;
+		private final ITaskHandler thandler;
+		private final List<TqEntry> batch;
+
+		public BatchHandlerRun(TqBase tq, ITaskHandler thandler, List<TqEntry> batch) {
+			this.tq = tq;
+			this.thandler = thandler;
+			this.batch = batch;
+		}
+
+		@Override
+		public void run() {
+
+			final long start = startNanos(tq, batch.get(0));
+			Throwable error = null;
+			Throwable[] taskErrors = null;
+			try {
+				taskErrors = executeBatch(tq, thandler, batch);
+			} catch (RuntimeException | Error e) {
+				error = e;
+				throw e;
 			} finally {
-				taskDone(tq, te);
+				batchExecuted(tq, batch, start, error != null || taskErrors != null);
+				tq.batchesInProgress.decrementAndGet();
+				finishBatch(tq, batch, error, taskErrors);
+			}
+		}
+	}
+
+	protected List<TqEntry> pollBatch(TqBase tq, int maxBatchSize) {
+
+		List<TqEntry> batch = new ArrayList<>(Math.min(maxBatchSize, Math.max(1, tq.getSize())));
+		TqEntry te = null;
+		while (batch.size() < maxBatchSize && (te = nextTask(tq)) != null) {
+			batch.add(te);
+		}
+		return batch;
+	}
+
+	/**
+	 * Executes a batch of tasks using {@link IBatchTaskHandler#onTasks(List, String)}.
+	 * If the task handler is not a batch task handler, the tasks are executed one after another.
+	 * A task that fails does not stop the execution of the other tasks in the batch.
+	 * The caller must call {@link #finishBatch(TqBase, List, Throwable, Throwable[])} for the batch.
+	 * @return null or, if a task failed, the error per task (in batch order) for a task handler that is not a batch task handler.
+	 */
+	protected Throwable[] executeBatch(TqBase tq, ITaskHandler thandler, List<TqEntry> batch) {
+
+		if (thandler instanceof IBatchTaskHandler) {
+			((IBatchTaskHandler) thandler).onTasks(batch, tq.getName());
+			return null;
+		}
+		Throwable[] taskErrors = null;
+		for (int i = 0; i < batch.size(); i++) {
+			final TqEntry te = batch.get(i);
+			try {
+				thandler.onTask(te.getTaskData(), tq.getName(), te.getQosKey(), te.getTaskId());
+			} catch (Throwable t) {
+				log.error("Failed to execute task from batch for queue " + tq.getName(), t);
+				if (taskErrors == null) {
+					taskErrors = new Throwable[batch.size()];
+				}
+				taskErrors[i] = t;
+			}
+		}
+		return taskErrors;
+	}
+
+	/**
+	 * Calls {@link #finishTask(TqBase, TqEntry, Object, Throwable)} for each task in the batch
+	 * with the error of the batch or else the error of the task (if any).
+	 */
+	protected void finishBatch(TqBase tq, List<TqEntry> batch, Throwable error, Throwable[] taskErrors) {
+
+		for (int i = 0; i < batch.size(); i++) {
+			finishTask(tq, batch.get(i), null, (error == null && taskErrors != null ? taskErrors[i] : error));
+		}
+	}
+
+	/**
+	 * The workers for one queue in worker-pull mode, see {@link TqGroup#setWorkerPull(boolean)}.
+	 */
+	protected class QueueWorkers {
+		
+		protected final TqBase tq;
+		protected final int workers;
+		protected final Semaphore tasksAvailable = new Semaphore(0);
+		protected final AtomicInteger idle = new AtomicInteger();
+		protected volatile boolean stopped;
+		
+		public QueueWorkers(TqBase tq) {
+			this.tq = tq;
+			this.workers = (tq.getMaxConcurrent() < 1 ? 1 : tq.getMaxConcurrent());
+		}
+		
+		/**
+		 * Wakes up one idle worker, if any. 
+		 * Workers register as idle before checking the queue one last time,
+		 * so a task added to the queue before calling this method is always picked up.
+		 */
+		public void signal() {
+			
+			if (idle.get() > 0) {
+				tasksAvailable.release();
 			}
 		}
+		
+		public void signalAll() {
+			tasksAvailable.release(workers);
+		}
+		
+		public void stop() {
+			
+			stopped = true;
+			signalAll();
+		}
 	}
 	
+	protected class TaskWorker implements Runnable {
+		
+		protected final QueueWorkers qw;
+		protected final int workerNumber;
+		
+		public TaskWorker(QueueWorkers qw, int workerNumber) {
+			this.qw = qw;
+			this.workerNumber = workerNumber;
+		}
+		
+		protected boolean isRunning() {
+			return !(stopping || qw.stopped);
+		}
+		
+		/**
+		 * Polls a task to execute, returns null when no task is available or when the
+		 * {@link TqBase#getEffectiveMaxConcurrent()} amount of tasks (or batches) are executing.
+		 * The limit also applies to tasks executed by a {@link ICompletableTaskHandler} that are not yet completed.
+		 * The limit is checked without a lock, concurrent workers or a limiter that lowers the limit can exceed it for a short time.
+		 */
+		protected TqEntry pollTask() {
+			
+			final TqBase tq = qw.tq;
+			if (paused || tq.isPaused() || !tq.isTaskAvailable()) {
+				return null;
+			}
+			if ((tq.getMaxBatchSize() > 1 ? tq.getBatchesInProgress() : tq.getInProgress()) >= tq.getEffectiveMaxConcurrent()) {
+				return null;
+			}
+			return nextTask(tq);
+		}
+
+		/**
+		 * Polls a task to add to a batch, does not check the limit.
+		 */
+		protected TqEntry pollBatchTask() {
+
+			final TqBase tq = qw.tq;
+			if (paused || tq.isPaused() || !tq.isTaskAvailable()) {
+				return null;
+			}
+			return nextTask(tq);
+		}
+
+		/**
+		 * Executes the given task together with the tasks that are available right now (no lingering).
+		 */
+		protected void executeBatchWith(TqBase tq, ITaskHandler thandler, TqEntry first) {
+
+			final int maxBatchSize = tq.getMaxBatchSize();
+			tq.batchesInProgress.incrementAndGet();
+			List<TqEntry> batch = new ArrayList<>();
+			batch.add(first);
+			TqEntry te = null;
+			while (batch.size() < maxBatchSize && (te = pollBatchTask()) != null) {
+				batch.add(te);
+			}
+			final long start = startNanos(tq);
+			Throwable error = null;
+			Throwable[] taskErrors = null;
+			try {
+				taskErrors = executeBatch(tq, thandler, batch);
+			} catch (RuntimeException | Error e) {
+				error = e;
+				throw e;
+			} finally {
+				batchExecuted(tq, batch, start, error != null || taskErrors != null);
+				tq.batchesInProgress.decrementAndGet();
+				finishBatch(tq, batch, error, taskErrors);
+			}
+		}
+		
+		@Override
+		public void run() {
+			
+			final TqBase tq = qw.tq;
+			final String originalThreadName = Thread.currentThread().getName();
+			Thread.currentThread().setName(TaskWorker.this.getClass().getSimpleName() + "-" + tq.getName() + "-" + workerNumber);
+			while (isRunning()) {
+				try {
+					TqEntry te = pollTask();
+					for (int i = workerSpinCount; te == null && i > 0 && isRunning(); i--) {
+						te = pollTask();
+					}
+					if (te == null) {
+						qw.idle.incrementAndGet();
+						try {
+							te = pollTask();
+							if (te == null) {
+								long throttleNanos = tq.getThrottleNanos();
+								if (throttleNanos > 0L) {
+									qw.tasksAvailable.tryAcquire(throttleNanos, TimeUnit.NANOSECONDS);
+								} else {
+									qw.tasksAvailable.acquire();
+								}
+							}
+						} catch (InterruptedException ie) {
+							if (isRunning()) {
+								log.warn("Worker for queue " + tq.getName() + " interrupted while waiting for tasks to execute.", ie);
+							}
+						} finally {
+							qw.idle.decrementAndGet();
+						}
+						if (te == null) {
+							continue;
+						}
+					}
+					ITaskHandler thandler = tq.getHandlerFactory().getTaskHandler(tq.getName());
+					if (tq.getMaxBatchSize() > 1) {
+						executeBatchWith(tq, thandler, te);
+						continue;
+					}
+					if (thandler instanceof ICompletableTaskHandler) {
+						executeAsync(tq, (ICompletableTaskHandler) thandler, te);
+						continue;
+					}
+					final long start = startNanos(tq);
+					Throwable error = null;
+					try {
+						thandler.onTask(te.getTaskData(), tq.getName(), te.getQosKey(), te.getTaskId());
+					} catch (RuntimeException | Error e) {
+						error = e;
+						throw e;
+					} finally {
+						taskExecuted(tq, te, start, error != null);
+						finishTask(tq, te, null, error);
+					}
+				} catch (Throwable t) {
+					// an error thrown by a task handler must not stop the worker, the error is already passed on to completeTask
+					log.error("Worker for queue " + tq.getName() + " failed to execute task.", t);
+				}
+			}
+			log.debug("Worker {} for queue {} stopped.", workerNumber, tq.getName());
+			Thread.currentThread().setName(originalThreadName);
+		}
+	} // TaskWorker
+	
 }
@@ -0,0 +1,169 @@
+package com.github.fwi.taskq2;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A queue that executes tasks with a higher priority (see {@link TqEntry#getPriority()}) first.
+ * <br>There is a fixed amount of priority levels (0 to levels - 1), 
+ * a task priority below 0 is level 0 and a task priority above the highest level is the highest level.
+ * Each level is a non-blocking FIFO queue, adding and getting a task does not use a lock.
+ * <br>Optionally, tasks with a low priority can age (see {@link #setAgingMs(long)}) so that they are not starved 
+ * by a continuous flow of high priority tasks.
+ */
+public class TqPriority extends TqBase {
+
+	public static final int DEFAULT_LEVELS = 3;
+
+	private final ConcurrentLinkedQueue<TqEntry>[] queues;
+	private final AtomicInteger[] sizes;
+	/** Per level, the last time (nanos) a task was taken from the level or the level received a task when it was empty. */
+	private final AtomicLongArray lastServed;
+	private final AtomicInteger qsize = new AtomicInteger();
+	
+	private volatile long agingNanos;
+
+	public TqPriority() {
+		this(null, null);
+	}
+
+	public TqPriority(String name, ITaskHandlerFactory handlerFactory) {
+		this(name, handlerFactory, DEFAULT_LEVELS);
+	}
+
+	@SuppressWarnings("unchecked")
+	public TqPriority(String name, ITaskHandlerFactory handlerFactory, int levels) {
+		super(name, handlerFactory);
+		if (levels < 1) {
+			throw new IllegalArgumentException("Amount of priority levels must be at least 1.");
+		}
+		queues = new ConcurrentLinkedQueue[levels];
+		sizes = new AtomicInteger[levels];
+		for (int i = 0; i < levels; i++) {
+			queues[i] = new ConcurrentLinkedQueue<>();
+			sizes[i] = new AtomicInteger();
+		}
+		lastServed = new AtomicLongArray(levels);
+		resetLastServed();
+	}
+
+	public int getLevels() {
+		return queues.length;
+	}
+
+	public long getAgingMs() {
+		return TimeUnit.NANOSECONDS.toMillis(agingNanos);
+	}
+
+	/**
+	 * If a priority level with tasks did not get a task executed for the given time, 
+	 * the next task is taken from that level even if there are tasks with a higher priority.
+	 * <br>Default 0: no aging, tasks with a lower priority only execute when there are no tasks with a higher priority.
+	 * <br>When aging is turned on, the waiting time for all levels starts at the time this method is called.
+	 */
+	public void setAgingMs(long agingMs) {
+		
+		final boolean enable = (agingNanos < 1L && agingMs > 0L);
+		this.agingNanos = TimeUnit.MILLISECONDS.toNanos(agingMs);
+		if (enable) {
+			// last served times are not updated without aging
+			resetLastServed();
+		}
+	}
+
+	protected void resetLastServed() {
+
+		final long now = System.nanoTime();
+		for (int i = 0; i < lastServed.length(); i++) {
+			lastServed.set(i, now);
+		}
+	}
+
+	@Override
+	public void addTask(Object tdata) {
+		addTask(tdata, 0);
+	}
+
+	public void addTask(Object tdata, int priority) {
+
+		TqEntry te = new TqEntry(tdata);
+		te.setPriority(priority);
+		addTask(te);
+	}
+
+	@Override
+	public void addTask(TqEntry te) {
+
+		final int level = getLevel(te.getPriority());
+		queues[level].add(te);
+		if (sizes[level].getAndIncrement() == 0 && agingNanos > 0L) {
+			lastServed.set(level, System.nanoTime());
+		}
+		qsize.incrementAndGet();
+	}
+
+	protected int getLevel(int priority) {
+		return (priority < 0 ? 0 : (priority >= queues.length ? queues.length - 1 : priority));
+	}
+
+	@Override
+	public TqEntry getNextTask() {
+
+		final long aging = agingNanos;
+		final long now = (aging > 0L ? System.nanoTime() : 0L);
+		TqEntry te = null;
+		// a task might be taken by another thread while looking, try a couple of times.
+		for (int tries = 0; te == null && tries < queues.length && qsize.get() > 0; tries++) {
+			int level = -1;
+			for (int i = queues.length - 1; i >= 0; i--) {
+				if (sizes[i].get() < 1) {
+					continue;
+				}
+				if (level < 0) {
+					level = i;
+					if (aging < 1L) {
+						break;
+					}
+				} else if (now - lastServed.get(i) > aging) {
+					// starving, give this level a turn
+					level = i;
+					break;
+				}
+			}
+			if (level < 0) {
+				break;
+			}
+			te = poll(level, now);
+		}
+		return te;
+	}
+
+	protected TqEntry poll(int level, long now) {
+
+		TqEntry te = queues[level].poll();
+		if (te != null) {
+			sizes[level].decrementAndGet();
+			qsize.decrementAndGet();
+			inProgress.incrementAndGet();
+			if (now != 0L) {
+				lastServed.set(level, now);
+			}
+		}
+		return te;
+	}
+
+	@Override
+	public int getSize() {
+		return qsize.get();
+	}
+
+	/**
+	 * Amount of tasks waiting in the given priority level.
+	 */
+	public int getSize(int level) {
+		return sizes[getLevel(level)].get();
+	}
+
+}
@@ -1,23 +1,46 @@
 package com.github.fwi.taskq2;
 
-import java.util.concurrent.Semaphore;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import com.github.fwi.taskq2.util.SyncCountMap;
-import com.github.fwi.taskq2.util.SyncListMap;
+import com.github.fwi.taskq2.util.TokenBucket;
 
+/**
+ * A queue that executes tasks in turn per Qos-key: 
+ * one task for Qos-key A, then one task for Qos-key B, etc.
+ * Tasks without a Qos-key (null) take a turn as if they all have the same Qos-key.
+ * <br>There is no global lock: each Qos-key has its own deque with tasks
+ * and Qos-keys that have tasks are in a ready-ring (a non-blocking queue).
+ * Adding a task, getting the next task and moving to the next Qos-key are all O(1) operations.
+ * <br>A Qos-key that has {@link #getMaxConcurrentPerQosKey()} tasks in progress is blocked:
+ * it is removed from the ready-ring and put back in the ready-ring when one of its tasks is done
+ * (see {@link #taskDone(TqEntry)}). Blocked Qos-keys are never scanned when looking for the next task.
+ * <br>With a rate limit per Qos-key ({@link #setRateLimitPerQosKey(double, int)}), a Qos-key without tokens is throttled:
+ * it is moved from the ready-ring to a throttled-queue and put back in the ready-ring once a token is available.
+ */
 public class TqQos extends TqBase {
 
-	private static final Logger log = LoggerFactory.getLogger(TqQos.class);
+	/** Map-key for tasks without a Qos-key (the map does not allow null keys). */
+	protected static final Object NO_KEY = new Object();
 
-	private final SyncCountMap<String> inProgressPerKey = new SyncCountMap<>();
-	private final SyncListMap<String, TqEntry> tasksPerKey = new SyncListMap<>();
-	/** Need a fair semaphore so that add does not block poll forever and vice versa. */
-	private final Semaphore updateLock = new Semaphore(1, true);
+	private final ConcurrentHashMap<Object, KeyQueue> tasksPerKey = new ConcurrentHashMap<>();
+	private final ConcurrentLinkedQueue<KeyQueue> readyKeys = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger qsize = new AtomicInteger();
+	private final AtomicInteger qosKeys = new AtomicInteger();
+	private final AtomicInteger blockedKeys = new AtomicInteger();
+	/** Qos-keys without a token, in order of being throttled. */
+	private final ConcurrentLinkedQueue<KeyQueue> throttledKeys = new ConcurrentLinkedQueue<>();
+	/** Qos-keys without tasks that are kept until the rate limit bucket is full again. */
+	private final ConcurrentLinkedQueue<KeyQueue> idleKeys = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger throttledKeysCount = new AtomicInteger();
+	private final ReentrantLock releaseLock = new ReentrantLock();
 
 	private volatile int maxConcurrentPerQosKey;
+	private volatile double keyRatePerSecond;
+	private volatile int keyRateBurst;
 
 	public TqQos() {
 		this(null, null);
@@ -27,6 +50,11 @@ public class TqQos extends TqBase {
 		super(name, handlerFactory);
 	}
 
+	/**
+	 * The maximum amount of tasks in progress per Qos-key, 
+	 * default 0 which means {@link #getMaxConcurrent()} (i.e. no limit per Qos-key).
+	 * <br>Tasks without a Qos-key are not limited per key.
+	 */
 	public int getMaxConcurrentPerQosKey() {
 		return (maxConcurrentPerQosKey < 1 ? getMaxConcurrent() : maxConcurrentPerQosKey);
 	}
@@ -34,6 +62,29 @@ public class TqQos extends TqBase {
 		this.maxConcurrentPerQosKey = maxConcurrentPerQosKey;
 	}
 
+	/**
+	 * Limits the amount of tasks taken for execution per second for each Qos-key.
+	 * Tasks without a Qos-key are not limited per key (use {@link #setRateLimit(double, int)} to limit the queue).
+	 * <br>Only applies to Qos-keys that get tasks after this method was called.
+	 * Qos-keys are kept in memory until the rate limit allows a full burst of tasks again,
+	 * this prevents a Qos-key from exceeding the rate limit by having one task at a time.
+	 * @param tasksPerSecond the rate per Qos-key, 0 or less to remove the rate limit.
+	 * @param burst the amount of tasks for a Qos-key that can be taken at once after the Qos-key was idle (minimum 1).
+	 */
+	public void setRateLimitPerQosKey(double tasksPerSecond, int burst) {
+
+		this.keyRateBurst = burst;
+		this.keyRatePerSecond = tasksPerSecond;
+	}
+
+	public double getRateLimitPerQosKey() {
+		return keyRatePerSecond;
+	}
+
+	public int getRateLimitBurstPerQosKey() {
+		return keyRateBurst;
+	}
+
 	@Override
 	public void addTask(Object tdata) {
 		addTask(tdata, null);
@@ -43,86 +94,271 @@ public class TqQos extends TqBase {
 		addTask(new TqEntry(tdata, qosKey));
 	}
 
-	public void addTask(TqEntry te) {
+	@Override
+	public void addTask(final TqEntry te) {
 
-		if (te.getQosKey() == null) {
-			tasksPerKey.add(te.getQosKey(), te);
-			return;
-		}
-		boolean havePermit = false;
-		try {
-			updateLock.acquire();
-			havePermit = true;
-			tasksPerKey.add(te.getQosKey(), te);
-		} catch (Exception e) {
-			log.error("Could not add task to queue " + getName() + ".", e);
-		} finally {
-			if (havePermit) {
-				updateLock.release();
+		tasksPerKey.compute(mapKey(te.getQosKey()), (k, kq) -> {
+			if (kq == null) {
+				kq = new KeyQueue(k);
+				double rate = keyRatePerSecond;
+				if (k != NO_KEY && rate > 0.0d) {
+					kq.rate = new TokenBucket(rate, keyRateBurst);
+				}
 			}
-		}
+			if (kq.tasks.isEmpty() && k != NO_KEY) {
+				qosKeys.incrementAndGet();
+			}
+			kq.tasks.add(te);
+			if (!kq.inRing && !kq.blocked && !kq.throttled) {
+				if (k == NO_KEY || kq.inProgress < getMaxConcurrentPerQosKey()) {
+					kq.inRing = true;
+					readyKeys.add(kq);
+				} else {
+					kq.blocked = true;
+					blockedKeys.incrementAndGet();
+				}
+			}
+			return kq;
+		});
+		qsize.incrementAndGet();
 	}
 
 	@Override
 	public TqEntry getNextTask() {
 
-		if (tasksPerKey.getSize() < 1) {
+		final TqEntry[] next = new TqEntry[1];
+		KeyQueue kq = null;
+		while (next[0] == null && (kq = readyKeys.poll()) != null) {
+			takeTask(kq, next);
+		}
+		TqEntry te = next[0];
+		if (te != null) {
+			qsize.decrementAndGet();
+			inProgress.incrementAndGet();
+		}
+		return te;
+	}
+
+	/**
+	 * Takes a task from the key-queue taken from the ready-ring, unless the key-queue is throttled.
+	 */
+	protected void takeTask(KeyQueue kq, final TqEntry[] next) {
+
+		// Only the thread that took the key-queue from the ring can update the ring-state of the key-queue.
+		tasksPerKey.computeIfPresent(kq.key, (k, current) -> {
+			current.inRing = false;
+			final long now = (current.rate == null ? 0L : System.nanoTime());
+			if (current.rate != null && !current.rate.tryAcquire(now)) {
+				throttle(current, now);
+				return current;
+			}
+			final TqEntry te = current.tasks.poll();
+			if (te == null) {
+				// an empty key-queue in the ring, there is no task to count and the token is not used
+				if (current.rate != null) {
+					current.rate.cancel();
+				}
+				return keep(current);
+			}
+			next[0] = te;
+			if (k != NO_KEY) {
+				current.inProgress++;
+				if (current.tasks.isEmpty()) {
+					qosKeys.decrementAndGet();
+				} else if (current.inProgress >= getMaxConcurrentPerQosKey()) {
+					current.blocked = true;
+					blockedKeys.incrementAndGet();
+				}
+			}
+			if (!current.tasks.isEmpty() && !current.blocked) {
+				if (current.rate != null && current.rate.getWaitNanos(now) > 0L) {
+					throttle(current, now);
+				} else {
+					current.inRing = true;
+					readyKeys.add(current);
+				}
+			}
+			return keep(current);
+		});
+	}
+
+	/** Must be called within a compute-function. */
+	protected void throttle(KeyQueue kq, long now) {
+
+		kq.throttled = true;
+		kq.throttledUntil = now + kq.rate.getWaitNanos(now);
+		throttledKeysCount.incrementAndGet();
+		throttledKeys.add(kq);
+	}
+
+	/**
+	 * Must be called within a compute-function. 
+	 * @return null if the key-queue can be removed from the tasks-per-key map.
+	 */
+	protected KeyQueue keep(KeyQueue kq) {
+
+		if (!kq.isUnused()) {
+			return kq;
+		}
+		if (kq.rate == null || kq.rate.isFull(System.nanoTime())) {
 			return null;
 		}
-		boolean havePermit = false;
-		TqEntry te = null;
-		String qosKey = null;
+		if (!kq.idle) {
+			kq.idle = true;
+			idleKeys.add(kq);
+		}
+		return kq;
+	}
+
+	/**
+	 * Puts throttled Qos-keys that have a token available back in the ready-ring
+	 * and removes idle Qos-keys that have a full rate limit bucket.
+	 * Only one thread does this at a time, other threads skip it.
+	 */
+	protected void releaseThrottledKeys() {
+
+		if ((throttledKeys.isEmpty() && idleKeys.isEmpty()) || !releaseLock.tryLock()) {
+			return;
+		}
 		try {
-			updateLock.acquire();
-			havePermit = true;
-			int maxKeys = tasksPerKey.getSizeKeys();
-			if (maxKeys < 1) {
-				// fast track - no need to check for any in-progress counts.
-				qosKey = tasksPerKey.nextKey();
-				te = tasksPerKey.remove(qosKey);
-			} else {
-				int maxPerKey = getMaxConcurrentPerQosKey();
-				int keyNumber = 0;
-				while (te == null && keyNumber < maxKeys) {
-					String key = tasksPerKey.nextKey();
-					if (inProgressPerKey.getCount(key) < maxPerKey) {
-						qosKey = key;
-						te = tasksPerKey.remove(key);
+			final long now = System.nanoTime();
+			KeyQueue kq = null;
+			while ((kq = throttledKeys.peek()) != null && kq.throttledUntil - now <= 0L) {
+				throttledKeys.poll();
+				tasksPerKey.computeIfPresent(kq.key, (k, current) -> {
+					current.throttled = false;
+					throttledKeysCount.decrementAndGet();
+					if (!current.tasks.isEmpty()) {
+						if (current.inProgress >= getMaxConcurrentPerQosKey()) {
+							current.blocked = true;
+							blockedKeys.incrementAndGet();
+						} else {
+							current.inRing = true;
+							readyKeys.add(current);
+						}
 					}
-					keyNumber++;
-				}
-				if (te == null) {
-					qosKey = tasksPerKey.nextKey();
-					te = tasksPerKey.remove(qosKey);
-				}
+					return keep(current);
+				});
 			}
-			if (te != null) {
-				inProgress.incrementAndGet();
+			while ((kq = idleKeys.peek()) != null && kq.rate.isFull(now)) {
+				idleKeys.poll();
+				tasksPerKey.computeIfPresent(kq.key, (k, current) -> {
+					current.idle = false;
+					return keep(current);
+				});
 			}
-		} catch (Exception e) {
-			log.warn("Could not remove a task from queue " + getName() + ".", e);
 		} finally {
-			if (havePermit) {
-				updateLock.release();
-			}
+			releaseLock.unlock();
 		}
-		return te;
 	}
-	
+
+	/**
+	 * Puts a blocked Qos-key back in the ready-ring if the Qos-key is below the maximum amount of tasks in progress.
+	 */
 	@Override
 	public void taskDone(TqEntry te) {
-		
+
 		super.taskDone(te);
-		inProgressPerKey.decrement(te.getQosKey());
+		if (te.getQosKey() == null) {
+			return;
+		}
+		tasksPerKey.computeIfPresent(te.getQosKey(), (k, current) -> {
+			current.inProgress--;
+			if (current.blocked && current.inProgress < getMaxConcurrentPerQosKey()) {
+				current.blocked = false;
+				blockedKeys.decrementAndGet();
+				current.inRing = true;
+				readyKeys.add(current);
+			}
+			return keep(current);
+		});
+	}
+
+	/**
+	 * True if there is a Qos-key in the ready-ring, 
+	 * false if there are no tasks or all Qos-keys with tasks are blocked or throttled.
+	 */
+	@Override
+	public boolean isTaskAvailable() {
+
+		releaseThrottledKeys();
+		return !readyKeys.isEmpty();
+	}
+
+	/**
+	 * Includes the time until the first throttled Qos-key has a token, if there are no Qos-keys in the ready-ring.
+	 */
+	@Override
+	public long getThrottleNanos() {
+
+		long throttleNanos = super.getThrottleNanos();
+		KeyQueue kq = throttledKeys.peek();
+		if (kq != null && readyKeys.isEmpty()) {
+			throttleNanos = Math.max(throttleNanos, Math.max(1L, kq.throttledUntil - System.nanoTime()));
+		}
+		return throttleNanos;
 	}
 
 	@Override
 	public int getSize() {
-		return tasksPerKey.getSize();
+		return qsize.get();
 	}
 
+	/**
+	 * Number of Qos-keys with tasks (tasks without a Qos-key are not counted).
+	 */
 	public int getSizeKeys() {
-		return tasksPerKey.getSizeKeys();
+		return qosKeys.get();
+	}
+
+	/**
+	 * Number of Qos-keys with tasks that cannot be executed because the Qos-key has the maximum amount of tasks in progress.
+	 */
+	public int getSizeBlockedKeys() {
+		return blockedKeys.get();
+	}
+
+	/**
+	 * Number of Qos-keys that are waiting for a token from the rate limit per Qos-key.
+	 */
+	public int getSizeThrottledKeys() {
+		return throttledKeysCount.get();
+	}
+
+	protected static Object mapKey(String qosKey) {
+		return (qosKey == null ? NO_KEY : qosKey);
+	}
+
+	/**
+	 * The tasks for one Qos-key. Only updated within a compute-function of the tasks-per-key map.
+	 */
+	protected static class KeyQueue {
+
+		final Object key;
+		final ArrayDeque<TqEntry> tasks = new ArrayDeque<>();
+		/** True when this key-queue is in the ready-ring or owned by the thread that just took it from the ring. */
+		boolean inRing;
+		/** True when this key-queue has tasks but also the maximum amount of tasks in progress. */
+		boolean blocked;
+		/** Amount of tasks in progress, not counted for tasks without a Qos-key. */
+		int inProgress;
+		/** Rate limit for this Qos-key, null if there is no rate limit per Qos-key. */
+		TokenBucket rate;
+		/** True when this key-queue is in the throttled-queue. */
+		boolean throttled;
+		/** The time at which a token is available for a throttled key-queue, read outside of a compute-function. */
+		volatile long throttledUntil;
+		/** True when this key-queue is in the idle-queue. */
+		boolean idle;
+
+		KeyQueue(Object key) {
+			this.key = key;
+		}
+
+		/** If true, the key-queue can be removed from the tasks-per-key map. */
+		boolean isUnused() {
+			return (tasks.isEmpty() && inProgress < 1 && !throttled);
+		}
 	}
 
 }
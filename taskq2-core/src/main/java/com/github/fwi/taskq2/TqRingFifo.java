@@ -0,0 +1,84 @@
+package com.github.fwi.taskq2;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.fwi.taskq2.util.MpmcRingBuffer;
+
+/**
+ * A first-in first-out queue backed by a fixed size array ({@link MpmcRingBuffer}), 
+ * adding a task does not allocate memory like the linked nodes of a {@link TqFifo}.
+ * <br>The queue capacity ({@link #setCapacity(int)}) is set to the size of the array 
+ * so that the add-methods of {@link TqGroup} do not add more tasks than fit in the array.
+ * Adding a task directly via {@link #addTask(TqEntry)} when the array is full throws an {@link IllegalStateException}.
+ * <br>See also {@link TqGroup#setRecycle(boolean)}.
+ */
+public class TqRingFifo extends TqBase {
+
+	public static final int DEFAULT_RING_SIZE = 8192;
+
+	private final MpmcRingBuffer<TqEntry> ring;
+	/** The amount of tasks added to and not yet taken from the ring, see {@link #getSize()}. */
+	private final AtomicInteger size = new AtomicInteger();
+
+	public TqRingFifo() {
+		this(null, null);
+	}
+
+	public TqRingFifo(String name, ITaskHandlerFactory handlerFactory) {
+		this(name, handlerFactory, DEFAULT_RING_SIZE);
+	}
+
+	/**
+	 * @param ringSize the maximum amount of tasks waiting in the queue, rounded up to a power of two.
+	 */
+	public TqRingFifo(String name, ITaskHandlerFactory handlerFactory, int ringSize) {
+		super(name, handlerFactory);
+		ring = new MpmcRingBuffer<>(ringSize);
+		setCapacity(ring.getCapacity());
+	}
+
+	/**
+	 * The capacity cannot be larger than {@link #getRingSize()}.
+	 */
+	@Override
+	public void setCapacity(int capacity) {
+		super.setCapacity(capacity < 1 || capacity > getRingSize() ? getRingSize() : capacity);
+	}
+
+	public int getRingSize() {
+		return ring.getCapacity();
+	}
+
+	@Override
+	public void addTask(TqEntry te) {
+
+		if (!ring.offer(te)) {
+			throw new IllegalStateException("Queue " + getName() + " is full (" + getRingSize() + " tasks).");
+		}
+		size.incrementAndGet();
+	}
+
+	@Override
+	public TqEntry getNextTask() {
+
+		TqEntry te = ring.poll();
+		if (te != null) {
+			size.decrementAndGet();
+			inProgress.incrementAndGet();
+		}
+		return te;
+	}
+
+	/**
+	 * The amount of tasks that were added and not yet taken. 
+	 * Unlike the size of the ring, this does not include slots claimed by a producer that did not yet store the task,
+	 * so a dispatcher that sees a task available will find the task in the ring.
+	 */
+	@Override
+	public int getSize() {
+
+		final int s = size.get();
+		return (s < 0 ? 0 : s);
+	}
+
+}
@@ -0,0 +1,268 @@
+package com.github.fwi.taskq2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.github.fwi.taskq2.util.LatencyHistogram;
+
+/**
+ * Latency statistics for a queue, see {@link TqBase#setStatsEnabled(boolean)}.
+ * <br>The life of a task is split in three parts:
+ * <br>- wait time: from adding the task to the task queue group until the task is taken from the queue for execution.
+ * <br>- dispatch time: from taken from the queue until the task handler is called (waiting for a thread from the executor).
+ * Only recorded when enabled (see {@link #setDispatchTimeEnabled(boolean)}) and not in worker-pull mode 
+ * (a worker calls the task handler right after taking the task from the queue).
+ * <br>- execution time: from calling the task handler until the task is done.
+ * <br>To keep the overhead low, the clock is read when a task is done and, for one in {@link #getWaitTimeSampling()} tasks, 
+ * when a task is added.
+ * The dispatcher reads the clock once for all tasks it dispatches in one round and this time is also the start time 
+ * of the tasks (unless dispatch time is enabled). A worker reads the clock when it takes a task from the queue.
+ * <br>Optionally, statistics are kept per Qos-key for the Qos-keys with the most tasks, see {@link #setMaxQosKeys(int)}.
+ */
+public class TqStats {
+
+	private final LatencyHistogram waitTime = new LatencyHistogram();
+	private final LatencyHistogram dispatchTime = new LatencyHistogram();
+	private final LatencyHistogram executionTime = new LatencyHistogram();
+	private final ConcurrentHashMap<String, QosKeyStats> qosKeyStats = new ConcurrentHashMap<>();
+	private final ReentrantLock evictLock = new ReentrantLock();
+	private volatile int maxQosKeys;
+	private volatile boolean dispatchTimeEnabled;
+	private volatile int waitTimeSampling = 4;
+	/** Counter for wait time samples, not thread-safe: a lost update only shifts the next sample. */
+	private int waitTimeSample;
+
+	/**
+	 * The maximum amount of Qos-keys to keep statistics for, 0 (default) for no statistics per Qos-key.
+	 * <br>When the maximum is reached, the Qos-key with the least tasks is replaced by a new Qos-key
+	 * (the new Qos-key starts with the task count of the replaced Qos-key, so that a new Qos-key can become a top Qos-key).
+	 */
+	public int getMaxQosKeys() {
+		return maxQosKeys;
+	}
+	public void setMaxQosKeys(int maxQosKeys) {
+
+		this.maxQosKeys = maxQosKeys;
+		if (maxQosKeys < 1) {
+			qosKeyStats.clear();
+		}
+	}
+
+	/**
+	 * Record the dispatch time separately from the execution time, false (default) to save a clock read per task.
+	 * When false, the dispatch time is part of the execution time.
+	 */
+	public boolean isDispatchTimeEnabled() {
+		return dispatchTimeEnabled;
+	}
+	public void setDispatchTimeEnabled(boolean dispatchTimeEnabled) {
+		this.dispatchTimeEnabled = dispatchTimeEnabled;
+	}
+
+	/**
+	 * Record the wait time for one in <tt>waitTimeSampling</tt> tasks (default 4), 1 to record the wait time for all tasks.
+	 * Recording the wait time costs a clock read when the task is added, sampling keeps the overhead per task low.
+	 * The execution time is recorded for all tasks.
+	 */
+	public int getWaitTimeSampling() {
+		return waitTimeSampling;
+	}
+	public void setWaitTimeSampling(int waitTimeSampling) {
+		this.waitTimeSampling = waitTimeSampling;
+	}
+
+	/**
+	 * Called when a task is added to the queue, sets the time the task was added when the wait time is sampled.
+	 */
+	public void taskAdded(TqEntry te) {
+
+		if (sampleWaitTime()) {
+			te.enqueuedNanos = System.nanoTime();
+		}
+	}
+
+	/**
+	 * @return true if the wait time for the task that is added should be recorded, see {@link #setWaitTimeSampling(int)}.
+	 */
+	public boolean sampleWaitTime() {
+
+		final int sampling = waitTimeSampling;
+		if (sampling < 2) {
+			return true;
+		}
+		final int sample = waitTimeSample + 1;
+		if (sample >= sampling) {
+			waitTimeSample = 0;
+			return true;
+		}
+		waitTimeSample = sample;
+		return false;
+	}
+
+	/**
+	 * Records the latencies for a task that is done.
+	 * @param startNanos the time the task handler was called.
+	 * @param endNanos the time the task was done.
+	 */
+	public void record(TqEntry te, long startNanos, long endNanos) {
+
+		final long enqueued = te.enqueuedNanos;
+		long dispatched = te.dispatchedNanos;
+		if (dispatched == 0L) {
+			dispatched = startNanos;
+		} else if (dispatchTimeEnabled) {
+			dispatchTime.record(startNanos - dispatched);
+		}
+		if (enqueued != 0L) {
+			waitTime.record(dispatched - enqueued);
+		}
+		executionTime.record(endNanos - startNanos);
+		if (maxQosKeys > 0 && te.getQosKey() != null) {
+			QosKeyStats ks = getQosKeyStats(te.getQosKey());
+			if (ks != null) {
+				if (enqueued != 0L) {
+					ks.waitTime.record(dispatched - enqueued);
+				}
+				ks.executionTime.record(endNanos - startNanos);
+				ks.count.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * @return null if the Qos-key is not tracked and another thread is replacing a Qos-key right now.
+	 */
+	protected QosKeyStats getQosKeyStats(String qosKey) {
+
+		QosKeyStats ks = qosKeyStats.get(qosKey);
+		if (ks != null) {
+			return ks;
+		}
+		if (qosKeyStats.size() < maxQosKeys) {
+			// can exceed the maximum a little bit when Qos-keys are added concurrently
+			return qosKeyStats.computeIfAbsent(qosKey, k -> new QosKeyStats(k, 0L));
+		}
+		if (!evictLock.tryLock()) {
+			return null;
+		}
+		try {
+			if ((ks = qosKeyStats.get(qosKey)) != null) {
+				return ks;
+			}
+			long startCount = 0L;
+			if (qosKeyStats.size() >= maxQosKeys) {
+				QosKeyStats least = null;
+				for (QosKeyStats candidate : qosKeyStats.values()) {
+					if (least == null || candidate.getCount() < least.getCount()) {
+						least = candidate;
+					}
+				}
+				if (least != null) {
+					qosKeyStats.remove(least.qosKey);
+					startCount = least.getCount();
+				}
+			}
+			ks = new QosKeyStats(qosKey, startCount);
+			qosKeyStats.put(qosKey, ks);
+		} finally {
+			evictLock.unlock();
+		}
+		return ks;
+	}
+
+	public LatencyHistogram getWaitTime() {
+		return waitTime;
+	}
+
+	public LatencyHistogram getDispatchTime() {
+		return dispatchTime;
+	}
+
+	public LatencyHistogram getExecutionTime() {
+		return executionTime;
+	}
+
+	/**
+	 * @return the tracked Qos-keys, most tasks first, at most <tt>topN</tt> Qos-keys.
+	 */
+	public List<QosKeyStats> getTopQosKeys(int topN) {
+
+		List<QosKeyStats> top = new ArrayList<>(qosKeyStats.values());
+		Collections.sort(top, (a, b) -> Long.compare(b.getCount(), a.getCount()));
+		return (top.size() > topN ? new ArrayList<>(top.subList(0, Math.max(0, topN))) : top);
+	}
+
+	/**
+	 * Snapshots of the histograms per Qos-key, see {@link #getTopQosKeys(int)}.
+	 */
+	public Map<String, LatencyHistogram.Snapshot> getTopQosKeysExecutionTime(int topN) {
+
+		Map<String, LatencyHistogram.Snapshot> top = new LinkedHashMap<>();
+		for (QosKeyStats ks : getTopQosKeys(topN)) {
+			top.put(ks.qosKey, ks.executionTime.getSnapshot());
+		}
+		return top;
+	}
+
+	public void reset() {
+
+		waitTime.reset();
+		dispatchTime.reset();
+		executionTime.reset();
+		qosKeyStats.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "wait time: " + waitTime + ", dispatch time: " + dispatchTime + ", execution time: " + executionTime;
+	}
+
+	/**
+	 * Latency statistics for one Qos-key.
+	 */
+	public static class QosKeyStats {
+
+		private final String qosKey;
+		private final long startCount;
+		/** The amount of recorded tasks, kept separately since the histogram count is not cheap to get. */
+		private final AtomicLong count = new AtomicLong();
+		private final LatencyHistogram waitTime = new LatencyHistogram();
+		private final LatencyHistogram executionTime = new LatencyHistogram();
+
+		QosKeyStats(String qosKey, long startCount) {
+			this.qosKey = qosKey;
+			this.startCount = startCount;
+		}
+
+		public String getQosKey() {
+			return qosKey;
+		}
+
+		/**
+		 * The amount of tasks recorded, including the count inherited from a replaced Qos-key.
+		 */
+		public long getCount() {
+			return startCount + count.get();
+		}
+
+		public LatencyHistogram getWaitTime() {
+			return waitTime;
+		}
+
+		public LatencyHistogram getExecutionTime() {
+			return executionTime;
+		}
+
+		@Override
+		public String toString() {
+			return qosKey + " wait time: " + waitTime + ", execution time: " + executionTime;
+		}
+	}
+
+}
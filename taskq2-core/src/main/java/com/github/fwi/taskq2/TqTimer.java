@@ -0,0 +1,212 @@
+package com.github.fwi.taskq2;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.fwi.taskq2.util.BinarySemaphore;
+
+/**
+ * Holds delayed tasks until they are due and then adds them to their queue in the task queue group,
+ * see {@link TqGroup#addTask(String, TqEntry, long)}.
+ * <br>Uses a hashed timing wheel: a delayed task is put in the bucket for the tick it is due
+ * (with a "rounds" count when the delay is longer than one turn of the wheel).
+ * Scheduling a delayed task is O(1): it is added to a non-blocking queue that is moved to the wheel
+ * by the timer thread on the next tick. The timer thread only runs when there are delayed tasks.
+ * <br>Delayed tasks are due within one tick (default {@link #DEFAULT_TICK_MS}) after their delay.
+ */
+public class TqTimer implements Runnable {
+
+	private static final Logger log = LoggerFactory.getLogger(TqTimer.class);
+
+	public static final long DEFAULT_TICK_MS = 10L;
+	public static final int DEFAULT_WHEEL_SIZE = 512;
+
+	private final TqGroup tgroup;
+	private final long tickNanos;
+	private final Timeout[] wheel;
+	private final int mask;
+	private final ConcurrentLinkedQueue<Timeout> pending = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger size = new AtomicInteger();
+	private final BinarySemaphore timeoutsAvailable = new BinarySemaphore();
+	private final AtomicBoolean running = new AtomicBoolean();
+	private volatile boolean stopped;
+
+	// only used by the timer thread
+	private long startNanos;
+	private long tick;
+	private int wheelSize;
+
+	public TqTimer(TqGroup tgroup) {
+		this(tgroup, DEFAULT_TICK_MS, DEFAULT_WHEEL_SIZE);
+	}
+
+	/**
+	 * @param tickMs the precision of the timer.
+	 * @param wheelSize amount of buckets in the wheel, rounded up to a power of 2.
+	 */
+	public TqTimer(TqGroup tgroup, long tickMs, int wheelSize) {
+		
+		this.tgroup = tgroup;
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs < 1L ? 1L : tickMs);
+		int buckets = 1;
+		while (buckets < wheelSize && buckets < (1 << 30)) {
+			buckets <<= 1;
+		}
+		wheel = new Timeout[buckets];
+		mask = buckets - 1;
+	}
+
+	/**
+	 * Schedules the task to be added to the queue after the given delay.
+	 */
+	public void schedule(String qname, TqEntry te, long delayMs) {
+
+		pending.add(new Timeout(qname, te, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs)));
+		if (size.getAndIncrement() == 0) {
+			timeoutsAvailable.release();
+		}
+	}
+
+	/**
+	 * Amount of delayed tasks that are not yet due.
+	 */
+	public int getSize() {
+		return size.get();
+	}
+
+	public long getTickMs() {
+		return TimeUnit.NANOSECONDS.toMillis(tickNanos);
+	}
+
+	public boolean isRunning() {
+		return running.get();
+	}
+
+	public void stop() {
+		
+		stopped = true;
+		timeoutsAvailable.release();
+	}
+
+	@Override
+	public void run() {
+
+		if (!running.compareAndSet(false, true)) {
+			log.warn("Timer for delayed tasks already running.");
+			return;
+		}
+		stopped = false;
+		final String originalThreadName = Thread.currentThread().getName();
+		if (originalThreadName.contains("-thread-")) {
+			Thread.currentThread().setName(originalThreadName.substring(0, originalThreadName.indexOf("-thread-") + 1) 
+					+ TqTimer.this.getClass().getSimpleName());
+		}
+		boolean idle = true;
+		try {
+			while (!stopped) {
+				try {
+					if (size.get() < 1) {
+						idle = true;
+						timeoutsAvailable.acquire();
+						continue; // check on stopped
+					}
+					if (idle) {
+						idle = false;
+						if (wheelSize < 1) {
+							startNanos = System.nanoTime();
+							tick = 0L;
+						}
+					}
+					long waitNanos = startNanos + (tick + 1L) * tickNanos - System.nanoTime();
+					if (waitNanos > 0L) {
+						LockSupport.parkNanos(this, waitNanos);
+						continue;
+					}
+					transferPending();
+					expireTimeouts((int) (tick & mask));
+					tick++;
+				} catch (InterruptedException ie) {
+					if (!stopped) {
+						log.warn("Timer for delayed tasks interrupted.", ie);
+					}
+				} catch (Exception e) {
+					log.error("Timer for delayed tasks failed to process tick.", e);
+				}
+			}
+		} finally {
+			running.set(false);
+			log.debug("Timer for delayed tasks stopped, delayed tasks: {}", size.get());
+			Thread.currentThread().setName(originalThreadName);
+		}
+	}
+
+	protected void transferPending() {
+
+		Timeout t = null;
+		while ((t = pending.poll()) != null) {
+			long ticks = (t.deadline - startNanos) / tickNanos;
+			if (ticks < tick) {
+				ticks = tick;
+			}
+			t.rounds = (ticks - tick) / wheel.length;
+			int i = (int) (ticks & mask);
+			t.next = wheel[i];
+			wheel[i] = t;
+			wheelSize++;
+		}
+	}
+
+	protected void expireTimeouts(int bucket) {
+
+		Timeout prev = null;
+		Timeout t = wheel[bucket];
+		while (t != null) {
+			Timeout next = t.next;
+			if (t.rounds > 0L) {
+				t.rounds--;
+				prev = t;
+			} else {
+				if (prev == null) {
+					wheel[bucket] = next;
+				} else {
+					prev.next = next;
+				}
+				t.next = null;
+				wheelSize--;
+				size.decrementAndGet();
+				if (!tgroup.addTask(t.qname, t.te)) {
+					if (tgroup.getQueue(t.qname) == null) {
+						log.warn("Could not add delayed task, no queue with name {}", t.qname);
+					} else {
+						// no room in queue, retry on next tick
+						pending.add(t);
+						size.incrementAndGet();
+					}
+				}
+			}
+			t = next;
+		}
+	}
+
+	static class Timeout {
+
+		final String qname;
+		final TqEntry te;
+		final long deadline;
+		long rounds;
+		Timeout next;
+
+		Timeout(String qname, TqEntry te, long deadline) {
+			this.qname = qname;
+			this.te = te;
+			this.deadline = deadline;
+		}
+	}
+
+}
@@ -0,0 +1,188 @@
+package com.github.fwi.taskq2;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A queue with two-level Qos-keys in the format <tt>tenant/user</tt> 
+ * that executes tasks using weighted (deficit) round-robin over tenants 
+ * and plain round-robin over the users of a tenant.
+ * <br>Each tenant has a weight (default 1, see {@link #setTenantWeight(String, int)}): 
+ * when it is a tenant's turn, the tenant can execute "weight" tasks before the next tenant gets a turn. 
+ * Within a tenant, each user with tasks gets one task executed in turn.
+ * <br>A Qos-key without a separator is a tenant with one (unnamed) user, 
+ * tasks without a Qos-key belong to an unnamed tenant.
+ * <br>Only tenants and users with tasks are kept in rotation, the cost of getting the next task 
+ * does not depend on the amount of tenants or users (O(1)).
+ */
+public class TqWeightedQos extends TqBase {
+
+	public static final char KEY_SEPARATOR = '/';
+
+	private final Object lock = new Object();
+	private final HashMap<String, Tenant> tenants = new HashMap<>();
+	private final ArrayDeque<Tenant> tenantTurn = new ArrayDeque<>();
+	private final ConcurrentHashMap<String, Integer> tenantWeights = new ConcurrentHashMap<>();
+	private final AtomicInteger qsize = new AtomicInteger();
+
+	private volatile int defaultWeight = 1;
+
+	public TqWeightedQos() {
+		this(null, null);
+	}
+
+	public TqWeightedQos(String name, ITaskHandlerFactory handlerFactory) {
+		super(name, handlerFactory);
+	}
+
+	public int getDefaultWeight() {
+		return defaultWeight;
+	}
+	/**
+	 * The weight for tenants without a weight set via {@link #setTenantWeight(String, int)}.
+	 */
+	public void setDefaultWeight(int defaultWeight) {
+		this.defaultWeight = (defaultWeight < 1 ? 1 : defaultWeight);
+	}
+
+	public int getTenantWeight(String tenant) {
+
+		Integer weight = tenantWeights.get(tenant == null ? "" : tenant);
+		return (weight == null ? defaultWeight : weight);
+	}
+
+	/**
+	 * Sets the amount of tasks a tenant can execute per turn (minimum 1).
+	 * A changed weight is used from the next turn of the tenant.
+	 */
+	public void setTenantWeight(String tenant, int weight) {
+		tenantWeights.put(tenant == null ? "" : tenant, (weight < 1 ? 1 : weight));
+	}
+
+	public void removeTenantWeight(String tenant) {
+		tenantWeights.remove(tenant == null ? "" : tenant);
+	}
+
+	@Override
+	public void addTask(Object tdata) {
+		addTask(tdata, null);
+	}
+
+	public void addTask(Object tdata, String qosKey) {
+		addTask(new TqEntry(tdata, qosKey));
+	}
+
+	public void addTask(Object tdata, String tenant, String user) {
+		addTask(new TqEntry(tdata, toQosKey(tenant, user)));
+	}
+
+	@Override
+	public void addTask(TqEntry te) {
+
+		final String qosKey = te.getQosKey();
+		String tenantName = "";
+		String userName = "";
+		if (qosKey != null) {
+			int i = qosKey.indexOf(KEY_SEPARATOR);
+			if (i < 0) {
+				tenantName = qosKey;
+			} else {
+				tenantName = qosKey.substring(0, i);
+				userName = qosKey.substring(i + 1);
+			}
+		}
+		synchronized(lock) {
+			Tenant tenant = tenants.get(tenantName);
+			if (tenant == null) {
+				tenant = new Tenant(tenantName);
+				tenant.credit = getTenantWeight(tenantName);
+				tenants.put(tenantName, tenant);
+				tenantTurn.add(tenant);
+			}
+			UserQueue user = tenant.users.get(userName);
+			if (user == null) {
+				user = new UserQueue(userName);
+				tenant.users.put(userName, user);
+				tenant.userTurn.add(user);
+			}
+			user.tasks.add(te);
+		}
+		qsize.incrementAndGet();
+	}
+
+	@Override
+	public TqEntry getNextTask() {
+
+		TqEntry te = null;
+		synchronized(lock) {
+			Tenant tenant = tenantTurn.peek();
+			if (tenant == null) {
+				return null;
+			}
+			UserQueue user = tenant.userTurn.poll();
+			te = user.tasks.poll();
+			if (user.tasks.isEmpty()) {
+				tenant.users.remove(user.name);
+			} else {
+				tenant.userTurn.add(user);
+			}
+			tenant.credit--;
+			if (tenant.userTurn.isEmpty()) {
+				tenantTurn.poll();
+				tenants.remove(tenant.name);
+			} else if (tenant.credit < 1) {
+				// next tenant's turn
+				tenantTurn.add(tenantTurn.poll());
+				tenant.credit = getTenantWeight(tenant.name);
+			}
+		}
+		qsize.decrementAndGet();
+		inProgress.incrementAndGet();
+		return te;
+	}
+
+	@Override
+	public int getSize() {
+		return qsize.get();
+	}
+
+	/**
+	 * Number of tenants with tasks.
+	 */
+	public int getSizeTenants() {
+
+		synchronized(lock) {
+			return tenants.size();
+		}
+	}
+
+	public static String toQosKey(String tenant, String user) {
+		return (user == null ? tenant : (tenant == null ? "" : tenant) + KEY_SEPARATOR + user);
+	}
+
+	static class Tenant {
+
+		final String name;
+		final HashMap<String, UserQueue> users = new HashMap<>();
+		final ArrayDeque<UserQueue> userTurn = new ArrayDeque<>();
+		/** Amount of tasks that can be executed in the current turn. */
+		int credit;
+
+		Tenant(String name) {
+			this.name = name;
+		}
+	}
+
+	static class UserQueue {
+
+		final String name;
+		final ArrayDeque<TqEntry> tasks = new ArrayDeque<>();
+
+		UserQueue(String name) {
+			this.name = name;
+		}
+	}
+
+}
@@ -0,0 +1,30 @@
+package com.github.fwi.taskq2.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.github.fwi.taskq2.TaskDispatched")
+@Label("Task Dispatched")
+@Description("A task was taken from a queue for execution.")
+@Category({ "TaskQ2", "Tasks" })
+@StackTrace(false)
+class TaskDispatchedEvent extends Event {
+
+	@Label("Queue")
+	String queue;
+
+	@Label("Qos Key")
+	String qosKey;
+
+	@Label("Task ID")
+	long taskId;
+
+	@Label("In Progress")
+	@Description("Tasks executing for the queue, including this task.")
+	int inProgress;
+
+}
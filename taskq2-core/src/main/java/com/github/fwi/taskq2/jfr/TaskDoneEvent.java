@@ -0,0 +1,26 @@
+package com.github.fwi.taskq2.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.github.fwi.taskq2.TaskDone")
+@Label("Task Done")
+@Description("A task was done and removed from the task queue group.")
+@Category({ "TaskQ2", "Tasks" })
+@StackTrace(false)
+class TaskDoneEvent extends Event {
+
+	@Label("Queue")
+	String queue;
+
+	@Label("Qos Key")
+	String qosKey;
+
+	@Label("Task ID")
+	long taskId;
+
+}
@@ -0,0 +1,29 @@
+package com.github.fwi.taskq2.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.github.fwi.taskq2.TaskEnqueued")
+@Label("Task Enqueued")
+@Description("A task was added to a queue.")
+@Category({ "TaskQ2", "Tasks" })
+@StackTrace(false)
+class TaskEnqueuedEvent extends Event {
+
+	@Label("Queue")
+	String queue;
+
+	@Label("Qos Key")
+	String qosKey;
+
+	@Label("Task ID")
+	long taskId;
+
+	@Label("Queue Size")
+	int queueSize;
+
+}
@@ -0,0 +1,38 @@
+package com.github.fwi.taskq2.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.github.fwi.taskq2.TaskExecuted")
+@Label("Task Executed")
+@Description("A task handler executed a task (or a batch of tasks).")
+@Category({ "TaskQ2", "Tasks" })
+@StackTrace(false)
+class TaskExecutedEvent extends Event {
+
+	@Label("Queue")
+	String queue;
+
+	@Label("Qos Key")
+	String qosKey;
+
+	@Label("Task ID")
+	long taskId;
+
+	@Label("Batch Size")
+	int batchSize;
+
+	@Label("Execution Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long executionTime;
+
+	@Label("Failed")
+	@Description("The task handler threw an exception.")
+	boolean failed;
+
+}
@@ -0,0 +1,99 @@
+package com.github.fwi.taskq2.jfr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.fwi.taskq2.TqBase;
+import com.github.fwi.taskq2.TqEntry;
+
+/**
+ * Emits Java Flight Recorder events for the life of a task (enqueued, dispatched, executed and done).
+ * <br>Events are disabled by default, enable them with the system property <tt>-Dtaskq2.jfr=true</tt>
+ * and record them with a JFR recording (e.g. <tt>-XX:StartFlightRecording</tt>).
+ * All callers check {@link #ENABLED} first: it is a constant, so the JIT compiler removes the calls when events are disabled.
+ * <br>The JFR API is only used when events are enabled, the library still runs on Java 8 versions without JFR.
+ * <br>Execution events are committed when a task is done and have the execution time as a field,
+ * the event's start time is the time the task was done.
+ */
+public class TqJfr {
+
+	private static final Logger log = LoggerFactory.getLogger(TqJfr.class);
+
+	/** Name of the system property that enables JFR events. */
+	public static final String ENABLED_PROPERTY = "taskq2.jfr";
+
+	/** True when JFR events are emitted. */
+	public static final boolean ENABLED = isJfrEnabled();
+
+	private TqJfr() {}
+
+	private static boolean isJfrEnabled() {
+
+		if (!Boolean.getBoolean(ENABLED_PROPERTY)) {
+			return false;
+		}
+		try {
+			Class.forName("jdk.jfr.Event");
+		} catch (Throwable t) {
+			log.warn("JFR events not available: {}", t.toString());
+			return false;
+		}
+		log.info("JFR events enabled.");
+		return true;
+	}
+
+	public static void taskEnqueued(TqBase tq, TqEntry te) {
+
+		TaskEnqueuedEvent event = new TaskEnqueuedEvent();
+		if (event.shouldCommit()) {
+			event.queue = tq.getName();
+			event.qosKey = te.getQosKey();
+			event.taskId = te.getTaskId();
+			event.queueSize = tq.getSize();
+			event.commit();
+		}
+	}
+
+	public static void taskDispatched(TqBase tq, TqEntry te) {
+
+		TaskDispatchedEvent event = new TaskDispatchedEvent();
+		if (event.shouldCommit()) {
+			event.queue = tq.getName();
+			event.qosKey = te.getQosKey();
+			event.taskId = te.getTaskId();
+			event.inProgress = tq.getInProgress();
+			event.commit();
+		}
+	}
+
+	/**
+	 * @param te the executed task, null for a batch of tasks.
+	 */
+	public static void taskExecuted(TqBase tq, TqEntry te, int batchSize, long startNanos, long endNanos, boolean failed) {
+
+		TaskExecutedEvent event = new TaskExecutedEvent();
+		if (event.shouldCommit()) {
+			event.queue = tq.getName();
+			if (te != null) {
+				event.qosKey = te.getQosKey();
+				event.taskId = te.getTaskId();
+			}
+			event.batchSize = batchSize;
+			event.executionTime = endNanos - startNanos;
+			event.failed = failed;
+			event.commit();
+		}
+	}
+
+	public static void taskDone(TqBase tq, TqEntry te) {
+
+		TaskDoneEvent event = new TaskDoneEvent();
+		if (event.shouldCommit()) {
+			event.queue = tq.getName();
+			event.qosKey = te.getQosKey();
+			event.taskId = te.getTaskId();
+			event.commit();
+		}
+	}
+
+}
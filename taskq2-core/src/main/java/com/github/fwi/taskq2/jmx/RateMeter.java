@@ -0,0 +1,35 @@
+package com.github.fwi.taskq2.jmx;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calculates a rate per second from a counter that is read at intervals (e.g. by a JMX console).
+ * The rate is updated when at least one second has passed since the previous update,
+ * else the previous rate is returned.
+ */
+public class RateMeter {
+
+	private static final long MIN_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1L);
+
+	private long lastCount;
+	private long lastNanos;
+	private double rate;
+
+	public RateMeter(long count) {
+		this.lastCount = count;
+		this.lastNanos = System.nanoTime();
+	}
+
+	public synchronized double getRate(long count) {
+
+		final long now = System.nanoTime();
+		final long elapsed = now - lastNanos;
+		if (elapsed >= MIN_INTERVAL_NANOS) {
+			rate = (count - lastCount) * (double) TimeUnit.SECONDS.toNanos(1L) / elapsed;
+			lastCount = count;
+			lastNanos = now;
+		}
+		return rate;
+	}
+
+}
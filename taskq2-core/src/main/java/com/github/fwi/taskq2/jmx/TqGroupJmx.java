@@ -0,0 +1,82 @@
+package com.github.fwi.taskq2.jmx;
+
+import java.util.List;
+
+import com.github.fwi.taskq2.TqGroup;
+
+/**
+ * Exposes a task queue group via JMX. All attributes are read without locks.
+ */
+public class TqGroupJmx implements TqGroupMXBean {
+
+	private final TqGroup tgroup;
+	private final RateMeter executedRate;
+
+	public TqGroupJmx(TqGroup tgroup) {
+		this.tgroup = tgroup;
+		this.executedRate = new RateMeter(tgroup.getTasksExecuted());
+	}
+
+	@Override
+	public String[] getQueueNames() {
+
+		List<String> names = tgroup.getQueueNames();
+		return names.toArray(new String[names.size()]);
+	}
+
+	@Override
+	public int getSize() {
+		return tgroup.getSize();
+	}
+
+	@Override
+	public int getDelayedSize() {
+		return tgroup.getDelayedSize();
+	}
+
+	@Override
+	public long getTasksAdded() {
+		return tgroup.getTasksAdded();
+	}
+
+	@Override
+	public long getTasksExecuted() {
+		return tgroup.getTasksExecuted();
+	}
+
+	@Override
+	public double getTasksExecutedPerSecond() {
+		return executedRate.getRate(tgroup.getTasksExecuted());
+	}
+
+	@Override
+	public int getCapacity() {
+		return tgroup.getCapacity();
+	}
+
+	@Override
+	public boolean isPaused() {
+		return tgroup.isPaused();
+	}
+
+	@Override
+	public void setPaused(boolean paused) {
+		tgroup.setPaused(paused);
+	}
+
+	@Override
+	public boolean pauseQueue(String qname) {
+		return tgroup.setPaused(qname, true);
+	}
+
+	@Override
+	public boolean resumeQueue(String qname) {
+		return tgroup.setPaused(qname, false);
+	}
+
+	@Override
+	public boolean setMaxConcurrent(String qname, int maxConcurrent) {
+		return tgroup.setMaxConcurrent(qname, maxConcurrent);
+	}
+
+}
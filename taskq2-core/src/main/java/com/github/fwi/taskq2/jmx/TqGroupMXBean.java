@@ -0,0 +1,40 @@
+package com.github.fwi.taskq2.jmx;
+
+/**
+ * Management interface for a task queue group, see {@link TqJmx#register(com.github.fwi.taskq2.TqGroup, String)}.
+ */
+public interface TqGroupMXBean {
+
+	String[] getQueueNames();
+
+	/** Tasks waiting and executing. */
+	int getSize();
+
+	int getDelayedSize();
+
+	long getTasksAdded();
+
+	long getTasksExecuted();
+
+	/** Tasks executed per second since the previous read of this attribute (measured over at least one second). */
+	double getTasksExecutedPerSecond();
+
+	int getCapacity();
+
+	boolean isPaused();
+
+	void setPaused(boolean paused);
+
+	/** @return false if the queue does not exist. */
+	boolean pauseQueue(String qname);
+
+	/** @return false if the queue does not exist. */
+	boolean resumeQueue(String qname);
+
+	/** 
+	 * Also changes the amount of workers in worker-pull mode, see {@link com.github.fwi.taskq2.TqGroup#setMaxConcurrent(String, int)}.
+	 * @return false if the queue does not exist. 
+	 */
+	boolean setMaxConcurrent(String qname, int maxConcurrent);
+
+}
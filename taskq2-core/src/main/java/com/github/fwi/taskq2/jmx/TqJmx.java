@@ -0,0 +1,98 @@
+package com.github.fwi.taskq2.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.fwi.taskq2.TqBase;
+import com.github.fwi.taskq2.TqGroup;
+
+/**
+ * Registers MBeans with the platform MBean server.
+ * <br>Object names have the form <tt>com.github.fwi.taskq2:type=TqGroup,name=[group name]</tt>
+ * and <tt>com.github.fwi.taskq2:type=TqQueue,group=[group name],name=[queue name]</tt>.
+ */
+public class TqJmx {
+
+	private static final Logger log = LoggerFactory.getLogger(TqJmx.class);
+
+	public static final String DOMAIN = "com.github.fwi.taskq2";
+
+	private TqJmx() {}
+
+	/**
+	 * Registers an MBean for the task queue group and for each queue in the group.
+	 * Queues added to the group later can be registered via {@link #registerQueue(TqGroup, TqBase, String)}.
+	 * @return the names of the registered MBeans, use these to unregister the MBeans via {@link #unregister(Collection)}.
+	 */
+	public static List<ObjectName> register(TqGroup tgroup, String groupName) {
+
+		List<ObjectName> names = new ArrayList<>();
+		names.add(register(new TqGroupJmx(tgroup), objectName("TqGroup", groupName)));
+		for (String qname : tgroup.getQueueNames()) {
+			TqBase tq = tgroup.getQueue(qname);
+			if (tq != null) {
+				names.add(registerQueue(tgroup, tq, groupName));
+			}
+		}
+		return names;
+	}
+
+	public static ObjectName registerQueue(TqGroup tgroup, TqBase tq, String groupName) {
+		return register(new TqQueueJmx(tgroup, tq), objectName(DOMAIN + ":type=TqQueue,group=" 
+				+ ObjectName.quote(groupName) + ",name=" + ObjectName.quote(tq.getName())));
+	}
+
+	public static ObjectName objectName(String type, String name) {
+		return objectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+	}
+
+	public static ObjectName objectName(String name) {
+
+		try {
+			return new ObjectName(name);
+		} catch (Exception e) {
+			throw new IllegalArgumentException("Invalid MBean name " + name, e);
+		}
+	}
+
+	/**
+	 * Registers an MBean, an existing MBean with the same name is replaced.
+	 */
+	public static ObjectName register(Object mbean, ObjectName name) {
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(mbean, name);
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to register MBean " + name, e);
+		}
+		log.debug("Registered MBean {}", name);
+		return name;
+	}
+
+	public static void unregister(Collection<ObjectName> names) {
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (ObjectName name : names) {
+			try {
+				if (server.isRegistered(name)) {
+					server.unregisterMBean(name);
+				}
+			} catch (Exception e) {
+				log.warn("Unable to unregister MBean " + name + " - " + e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,91 @@
+package com.github.fwi.taskq2.jmx;
+
+import com.github.fwi.taskq2.TqBase;
+import com.github.fwi.taskq2.TqGroup;
+import com.github.fwi.taskq2.TqQos;
+
+/**
+ * Exposes a task queue via JMX. All attributes are read without locks.
+ */
+public class TqQueueJmx implements TqQueueMXBean {
+
+	private final TqGroup tgroup;
+	private final TqBase tq;
+	private final RateMeter doneRate;
+
+	public TqQueueJmx(TqGroup tgroup, TqBase tq) {
+		this.tgroup = tgroup;
+		this.tq = tq;
+		this.doneRate = new RateMeter(tq.getTasksDone());
+	}
+
+	@Override
+	public String getName() {
+		return tq.getName();
+	}
+
+	@Override
+	public String getType() {
+		return tq.getClass().getName();
+	}
+
+	@Override
+	public int getSize() {
+		return tq.getSize();
+	}
+
+	@Override
+	public int getInProgress() {
+		return tq.getInProgress();
+	}
+
+	@Override
+	public int getSizeQosKeys() {
+		return (tq instanceof TqQos ? ((TqQos) tq).getSizeKeys() : -1);
+	}
+
+	@Override
+	public int getMaxConcurrent() {
+		return tq.getMaxConcurrent();
+	}
+
+	@Override
+	public void setMaxConcurrent(int maxConcurrent) {
+
+		if (!tgroup.setMaxConcurrent(tq.getName(), maxConcurrent)) {
+			// queue was removed from the task queue group
+			tq.setMaxConcurrent(maxConcurrent);
+		}
+	}
+
+	@Override
+	public int getEffectiveMaxConcurrent() {
+		return tq.getEffectiveMaxConcurrent();
+	}
+
+	@Override
+	public int getCapacity() {
+		return tq.getCapacity();
+	}
+
+	@Override
+	public boolean isPaused() {
+		return tq.isPaused();
+	}
+
+	@Override
+	public void setPaused(boolean paused) {
+		tgroup.setPaused(tq.getName(), paused);
+	}
+
+	@Override
+	public long getTasksDone() {
+		return tq.getTasksDone();
+	}
+
+	@Override
+	public double getTasksDonePerSecond() {
+		return doneRate.getRate(tq.getTasksDone());
+	}
+
+}
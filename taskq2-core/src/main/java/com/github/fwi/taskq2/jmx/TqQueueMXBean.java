@@ -0,0 +1,40 @@
+package com.github.fwi.taskq2.jmx;
+
+/**
+ * Management interface for a task queue, see {@link TqJmx#register(com.github.fwi.taskq2.TqGroup, String)}.
+ */
+public interface TqQueueMXBean {
+
+	String getName();
+
+	/** The class name of the queue. */
+	String getType();
+
+	/** Tasks waiting. */
+	int getSize();
+
+	int getInProgress();
+
+	/** Number of Qos-keys with tasks, -1 if the queue does not use Qos-keys. */
+	int getSizeQosKeys();
+
+	int getMaxConcurrent();
+
+	/** Also changes the amount of workers in worker-pull mode, see {@link com.github.fwi.taskq2.TqGroup#setMaxConcurrent(String, int)}. */
+	void setMaxConcurrent(int maxConcurrent);
+
+	/** The maximum amount of tasks executing including the limit from a limiter. */
+	int getEffectiveMaxConcurrent();
+
+	int getCapacity();
+
+	boolean isPaused();
+
+	void setPaused(boolean paused);
+
+	long getTasksDone();
+
+	/** Tasks done per second since the previous read of this attribute (measured over at least one second). */
+	double getTasksDonePerSecond();
+
+}
@@ -0,0 +1,70 @@
+package com.github.fwi.taskq2.limit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Additive increase, multiplicative decrease:
+ * the limit is increased by one for each task executed within the timeout while the queue uses at least half of the limit,
+ * and the limit is multiplied by the backoff ratio when a task takes longer than the timeout (or fails).
+ */
+public class AimdLimiter implements ITqLimiter {
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final double backoffRatio;
+	private final long timeoutNanos;
+	private volatile boolean backoffOnFailure = true;
+	private volatile int limit;
+
+	/**
+	 * @param initialLimit start value for the limit.
+	 * @param minLimit lowest value for the limit (minimum 1).
+	 * @param maxLimit highest value for the limit.
+	 * @param backoffRatio value between 0.5 and 1 to multiply the limit with when a task takes too long (e.g. 0.9).
+	 * @param timeoutMs task execution time that is considered too long.
+	 */
+	public AimdLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio, long timeoutMs) {
+
+		if (backoffRatio < 0.5d || backoffRatio >= 1.0d) {
+			throw new IllegalArgumentException("Backoff ratio must be in range [0.5, 1.0).");
+		}
+		this.minLimit = Math.max(1, minLimit);
+		this.maxLimit = Math.max(this.minLimit, maxLimit);
+		this.backoffRatio = backoffRatio;
+		this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+		this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+	}
+
+	@Override
+	public int getLimit() {
+		return limit;
+	}
+
+	public boolean isBackoffOnFailure() {
+		return backoffOnFailure;
+	}
+
+	/**
+	 * If true (default), a failed task (task handler throws an exception) decreases the limit like a task that took too long.
+	 */
+	public void setBackoffOnFailure(boolean backoffOnFailure) {
+		this.backoffOnFailure = backoffOnFailure;
+	}
+
+	@Override
+	public synchronized void onSample(long latencyNanos, int inProgress, boolean failed) {
+
+		int current = limit;
+		if (latencyNanos > timeoutNanos || (failed && backoffOnFailure)) {
+			limit = Math.max(minLimit, (int) (current * backoffRatio));
+		} else if (inProgress * 2 >= current) {
+			limit = Math.min(maxLimit, current + 1);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " " + limit + " [" + minLimit + ", " + maxLimit + "]";
+	}
+
+}
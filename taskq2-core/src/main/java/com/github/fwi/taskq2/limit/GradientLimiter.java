@@ -0,0 +1,95 @@
+package com.github.fwi.taskq2.limit;
+
+/**
+ * Adjusts the limit based on the change in task execution time (latency), 
+ * similar to the "Gradient2" limiter from Netflix's concurrency-limits library.
+ * <br>A long-term average latency is compared to a short-term average latency: 
+ * <br><tt>gradient = max(0.5, min(1.0, tolerance * longRtt / shortRtt))</tt>
+ * <br><tt>newLimit = limit * gradient + queueSize</tt>
+ * <br>When latency goes up (e.g. a database gets slower), the gradient drops below 1 and the limit decreases.
+ * When latency is stable, the limit grows by the queue size (square root of the limit) until the latency starts to go up:
+ * the limit stays near the point where more concurrency only adds latency.
+ * <br>The limit is only increased when the queue uses at least half of the limit.
+ */
+public class GradientLimiter implements ITqLimiter {
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final double tolerance;
+	private final double smoothing;
+	private final double longWindowFactor;
+	private final double shortWindowFactor;
+
+	private volatile int limit;
+	// guarded by this
+	private double estimatedLimit;
+	private double longRtt;
+	private double shortRtt;
+
+	/**
+	 * Uses a tolerance of 1.5, smoothing 0.2, a long window of 600 samples and a short window of 10 samples.
+	 */
+	public GradientLimiter(int initialLimit, int minLimit, int maxLimit) {
+		this(initialLimit, minLimit, maxLimit, 1.5d, 0.2d, 600, 10);
+	}
+
+	/**
+	 * @param tolerance how much latency can increase before the limit is decreased (1.5 = 50% increase). 
+	 * @param smoothing how fast the limit moves to a new (estimated) limit, value between 0 and 1.
+	 * @param longWindow amount of samples for the long-term average latency.
+	 * @param shortWindow amount of samples for the short-term average latency.
+	 */
+	public GradientLimiter(int initialLimit, int minLimit, int maxLimit, 
+			double tolerance, double smoothing, int longWindow, int shortWindow) {
+
+		if (tolerance < 1.0d) {
+			throw new IllegalArgumentException("Tolerance must be 1.0 or more.");
+		}
+		this.minLimit = Math.max(1, minLimit);
+		this.maxLimit = Math.max(this.minLimit, maxLimit);
+		this.tolerance = tolerance;
+		this.smoothing = Math.min(1.0d, Math.max(0.01d, smoothing));
+		this.longWindowFactor = 2.0d / (Math.max(1, longWindow) + 1);
+		this.shortWindowFactor = 2.0d / (Math.max(1, shortWindow) + 1);
+		this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+		this.estimatedLimit = limit;
+	}
+
+	@Override
+	public int getLimit() {
+		return limit;
+	}
+
+	@Override
+	public synchronized void onSample(long latencyNanos, int inProgress, boolean failed) {
+
+		final double rtt = Math.max(1L, latencyNanos);
+		if (longRtt == 0.0d) {
+			longRtt = rtt;
+			shortRtt = rtt;
+			return;
+		}
+		shortRtt += (rtt - shortRtt) * shortWindowFactor;
+		longRtt += (rtt - longRtt) * longWindowFactor;
+		if (longRtt / shortRtt > 2.0d) {
+			// latency dropped a lot, let the long-term average recover faster.
+			longRtt *= 0.95d;
+		}
+		if (inProgress * 2 < estimatedLimit) {
+			// not using the limit, latency says nothing about the limit.
+			return;
+		}
+		double gradient = Math.max(0.5d, Math.min(1.0d, tolerance * longRtt / shortRtt));
+		double queueSize = Math.sqrt(estimatedLimit);
+		double newLimit = estimatedLimit * gradient + queueSize;
+		newLimit = estimatedLimit * (1.0d - smoothing) + newLimit * smoothing;
+		estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+		limit = (int) estimatedLimit;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " " + limit + " [" + minLimit + ", " + maxLimit + "]";
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.github.fwi.taskq2.limit;
+
+/**
+ * A concurrency limiter adjusts the amount of tasks that can execute at the same time for a queue
+ * based on the measured task execution times (latency), see {@link com.github.fwi.taskq2.TqBase#setLimiter(ITqLimiter)}.
+ * <br>Implementations must be thread-safe: {@link #getLimit()} is called by the dispatcher 
+ * and {@link #onSample(long, int, boolean)} is called by the threads executing tasks.
+ */
+public interface ITqLimiter {
+
+	/**
+	 * The current limit for the amount of tasks executing at the same time.
+	 */
+	int getLimit();
+
+	/**
+	 * Called after a task was executed.
+	 * @param latencyNanos the time it took to execute the task.
+	 * @param inProgress the amount of tasks executing (including the executed task).
+	 * @param failed true if the task handler threw an exception.
+	 */
+	void onSample(long latencyNanos, int inProgress, boolean failed);
+
+}
@@ -0,0 +1,218 @@
+package com.github.fwi.taskq2.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the amount of reserved slots within a capacity.
+ * <br>The capacity is enforced exactly: {@link #tryReserve()} uses compare-and-set on the amount of reserved slots. 
+ * Threads waiting for a free slot ({@link #reserve(long, TimeUnit)}) only use a lock while they wait.
+ * <br>When a high watermark is set, the listener is called once the amount of reserved slots reaches the high watermark
+ * and called again once the amount of reserved slots drops to the low watermark.
+ * The listener is called by the thread that reserves or releases the slot and should return quickly.
+ */
+public class CapacityLimit {
+
+	/**
+	 * Receives a callback when the amount of reserved slots crosses a watermark, see {@link CapacityLimit#setWatermarks(int, int)}.
+	 */
+	public interface IWatermarkListener {
+
+		void onHighWatermark(CapacityLimit limit);
+
+		void onLowWatermark(CapacityLimit limit);
+	}
+
+	private volatile String name;
+	private final AtomicInteger reserved = new AtomicInteger();
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notFull = lock.newCondition();
+	private final AtomicBoolean aboveHighWatermark = new AtomicBoolean();
+
+	private volatile int capacity;
+	private volatile int waiting;
+	private volatile int highWatermark;
+	private volatile int lowWatermark;
+	private volatile IWatermarkListener watermarkListener;
+
+	public CapacityLimit(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * The maximum amount of reserved slots, 0 (default) for no limit.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * See {@link #getCapacity()}. 
+	 * A lower capacity does not affect slots already reserved, a higher capacity wakes up waiting threads.
+	 */
+	public void setCapacity(int capacity) {
+
+		this.capacity = (capacity < 0 ? 0 : capacity);
+		signalWaiting();
+	}
+
+	public boolean isBounded() {
+		return (capacity > 0);
+	}
+
+	/**
+	 * Amount of reserved slots.
+	 */
+	public int getSize() {
+		return reserved.get();
+	}
+
+	/**
+	 * Amount of slots that can be reserved, {@link Integer#MAX_VALUE} if there is no limit.
+	 */
+	public int getRemaining() {
+
+		int cap = capacity;
+		return (cap < 1 ? Integer.MAX_VALUE : Math.max(0, cap - reserved.get()));
+	}
+
+	/**
+	 * Reserves a slot if there is room.
+	 * @return false if capacity is reached.
+	 */
+	public boolean tryReserve() {
+
+		for (;;) {
+			int r = reserved.get();
+			int cap = capacity;
+			if (cap > 0 && r >= cap) {
+				return false;
+			}
+			if (reserved.compareAndSet(r, r + 1)) {
+				checkHighWatermark(r + 1);
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Reserves a slot, waits for a slot to be released if capacity is reached.
+	 * @param timeout maximum time to wait, a negative value to wait forever.
+	 * @return false if no slot could be reserved within the timeout.
+	 */
+	public boolean reserve(long timeout, TimeUnit tunit) throws InterruptedException {
+
+		if (tryReserve()) {
+			return true;
+		}
+		if (timeout == 0L) {
+			return false;
+		}
+		long waitNanos = tunit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			waiting++;
+			while (!tryReserve()) {
+				if (timeout < 0L) {
+					notFull.await();
+				} else if (waitNanos > 0L) {
+					waitNanos = notFull.awaitNanos(waitNanos);
+				} else {
+					return false;
+				}
+			}
+			return true;
+		} finally {
+			waiting--;
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Releases a slot reserved earlier.
+	 */
+	public void release() {
+
+		int r = reserved.decrementAndGet();
+		signalWaiting();
+		if (r <= lowWatermark && aboveHighWatermark.get() && aboveHighWatermark.compareAndSet(true, false)) {
+			IWatermarkListener l = watermarkListener;
+			if (l != null) {
+				l.onLowWatermark(this);
+			}
+		}
+	}
+
+	protected void signalWaiting() {
+
+		if (waiting > 0) {
+			lock.lock();
+			try {
+				notFull.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	protected void checkHighWatermark(int r) {
+
+		int high = highWatermark;
+		if (high > 0 && r >= high && !aboveHighWatermark.get() && aboveHighWatermark.compareAndSet(false, true)) {
+			IWatermarkListener l = watermarkListener;
+			if (l != null) {
+				l.onHighWatermark(this);
+			}
+		}
+	}
+
+	public int getHighWatermark() {
+		return highWatermark;
+	}
+
+	public int getLowWatermark() {
+		return lowWatermark;
+	}
+
+	/**
+	 * @param highWatermark amount of reserved slots that triggers {@link IWatermarkListener#onHighWatermark(CapacityLimit)}, 0 to disable.
+	 * @param lowWatermark amount of reserved slots that triggers {@link IWatermarkListener#onLowWatermark(CapacityLimit)}
+	 * after the high watermark was reached.
+	 */
+	public void setWatermarks(int highWatermark, int lowWatermark) {
+
+		if (highWatermark > 0 && lowWatermark >= highWatermark) {
+			throw new IllegalArgumentException("Low watermark must be lower than high watermark.");
+		}
+		this.lowWatermark = lowWatermark;
+		this.highWatermark = highWatermark;
+	}
+
+	public boolean isAboveHighWatermark() {
+		return aboveHighWatermark.get();
+	}
+
+	public IWatermarkListener getWatermarkListener() {
+		return watermarkListener;
+	}
+
+	public void setWatermarkListener(IWatermarkListener watermarkListener) {
+		this.watermarkListener = watermarkListener;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " " + name + " " + reserved.get() + "/" + capacity;
+	}
+
+}
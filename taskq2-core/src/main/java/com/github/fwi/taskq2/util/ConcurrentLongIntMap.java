@@ -0,0 +1,264 @@
+package com.github.fwi.taskq2.util;
+
+/**
+ * A concurrent map from a (non-zero) long key to a reference count, 
+ * using open addressing on primitive <tt>long</tt> arrays instead of boxed keys, counters and map nodes.
+ * <br>A reference is stored as one slot containing the key: a count of 1 costs one slot (8 bytes) 
+ * and a key with a count of 3 occupies 3 slots in the same probe sequence (linear probing).
+ * Reference counts are nearly always 1 (e.g. a task-ID that is queued once), 
+ * which makes this much smaller than a <tt>ConcurrentHashMap&lt;Long, AtomicInteger&gt;</tt> 
+ * (10 to 15 bytes per key versus about 80 bytes).
+ * <br>Keys are spread over segments (striped locking): each segment has its own table and lock,
+ * threads using keys in different segments do not block each other.
+ * Tables grow by half at 80% load (the table size is not a power of two) and shrink when less than 1/8 is used,
+ * removals do not leave tombstones (backward shift deletion).
+ */
+public class ConcurrentLongIntMap {
+
+	public static final int DEFAULT_SEGMENTS = 16;
+	private static final int MIN_TABLE_SIZE = 16;
+
+	private static final class Segment {
+
+		long[] keys = new long[MIN_TABLE_SIZE];
+		int size;
+	}
+
+	private final Segment[] segments;
+	private final int segmentShift;
+
+	public ConcurrentLongIntMap() {
+		this(DEFAULT_SEGMENTS);
+	}
+
+	/**
+	 * @param segments the amount of segments (rounded up to a power of two), more segments means less lock contention.
+	 */
+	public ConcurrentLongIntMap(int segments) {
+
+		int n = (segments < 2 ? 1 : Integer.highestOneBit(segments - 1) << 1);
+		this.segments = new Segment[n];
+		for (int i = 0; i < n; i++) {
+			this.segments[i] = new Segment();
+		}
+		segmentShift = 64 - Integer.numberOfTrailingZeros(n);
+	}
+
+	/** Mixes the bits of the key (the finalizer from MurmurHash3), task-IDs are often sequential. */
+	private static long mix(long key) {
+
+		long h = key;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/** The home slot for a key: the lower 32 bits of the hash scaled to the table size. */
+	private static int home(long hash, int tableSize) {
+		return (int) (((hash & 0xffffffffL) * tableSize) >>> 32);
+	}
+
+	private static int next(int i, int tableSize) {
+		return (++i == tableSize ? 0 : i);
+	}
+
+	private Segment segment(long hash) {
+		return segments[(segmentShift == 64 ? 0 : (int) (hash >>> segmentShift))];
+	}
+
+	private static void checkKey(long key) {
+
+		if (key == 0L) {
+			throw new IllegalArgumentException("Key may not be 0.");
+		}
+	}
+
+	/**
+	 * Adds a reference for the key.
+	 * @return the new reference count for the key.
+	 */
+	public int increment(long key) {
+
+		checkKey(key);
+		final long hash = mix(key);
+		final Segment s = segment(hash);
+		synchronized (s) {
+			if ((s.size + 1) * 5L > s.keys.length * 4L) {
+				resize(s, s.keys.length + s.keys.length / 2);
+			}
+			final long[] keys = s.keys;
+			final int tableSize = keys.length;
+			int count = 1;
+			int i = home(hash, tableSize);
+			while (keys[i] != 0L) {
+				if (keys[i] == key) {
+					count++;
+				}
+				i = next(i, tableSize);
+			}
+			keys[i] = key;
+			s.size++;
+			return count;
+		}
+	}
+
+	/**
+	 * Removes a reference for the key, the key is removed when there are no more references.
+	 * @return the remaining reference count for the key, -1 if the key was not present.
+	 */
+	public int decrement(long key) {
+
+		checkKey(key);
+		final long hash = mix(key);
+		final Segment s = segment(hash);
+		synchronized (s) {
+			final long[] keys = s.keys;
+			final int tableSize = keys.length;
+			int found = -1;
+			int count = 0;
+			int i = home(hash, tableSize);
+			while (keys[i] != 0L) {
+				if (keys[i] == key) {
+					if (found < 0) {
+						found = i;
+					} else {
+						count++;
+					}
+				}
+				i = next(i, tableSize);
+			}
+			if (found < 0) {
+				return -1;
+			}
+			delete(keys, found);
+			s.size--;
+			if (keys.length > MIN_TABLE_SIZE && s.size * 8L < keys.length) {
+				resize(s, Math.max(MIN_TABLE_SIZE, keys.length / 2));
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * @return the reference count for the key, 0 if the key is not present.
+	 */
+	public int get(long key) {
+
+		if (key == 0L) {
+			return 0;
+		}
+		final long hash = mix(key);
+		final Segment s = segment(hash);
+		synchronized (s) {
+			final long[] keys = s.keys;
+			final int tableSize = keys.length;
+			int count = 0;
+			int i = home(hash, tableSize);
+			while (keys[i] != 0L) {
+				if (keys[i] == key) {
+					count++;
+				}
+				i = next(i, tableSize);
+			}
+			return count;
+		}
+	}
+
+	public boolean containsKey(long key) {
+
+		if (key == 0L) {
+			return false;
+		}
+		final long hash = mix(key);
+		final Segment s = segment(hash);
+		synchronized (s) {
+			final long[] keys = s.keys;
+			final int tableSize = keys.length;
+			int i = home(hash, tableSize);
+			while (keys[i] != 0L) {
+				if (keys[i] == key) {
+					return true;
+				}
+				i = next(i, tableSize);
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * The total amount of references (the sum of all reference counts). 
+	 * Segments are not locked together, the result is an estimate when the map is updated at the same time.
+	 */
+	public int size() {
+
+		int size = 0;
+		for (Segment s : segments) {
+			synchronized (s) {
+				size += s.size;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * The amount of memory used by the tables (8 bytes per slot).
+	 */
+	public long getTableBytes() {
+
+		long bytes = 0L;
+		for (Segment s : segments) {
+			synchronized (s) {
+				bytes += 8L * s.keys.length;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Removes the slot and moves following slots in the probe sequence back so that no lookup stops early.
+	 */
+	private static void delete(long[] keys, int slot) {
+
+		final int tableSize = keys.length;
+		int free = slot;
+		int i = slot;
+		while (true) {
+			i = next(i, tableSize);
+			final long key = keys[i];
+			if (key == 0L) {
+				break;
+			}
+			final int home = home(mix(key), tableSize);
+			// move the key to the free slot if its home slot is not between the free slot and its current slot (cyclic)
+			if (distance(home, i, tableSize) >= distance(free, i, tableSize)) {
+				keys[free] = key;
+				free = i;
+			}
+		}
+		keys[free] = 0L;
+	}
+
+	private static int distance(int from, int to, int tableSize) {
+		return (to >= from ? to - from : to - from + tableSize);
+	}
+
+	private static void resize(Segment s, int tableSize) {
+
+		final long[] old = s.keys;
+		final long[] keys = new long[tableSize];
+		for (long key : old) {
+			if (key != 0L) {
+				int i = home(mix(key), tableSize);
+				while (keys[i] != 0L) {
+					i = next(i, tableSize);
+				}
+				keys[i] = key;
+			}
+		}
+		s.keys = keys;
+	}
+
+}
@@ -0,0 +1,154 @@
+package com.github.fwi.taskq2.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram for latencies (nanoseconds) with log-linear buckets, similar to HdrHistogram:
+ * each power of 2 is divided into 16 linear sub-buckets, so a recorded value is off by at most 1/16 (6.25%).
+ * <br>Recording a value is one atomic increment on the bucket (the total count is the sum of the buckets).
+ * The count and percentiles are calculated from a (not atomic) scan of the buckets 
+ * and can be slightly off while values are being recorded.
+ */
+public class LatencyHistogram {
+
+	static final int SUB_BUCKET_BITS = 4;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * @param nanos a latency, negative values are recorded as 0.
+	 */
+	public void record(long nanos) {
+
+		final long value = (nanos < 0L ? 0L : nanos);
+		counts.incrementAndGet(bucketIndex(value));
+		long currentMax = max.get();
+		while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+			currentMax = max.get();
+		}
+	}
+
+	static int bucketIndex(long value) {
+
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int msb = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (msb - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (msb - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * The lowest value that is recorded in the bucket.
+	 */
+	static long bucketLowerBound(int index) {
+
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int group = index >>> SUB_BUCKET_BITS;
+		long sub = index & (SUB_BUCKETS - 1);
+		return (SUB_BUCKETS + sub) << (group - 1);
+	}
+
+	public long getCount() {
+
+		long total = 0L;
+		for (int i = 0; i < BUCKETS; i++) {
+			total += counts.get(i);
+		}
+		return total;
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @param percentile a value between 0 and 100, e.g. 99.9 
+	 * @return the highest latency (nanos) in the bucket that contains the percentile, 0 when there are no values.
+	 */
+	public long getValueAtPercentile(double percentile) {
+
+		final long total = getCount();
+		if (total < 1L) {
+			return 0L;
+		}
+		long target = (long) Math.ceil(Math.min(100.0d, Math.max(0.0d, percentile)) / 100.0d * total);
+		if (target < 1L) {
+			target = 1L;
+		}
+		long cumulative = 0L;
+		for (int i = 0; i < BUCKETS; i++) {
+			cumulative += counts.get(i);
+			if (cumulative >= target) {
+				long highest = (i + 1 < BUCKETS ? bucketLowerBound(i + 1) - 1 : Long.MAX_VALUE);
+				return Math.min(highest, max.get());
+			}
+		}
+		return max.get();
+	}
+
+	public Snapshot getSnapshot() {
+		return new Snapshot(getCount(), getValueAtPercentile(50.0d), getValueAtPercentile(99.0d), 
+				getValueAtPercentile(99.9d), getMax());
+	}
+
+	/**
+	 * Clears all recorded values, values recorded at the same time may be partially cleared.
+	 */
+	public void reset() {
+
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0L);
+		}
+		max.set(0L);
+	}
+
+	@Override
+	public String toString() {
+		return getSnapshot().toString();
+	}
+
+	/**
+	 * Percentiles of a latency histogram at one point in time, all values in nanoseconds.
+	 */
+	public static class Snapshot {
+
+		private final long count;
+		private final long p50;
+		private final long p99;
+		private final long p999;
+		private final long max;
+
+		public Snapshot(long count, long p50, long p99, long p999, long max) {
+			this.count = count;
+			this.p50 = p50;
+			this.p99 = p99;
+			this.p999 = p999;
+			this.max = max;
+		}
+
+		public long getCount() { return count; }
+		public long getP50() { return p50; }
+		public long getP99() { return p99; }
+		public long getP999() { return p999; }
+		public long getMax() { return max; }
+
+		@Override
+		public String toString() {
+			return "count " + count + ", p50 " + micros(p50) + ", p99 " + micros(p99) 
+				+ ", p999 " + micros(p999) + ", max " + micros(max) + " (micros)";
+		}
+
+		static long micros(long nanos) {
+			return TimeUnit.NANOSECONDS.toMicros(nanos);
+		}
+	}
+
+}
@@ -0,0 +1,101 @@
+package com.github.fwi.taskq2.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free, multi-producer multi-consumer queue backed by an array.
+ * Unlike a {@link java.util.concurrent.ConcurrentLinkedQueue}, adding an element does not allocate a node.
+ * <br>Each slot has a sequence number that tells producers and consumers whose turn it is to use the slot
+ * (the algorithm from Dmitry Vyukov's bounded MPMC queue): 
+ * a producer claims a slot by incrementing the tail using compare-and-set, stores the element
+ * and then publishes the slot by updating the slot's sequence number. Consumers do the same for the head. 
+ * <br>The capacity is rounded up to a power of two.
+ */
+public class MpmcRingBuffer<E> {
+
+	private final int mask;
+	private final AtomicReferenceArray<E> buffer;
+	private final AtomicLongArray sequence;
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+
+	public MpmcRingBuffer(int capacity) {
+
+		if (capacity < 1 || capacity > (1 << 30)) {
+			throw new IllegalArgumentException("Capacity must be between 1 and 2^30.");
+		}
+		int size = (capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1);
+		mask = size - 1;
+		buffer = new AtomicReferenceArray<>(size);
+		sequence = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			sequence.set(i, i);
+		}
+	}
+
+	public int getCapacity() {
+		return mask + 1;
+	}
+
+	/**
+	 * @return false if the buffer is full.
+	 */
+	public boolean offer(E e) {
+
+		if (e == null) {
+			throw new IllegalArgumentException("Element may not be null.");
+		}
+		while (true) {
+			final long t = tail.get();
+			final int i = (int) (t & mask);
+			final long dif = sequence.get(i) - t;
+			if (dif == 0L) {
+				if (tail.compareAndSet(t, t + 1L)) {
+					buffer.lazySet(i, e);
+					sequence.lazySet(i, t + 1L);
+					return true;
+				}
+			} else if (dif < 0L) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * @return null if the buffer is empty.
+	 */
+	public E poll() {
+
+		while (true) {
+			final long h = head.get();
+			final int i = (int) (h & mask);
+			final long dif = sequence.get(i) - (h + 1L);
+			if (dif == 0L) {
+				if (head.compareAndSet(h, h + 1L)) {
+					E e = buffer.get(i);
+					buffer.lazySet(i, null);
+					sequence.lazySet(i, h + mask + 1L);
+					return e;
+				}
+			} else if (dif < 0L) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * The amount of elements in the buffer, an estimate while elements are added or removed.
+	 */
+	public int size() {
+
+		long size = tail.get() - head.get();
+		return (int) (size < 0L ? 0L : (size > mask + 1 ? mask + 1 : size));
+	}
+
+	public boolean isEmpty() {
+		return (size() == 0);
+	}
+
+}
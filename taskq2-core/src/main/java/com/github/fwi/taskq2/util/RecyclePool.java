@@ -0,0 +1,75 @@
+package com.github.fwi.taskq2.util;
+
+import java.util.function.Supplier;
+
+/**
+ * A pool of objects that can be re-used to prevent garbage (and young-generation garbage collections).
+ * <br>Each thread has a small cache of released objects, objects that do not fit in the cache go to a shared {@link MpmcRingBuffer}.
+ * This way objects released by one thread (e.g. a worker) can be taken by another thread (e.g. a producer) without locks.
+ * When the shared buffer is full, released objects are left for the garbage collector.
+ * When the pool is empty, a new object is created.
+ * <br>Released objects must be reset by the caller and may not be used anymore after release.
+ */
+public class RecyclePool<T> {
+
+	private static class Cache {
+
+		final Object[] items;
+		int size;
+
+		Cache(int cacheSize) {
+			items = new Object[cacheSize];
+		}
+	}
+
+	private final Supplier<T> factory;
+	private final MpmcRingBuffer<T> shared;
+	private final ThreadLocal<Cache> cache;
+
+	/**
+	 * @param factory creates new objects when the pool is empty.
+	 * @param capacity the maximum amount of objects in the shared buffer.
+	 * @param cacheSize the maximum amount of objects cached per thread (0 for no cache).
+	 */
+	public RecyclePool(Supplier<T> factory, int capacity, final int cacheSize) {
+
+		this.factory = factory;
+		this.shared = new MpmcRingBuffer<>(capacity);
+		this.cache = (cacheSize > 0 ? ThreadLocal.withInitial(() -> new Cache(cacheSize)) : null);
+	}
+
+	@SuppressWarnings("unchecked")
+	public T take() {
+
+		if (cache != null) {
+			Cache c = cache.get();
+			if (c.size > 0) {
+				T t = (T) c.items[--c.size];
+				c.items[c.size] = null;
+				return t;
+			}
+		}
+		T t = shared.poll();
+		return (t == null ? factory.get() : t);
+	}
+
+	public void release(T t) {
+
+		if (cache != null) {
+			Cache c = cache.get();
+			if (c.size < c.items.length) {
+				c.items[c.size++] = t;
+				return;
+			}
+		}
+		shared.offer(t);
+	}
+
+	/**
+	 * The amount of objects in the shared buffer (objects in thread caches are not counted).
+	 */
+	public int getSharedSize() {
+		return shared.size();
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.github.fwi.taskq2.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A rate limiter: tokens are added at a fixed rate up to a maximum (the burst size), 
+ * a token is taken for each task that is executed.
+ * <br>Implemented as a "generic cell rate algorithm": instead of a token count, 
+ * the time at which the bucket is full again is stored and updated using compare-and-set.
+ * This also gives the exact time a next token becomes available, see {@link #getWaitNanos(long)}.
+ * <br>All times are {@link System#nanoTime()} values.
+ */
+public class TokenBucket {
+
+	private final double ratePerSecond;
+	private final int burst;
+	private final long intervalNanos;
+	private final long burstNanos;
+	/** The time at which the bucket is full again. */
+	private final AtomicLong fullAt;
+
+	/**
+	 * @param ratePerSecond amount of tokens added per second (can be less than 1).
+	 * @param burst the maximum amount of tokens in the bucket (minimum 1).
+	 */
+	public TokenBucket(double ratePerSecond, int burst) {
+
+		if (!(ratePerSecond > 0.0d)) {
+			throw new IllegalArgumentException("Rate per second must be larger than 0.");
+		}
+		this.ratePerSecond = ratePerSecond;
+		this.burst = Math.max(1, burst);
+		this.intervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1L) / ratePerSecond));
+		this.burstNanos = (this.burst - 1) * intervalNanos;
+		this.fullAt = new AtomicLong(System.nanoTime());
+	}
+
+	public double getRatePerSecond() {
+		return ratePerSecond;
+	}
+
+	public int getBurst() {
+		return burst;
+	}
+
+	public boolean tryAcquire() {
+		return tryAcquire(System.nanoTime());
+	}
+
+	/**
+	 * Takes a token if one is available.
+	 * @param now the current {@link System#nanoTime()}.
+	 * @return true if a token was taken.
+	 */
+	public boolean tryAcquire(long now) {
+
+		for (;;) {
+			long current = fullAt.get();
+			if (current - now > burstNanos) {
+				return false;
+			}
+			long next = (current - now < 0L ? now : current) + intervalNanos;
+			if (fullAt.compareAndSet(current, next)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Returns a token taken via {@link #tryAcquire(long)} that was not used.
+	 */
+	public void cancel() {
+		fullAt.addAndGet(-intervalNanos);
+	}
+
+	/**
+	 * @param now the current {@link System#nanoTime()}.
+	 * @return the time (nanos) until a token is available, 0 if a token is available now.
+	 */
+	public long getWaitNanos(long now) {
+
+		long wait = fullAt.get() - burstNanos - now;
+		return (wait > 0L ? wait : 0L);
+	}
+
+	/**
+	 * @param now the current {@link System#nanoTime()}.
+	 * @return true if the bucket has the maximum amount of tokens.
+	 */
+	public boolean isFull(long now) {
+		return (fullAt.get() - now <= 0L);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " " + ratePerSecond + "/s burst " + burst;
+	}
+
+}
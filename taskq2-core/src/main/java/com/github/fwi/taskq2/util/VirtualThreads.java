@@ -0,0 +1,95 @@
+package com.github.fwi.taskq2.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates virtual threads when running on Java 21 or later.
+ * <br>The virtual thread API is accessed via reflection so that the library still compiles and runs with Java 8,
+ * use {@link #isAvailable()} to check if virtual threads can be used.
+ * <br>Virtual threads are always daemon threads.
+ */
+public class VirtualThreads {
+
+	private static final Logger log = LoggerFactory.getLogger(VirtualThreads.class);
+
+	private static final AtomicInteger poolNumber = new AtomicInteger();
+	private static final Method ofVirtual;
+	private static final Method builderName;
+	private static final Method builderFactory;
+	private static final Method newThreadPerTaskExecutor;
+
+	static {
+		Method ofVirtualM = null, builderNameM = null, builderFactoryM = null, newExecutorM = null;
+		try {
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			ofVirtualM = Thread.class.getMethod("ofVirtual");
+			builderNameM = builderClass.getMethod("name", String.class, long.class);
+			builderFactoryM = builderClass.getMethod("factory");
+			newExecutorM = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+			// virtual threads are a preview feature in Java 19 and 20, this will fail if preview is not enabled.
+			builderFactoryM.invoke(ofVirtualM.invoke(null));
+		} catch (Throwable t) {
+			log.debug("Virtual threads not available: {}", t.toString());
+			ofVirtualM = null;
+		}
+		ofVirtual = ofVirtualM;
+		builderName = builderNameM;
+		builderFactory = builderFactoryM;
+		newThreadPerTaskExecutor = newExecutorM;
+	}
+
+	private VirtualThreads() {}
+
+	/**
+	 * @return true if virtual threads are supported by the Java runtime.
+	 */
+	public static boolean isAvailable() {
+		return (ofVirtual != null);
+	}
+
+	/**
+	 * A thread factory for virtual threads, thread names use the same format as {@link DaemonThreadPool.DaemonThreadFactory}.
+	 * @throws UnsupportedOperationException if virtual threads are not available.
+	 */
+	public static ThreadFactory newThreadFactory(String poolNamePrefix) {
+
+		if (!isAvailable()) {
+			throw new UnsupportedOperationException("Virtual threads require Java 21 or later.");
+		}
+		String namePrefix = (poolNamePrefix == null ? "vpool-" : poolNamePrefix + "-")
+				+ poolNumber.incrementAndGet() + "-thread-";
+		ThreadFactory tfactory = null;
+		try {
+			Object builder = ofVirtual.invoke(null);
+			builder = builderName.invoke(builder, namePrefix, 1L);
+			tfactory = (ThreadFactory) builderFactory.invoke(builder);
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to create virtual thread factory.", e);
+		}
+		return tfactory;
+	}
+
+	/**
+	 * An executor that starts a new virtual thread for each task.
+	 * @throws UnsupportedOperationException if virtual threads are not available.
+	 */
+	public static ExecutorService newExecutor(String poolNamePrefix) {
+
+		ThreadFactory tfactory = newThreadFactory(poolNamePrefix);
+		ExecutorService executor = null;
+		try {
+			executor = (ExecutorService) newThreadPerTaskExecutor.invoke(null, tfactory);
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to create virtual thread executor.", e);
+		}
+		return executor;
+	}
+
+}
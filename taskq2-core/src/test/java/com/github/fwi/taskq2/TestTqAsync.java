@@ -0,0 +1,76 @@
+package com.github.fwi.taskq2;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TestTqAsync {
+
+	@Test
+	public void asyncTasksInProgress() throws Exception {
+
+		asyncTasksInProgress(false);
+		asyncTasksInProgress(true);
+	}
+
+	void asyncTasksInProgress(boolean workerPull) throws Exception {
+
+		final LinkedBlockingQueue<CompletableFuture<Void>> started = new LinkedBlockingQueue<>();
+		final AtomicInteger executed = new AtomicInteger();
+		TqFifo tq = new TqFifo();
+		tq.setMaxConcurrent(3);
+		tq.setTasksHandler(new CompletableTaskHandler() {
+			@Override
+			public CompletionStage<?> onTaskAsync(Object tdata, String qname, String qosKey, long taskId) {
+				executed.incrementAndGet();
+				CompletableFuture<Void> f = new CompletableFuture<>();
+				started.add(f);
+				return f;
+			}
+		});
+		TqGroup tgroup = new TqGroup();
+		tgroup.setWorkerPull(workerPull);
+		tgroup.addQueue(tq);
+		tgroup.start();
+		try {
+			for (int i = 0; i < 5; i++) {
+				tgroup.addTask(tq.getName(), i);
+			}
+			List<CompletableFuture<Void>> inProgress = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				CompletableFuture<Void> f = started.poll(1, TimeUnit.SECONDS);
+				assertNotNull("Task started.", f);
+				inProgress.add(f);
+			}
+			Thread.sleep(20L);
+			assertEquals("Tasks in progress until completed.", 3, tq.getInProgress());
+			assertEquals("No more than max tasks in progress.", 3, executed.get());
+			assertEquals(2, tq.getSize());
+			assertEquals(0, tgroup.getTasksExecuted());
+			inProgress.get(0).complete(null);
+			inProgress.get(1).completeExceptionally(new RuntimeException("Failing async task for test."));
+			for (int i = 0; i < 2; i++) {
+				CompletableFuture<Void> f = started.poll(1, TimeUnit.SECONDS);
+				assertNotNull("Waiting task started after completion.", f);
+				inProgress.add(f);
+			}
+			for (CompletableFuture<Void> f : inProgress) {
+				f.complete(null);
+			}
+			assertTrue("All tasks done.", tgroup.awaitAllTasksDone(1, TimeUnit.SECONDS));
+			assertEquals(5, tgroup.getTasksExecuted());
+			assertEquals(0, tq.getInProgress());
+		} finally {
+			tgroup.stop();
+		}
+	}
+
+}
@@ -0,0 +1,167 @@
+package com.github.fwi.taskq2;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TestTqBatches {
+
+	static class CountBatchHandler extends BatchTaskHandler {
+
+		final AtomicInteger tasks = new AtomicInteger();
+		final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+		
+		@Override
+		public void onTasks(List<TqEntry> tasks, String qname) {
+			batchSizes.add(tasks.size());
+			this.tasks.addAndGet(tasks.size());
+		}
+	}
+
+	@Test
+	public void batchesOfMaxSize() throws Exception {
+
+		final int tasks = 1000;
+		CountBatchHandler handler = new CountBatchHandler();
+		TqFifo tq = new TqFifo();
+		tq.setTasksHandler(handler);
+		tq.setMaxBatchSize(10);
+		tq.setMaxConcurrent(2);
+		TqGroup tgroup = new TqGroup();
+		tgroup.addQueue(tq);
+		tgroup.start();
+		try {
+			tgroup.setPaused(true);
+			for (int i = 0; i < tasks; i++) {
+				tgroup.addTask(tq.getName(), i);
+			}
+			tgroup.setPaused(false);
+			assertTrue("All tasks done.", tgroup.awaitAllTasksDone(1, TimeUnit.SECONDS));
+			assertEquals(tasks, handler.tasks.get());
+			assertEquals("Full batches", tasks / 10, handler.batchSizes.size());
+			assertEquals(0, tgroup.getSize());
+			assertEquals(0, tq.getInProgress());
+			assertEquals(0, tq.getBatchesInProgress());
+		} finally {
+			tgroup.stop();
+		}
+	}
+
+	@Test
+	public void lingerForBatch() throws Exception {
+
+		CountBatchHandler handler = new CountBatchHandler();
+		TqFifo tq = new TqFifo();
+		tq.setTasksHandler(handler);
+		tq.setMaxBatchSize(5);
+		tq.setMaxBatchLingerMs(100L);
+		TqGroup tgroup = new TqGroup();
+		tgroup.addQueue(tq);
+		tgroup.start();
+		try {
+			long start = System.currentTimeMillis();
+			for (int i = 0; i < 3; i++) {
+				tgroup.addTask(tq.getName(), i);
+			}
+			assertTrue("Partial batch done.", tgroup.awaitAllTasksDone(1, TimeUnit.SECONDS));
+			assertTrue("Waited for batch to fill up.", System.currentTimeMillis() - start >= 90L);
+			assertEquals("One partial batch.", 1, handler.batchSizes.size());
+			assertEquals(3, handler.batchSizes.get(0).intValue());
+			// a full batch does not wait
+			for (int i = 0; i < 5; i++) {
+				tgroup.addTask(tq.getName(), i);
+			}
+			for (int i = 0; i < 50 && handler.tasks.get() < 8; i++) {
+				Thread.sleep(1L);
+			}
+			assertEquals(8, handler.tasks.get());
+			assertEquals("Full batch.", 5, handler.batchSizes.get(1).intValue());
+		} finally {
+			tgroup.stop();
+		}
+	}
+
+	@Test
+	public void workerPullBatches() throws Exception {
+
+		final int tasks = 1000;
+		CountBatchHandler handler = new CountBatchHandler();
+		TqFifo tq = new TqFifo();
+		tq.setTasksHandler(handler);
+		tq.setMaxBatchSize(50);
+		TqGroup tgroup = new TqGroup();
+		tgroup.setWorkerPull(true);
+		tgroup.addQueue(tq);
+		tgroup.start();
+		try {
+			tgroup.setPaused(true);
+			for (int i = 0; i < tasks; i++) {
+				tgroup.addTask(tq.getName(), i);
+			}
+			tgroup.setPaused(false);
+			assertTrue("All tasks done.", tgroup.awaitAllTasksDone(1, TimeUnit.SECONDS));
+			assertEquals(tasks, handler.tasks.get());
+			for (Integer size : handler.batchSizes) {
+				assertTrue(size <= 50);
+			}
+			assertEquals(0, tgroup.getSize());
+		} finally {
+			tgroup.stop();
+		}
+	}
+
+	@Test
+	public void taskErrorInBatch() throws Exception {
+
+		taskErrorInBatch(false);
+		taskErrorInBatch(true);
+	}
+
+	void taskErrorInBatch(boolean workerPull) throws Exception {
+
+		final int tasks = 5;
+		final AtomicInteger executed = new AtomicInteger();
+		TqFifo tq = new TqFifo();
+		tq.setTasksHandler(new TaskHandler() {
+			@Override
+			public void onTask(Object tdata) {
+				executed.incrementAndGet();
+				if (Integer.valueOf(2).equals(tdata)) {
+					throw new Error("Task error in batch.");
+				}
+			}
+		});
+		tq.setMaxBatchSize(tasks);
+		TqGroup tgroup = new TqGroup();
+		tgroup.setWorkerPull(workerPull);
+		tgroup.addQueue(tq);
+		tgroup.start();
+		try {
+			tgroup.setPaused(true);
+			List<CompletableFuture<Object>> results = new ArrayList<>();
+			for (int i = 0; i < tasks; i++) {
+				results.add(tgroup.submit(tq.getName(), i));
+			}
+			tgroup.setPaused(false);
+			assertTrue("All tasks done.", tgroup.awaitAllTasksDone(1, TimeUnit.SECONDS));
+			assertEquals("An error does not stop the batch.", tasks, executed.get());
+			assertEquals(0, tgroup.getSize());
+			assertEquals(0, tq.getInProgress());
+			for (int i = 0; i < tasks; i++) {
+				// the task is completed right after the task is done
+				boolean failed = results.get(i).handle((r, e) -> e != null).get(1L, TimeUnit.SECONDS);
+				assertEquals("Task " + i + " failed.", i == 2, failed);
+			}
+		} finally {
+			tgroup.stop();
+		}
+	}
+
+}
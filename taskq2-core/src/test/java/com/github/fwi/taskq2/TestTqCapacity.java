@@ -0,0 +1,142 @@
+package com.github.fwi.taskq2;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.github.fwi.taskq2.util.CapacityLimit;
+
+public class TestTqCapacity {
+
+	@Test
+	public void exactQueueCapacity() throws Exception {
+
+		final int producers = 8;
+		final TqFifo tq = new TqFifo();
+		tq.setCapacity(100);
+		final TqGroup tgroup = new TqGroup();
+		tgroup.addQueue(tq);
+		tgroup.setPaused(tq.getName(), true);
+		final AtomicInteger accepted = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(producers);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int p = 0; p < producers; p++) {
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < 1000; i++) {
+						if (tgroup.offer(tq.getName(), new TqEntry(i))) {
+							accepted.incrementAndGet();
+						}
+					}
+				}));
+			}
+			for (Future<?> f : futures) {
+				f.get(5, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(100, accepted.get());
+		assertEquals(100, tq.getSize());
+		assertEquals(0, tq.getCapacityLimit().getRemaining());
+		assertFalse(tgroup.addTask(tq.getName(), 1));
+		assertNotNull(tgroup.nextTask(tq));
+		assertEquals(1, tq.getCapacityLimit().getRemaining());
+		assertTrue(tgroup.addTask(tq.getName(), 1));
+	}
+
+	@Test
+	public void waitForRoom() throws Exception {
+
+		final CountDownLatch finish = new CountDownLatch(1);
+		TqFifo tq = new TqFifo();
+		tq.setTasksHandler(new TaskHandler() {
+			@Override
+			public void onTask(Object tdata) {
+				try {
+					finish.await();
+				} catch (InterruptedException ignored) {}
+			}
+		});
+		tq.setMaxConcurrent(1);
+		final TqGroup tgroup = new TqGroup();
+		tgroup.setCapacity(2);
+		tgroup.addQueue(tq);
+		tgroup.start();
+		try {
+			assertTrue(tgroup.offer(tq.getName(), new TqEntry(1)));
+			assertTrue(tgroup.offer(tq.getName(), new TqEntry(2)));
+			assertFalse("Group is full.", tgroup.offer(tq.getName(), new TqEntry(3)));
+			long start = System.nanoTime();
+			assertFalse("Timeout waiting for room.", tgroup.offer(tq.getName(), new TqEntry(3), 20L, TimeUnit.MILLISECONDS));
+			assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20L));
+			final CountDownLatch putDone = new CountDownLatch(1);
+			Thread producer = new Thread(() -> {
+				try {
+					if (tgroup.put(tq.getName(), new TqEntry(4))) {
+						putDone.countDown();
+					}
+				} catch (InterruptedException ignored) {}
+			});
+			producer.start();
+			assertFalse("Put waits for room.", putDone.await(20L, TimeUnit.MILLISECONDS));
+			finish.countDown();
+			assertTrue("Put done after task done.", putDone.await(1L, TimeUnit.SECONDS));
+			assertTrue(tgroup.awaitAllTasksDone(1L, TimeUnit.SECONDS));
+			assertEquals(0, tgroup.getCapacityLimit().getSize());
+			assertEquals(0, tq.getCapacityLimit().getSize());
+		} finally {
+			finish.countDown();
+			tgroup.stop();
+		}
+	}
+
+	@Test
+	public void watermarks() throws Exception {
+
+		final AtomicInteger high = new AtomicInteger();
+		final AtomicInteger low = new AtomicInteger();
+		TqFifo tq = new TqFifo();
+		tq.setCapacity(10);
+		tq.getCapacityLimit().setWatermarks(8, 2);
+		tq.getCapacityLimit().setWatermarkListener(new CapacityLimit.IWatermarkListener() {
+			@Override
+			public void onHighWatermark(CapacityLimit limit) {
+				high.incrementAndGet();
+			}
+			@Override
+			public void onLowWatermark(CapacityLimit limit) {
+				low.incrementAndGet();
+			}
+		});
+		TqGroup tgroup = new TqGroup();
+		tgroup.addQueue(tq);
+		for (int i = 0; i < 10; i++) {
+			assertTrue(tgroup.addTask(tq.getName(), i));
+		}
+		assertEquals(1, high.get());
+		assertTrue(tq.getCapacityLimit().isAboveHighWatermark());
+		for (int i = 0; i < 7; i++) {
+			tgroup.nextTask(tq);
+		}
+		assertEquals("Above low watermark.", 0, low.get());
+		tgroup.nextTask(tq);
+		assertEquals("Reached low watermark.", 1, low.get());
+		tgroup.nextTask(tq);
+		assertEquals(1, low.get());
+		for (int i = 0; i < 7; i++) {
+			assertTrue(tgroup.addTask(tq.getName(), i));
+		}
+		assertEquals("Again at high watermark.", 2, high.get());
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.github.fwi.taskq2;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TestTqDispatchers {
+
+	@Test
+	public void queuesOverDispatchers() throws Exception {
+
+		final int queues = 8;
+		final int tasksPerQueue = 1000;
+		final AtomicInteger executed = new AtomicInteger();
+		TaskHandler handler = new TaskHandler() {
+			@Override
+			public void onTask(Object tdata) {
+				executed.incrementAndGet();
+			}
+		};
+		TqGroup tgroup = new TqGroup();
+		tgroup.setDispatchers(4);
+		assertEquals(4, tgroup.getDispatchers());
+		for (int i = 0; i < queues; i++) {
+			TqFifo tq = new TqFifo("q" + i, null);
+			tq.setTasksHandler(handler);
+			if (i == 0) {
+				tq.setDispatcher(3);
+			}
+			tgroup.addQueue(tq);
+		}
+		assertSame(tgroup.getExecLoop(tgroup.getQueue("q0")), tgroup.getExecLoop(new TqFifo("other", null) {
+			{ setDispatcher(7); }
+		}));
+		try {
+			tgroup.getQueue("q1").setDispatcher(0);
+			fail("Dispatcher cannot be changed after the queue is added to a group.");
+		} catch (IllegalStateException expected) {}
+		assertEquals(-1, tgroup.getQueue("q1").getDispatcher());
+		TqBase q1 = tgroup.removeQueue("q1");
+		q1.setDispatcher(3);
+		tgroup.addQueue(q1);
+		assertSame(tgroup.getExecLoop(tgroup.getQueue("q0")), tgroup.getExecLoop(q1));
+		tgroup.start();
+		try {
+			try {
+				tgroup.setDispatchers(2);
+				fail("Dispatchers cannot be changed after start.");
+			} catch (IllegalStateException expected) {}
+			for (int t = 0; t < tasksPerQueue; t++) {
+				for (int i = 0; i < queues; i++) {
+					assertTrue(tgroup.addTask("q" + i, t));
+				}
+			}
+			assertTrue("All tasks done.", tgroup.awaitAllTasksDone(5, TimeUnit.SECONDS));
+			assertEquals(queues * tasksPerQueue, executed.get());
+			assertEquals(0, tgroup.getSize());
+		} finally {
+			tgroup.stop();
+		}
+	}
+
+	@Test
+	public void pauseWithDispatchers() throws Exception {
+
+		TqGroup tgroup = new TqGroup();
+		tgroup.setDispatchers(3);
+		final CountDownLatch latch = new CountDownLatch(3);
+		for (int i = 0; i < 3; i++) {
+			TqFifo tq = new TqFifo("q" + i, null);
+			tq.setDispatcher(i);
+			tq.setTasksHandler(new TaskHandler() {
+				@Override
+				public void onTask(Object tdata) {
+					latch.countDown();
+				}
+			});
+			tgroup.addQueue(tq);
+		}
+		tgroup.start();
+		try {
+			tgroup.setPaused(true);
+			for (int i = 0; i < 3; i++) {
+				tgroup.addTask("q" + i, i);
+			}
+			assertFalse("Paused, no tasks executed.", latch.await(50L, TimeUnit.MILLISECONDS));
+			assertEquals(3, tgroup.getSize());
+			tgroup.setPaused(false);
+			assertTrue("Unpaused, all dispatchers execute tasks.", latch.await(1L, TimeUnit.SECONDS));
+		} finally {
+			tgroup.stop();
+		}
+	}
+
+}
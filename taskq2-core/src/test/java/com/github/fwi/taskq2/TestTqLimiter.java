@@ -0,0 +1,99 @@
+package com.github.fwi.taskq2;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.github.fwi.taskq2.limit.AimdLimiter;
+import com.github.fwi.taskq2.limit.GradientLimiter;
+
+public class TestTqLimiter {
+
+	static final long MS = TimeUnit.MILLISECONDS.toNanos(1L);
+
+	@Test
+	public void aimd() {
+
+		AimdLimiter limiter = new AimdLimiter(4, 1, 10, 0.5d, 100L);
+		limiter.onSample(10 * MS, 1, false);
+		assertEquals("Queue does not use the limit, no increase.", 4, limiter.getLimit());
+		limiter.onSample(10 * MS, 2, false);
+		assertEquals(5, limiter.getLimit());
+		limiter.onSample(200 * MS, 5, false);
+		assertEquals("Too slow, decrease.", 2, limiter.getLimit());
+		limiter.onSample(10 * MS, 2, true);
+		assertEquals("Failure, decrease.", 1, limiter.getLimit());
+		limiter.onSample(200 * MS, 1, false);
+		assertEquals("Minimum limit.", 1, limiter.getLimit());
+		limiter.setBackoffOnFailure(false);
+		for (int i = 0; i < 20; i++) {
+			limiter.onSample(10 * MS, 10, true);
+		}
+		assertEquals("Maximum limit.", 10, limiter.getLimit());
+	}
+
+	@Test
+	public void gradient() {
+
+		GradientLimiter limiter = new GradientLimiter(10, 1, 100);
+		for (int i = 0; i < 100; i++) {
+			limiter.onSample(10 * MS, limiter.getLimit(), false);
+		}
+		int stableLimit = limiter.getLimit();
+		assertTrue("Stable latency, limit increases: " + stableLimit, stableLimit > 10);
+		for (int i = 0; i < 20; i++) {
+			limiter.onSample(100 * MS, limiter.getLimit(), false);
+		}
+		assertTrue("Latency increases, limit decreases: " + limiter.getLimit(), limiter.getLimit() < stableLimit);
+		int limit = limiter.getLimit();
+		for (int i = 0; i < 20; i++) {
+			limiter.onSample(10 * MS, 1, false);
+		}
+		assertEquals("Queue does not use the limit, no change.", limit, limiter.getLimit());
+	}
+
+	@Test
+	public void limitConcurrent() throws Exception {
+
+		limitConcurrent(false);
+		limitConcurrent(true);
+	}
+
+	void limitConcurrent(boolean workerPull) throws Exception {
+
+		TqFifo tq = new TqFifo();
+		tq.setTasksHandler(new CountDownTaskHandler());
+		tq.setMaxConcurrent(4);
+		// limit stays at 2
+		tq.setLimiter(new AimdLimiter(2, 2, 2, 0.9d, 1000L));
+		assertEquals(2, tq.getEffectiveMaxConcurrent());
+		TqGroup tgroup = new CountDownTqGroup();
+		tgroup.setWorkerPull(workerPull);
+		tgroup.addQueue(tq);
+		tgroup.start();
+		try {
+			CountDownLatch taskRun = new CountDownLatch(2);
+			CountDownLatch taskFinish = new CountDownLatch(1);
+			CountDownLatch taskDone = new CountDownLatch(4);
+			for (int i = 0; i < 4; i++) {
+				CountDownTask task = new CountDownTask();
+				task.running = taskRun;
+				task.finish = taskFinish;
+				task.done = taskDone;
+				tgroup.addTask(tq.getName(), task);
+			}
+			assertTrue("Executing tasks.", taskRun.await(1, TimeUnit.SECONDS));
+			Thread.sleep(20L);
+			assertEquals("No more than limit tasks running at the same time.", 2, tq.getInProgress());
+			assertEquals("Two tasks waiting.", 2, tq.getSize());
+			taskFinish.countDown();
+			assertTrue("Tasks done.", taskDone.await(1, TimeUnit.SECONDS));
+		} finally {
+			tgroup.stop();
+		}
+	}
+
+}
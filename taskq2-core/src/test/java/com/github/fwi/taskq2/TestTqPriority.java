@@ -0,0 +1,63 @@
+package com.github.fwi.taskq2;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class TestTqPriority {
+
+	@Test
+	public void highestPriorityFirst() {
+
+		TqPriority tq = new TqPriority();
+		assertEquals(TqPriority.DEFAULT_LEVELS, tq.getLevels());
+		tq.addTask("low1", 0);
+		tq.addTask("mid1", 1);
+		tq.addTask("high1", 2);
+		tq.addTask("low2", -5);
+		tq.addTask("high2", 9);
+		tq.addTask("mid2", 1);
+		assertEquals(6, tq.getSize());
+		assertEquals(2, tq.getSize(2));
+		StringBuilder sb = new StringBuilder();
+		TqEntry te = null;
+		while ((te = tq.getNextTask()) != null) {
+			sb.append(te.getTaskData()).append(' ');
+			tq.taskDone(te);
+		}
+		assertEquals("high1 high2 mid1 mid2 low1 low2 ", sb.toString());
+		assertEquals(0, tq.getSize());
+		assertEquals(0, tq.getInProgress());
+	}
+
+	@Test
+	public void agingLowPriority() throws Exception {
+
+		TqPriority tq = new TqPriority("aging", null, 2);
+		tq.setAgingMs(20L);
+		tq.addTask("low", 0);
+		for (int i = 0; i < 5; i++) {
+			tq.addTask("high" + i, 1);
+		}
+		assertEquals("high0", tq.getNextTask().getTaskData());
+		Thread.sleep(30L);
+		assertEquals("Low priority task waited too long.", "low", tq.getNextTask().getTaskData());
+		assertEquals("high1", tq.getNextTask().getTaskData());
+	}
+
+	@Test
+	public void agingTurnedOnLater() throws Exception {
+
+		TqPriority tq = new TqPriority("aging", null, 2);
+		tq.addTask("low", 0);
+		tq.addTask("high0", 1);
+		tq.addTask("high1", 1);
+		Thread.sleep(30L);
+		tq.setAgingMs(20L);
+		assertEquals("Aging starts when turned on.", "high0", tq.getNextTask().getTaskData());
+		Thread.sleep(30L);
+		assertEquals("Low priority task waited too long.", "low", tq.getNextTask().getTaskData());
+		assertEquals("high1", tq.getNextTask().getTaskData());
+	}
+
+}
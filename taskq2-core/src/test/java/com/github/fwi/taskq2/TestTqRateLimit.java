@@ -0,0 +1,150 @@
+package com.github.fwi.taskq2;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.github.fwi.taskq2.util.TokenBucket;
+
+public class TestTqRateLimit {
+
+	static final long MS = TimeUnit.MILLISECONDS.toNanos(1L);
+
+	@Test
+	public void tokenBucket() {
+
+		TokenBucket bucket = new TokenBucket(10.0d, 2);
+		long now = System.nanoTime();
+		assertTrue(bucket.isFull(now));
+		assertTrue(bucket.tryAcquire(now));
+		assertTrue("Burst of 2.", bucket.tryAcquire(now));
+		assertFalse(bucket.tryAcquire(now));
+		assertEquals(100 * MS, bucket.getWaitNanos(now));
+		assertFalse(bucket.tryAcquire(now + 99 * MS));
+		assertTrue(bucket.tryAcquire(now + 100 * MS));
+		bucket.cancel();
+		assertEquals("Cancel returns a token.", 0L, bucket.getWaitNanos(now + 100 * MS));
+		assertTrue(bucket.isFull(now + 300 * MS));
+	}
+
+	@Test
+	public void queueRateLimit() throws Exception {
+
+		queueRateLimit(false);
+		queueRateLimit(true);
+	}
+
+	void queueRateLimit(boolean workerPull) throws Exception {
+
+		final int tasks = 5;
+		final CountDownLatch done = new CountDownLatch(tasks);
+		final List<Long> started = new CopyOnWriteArrayList<>();
+		TqFifo tq = new TqFifo();
+		tq.setTasksHandler(new TaskHandler() {
+			@Override
+			public void onTask(Object tdata) {
+				started.add(System.nanoTime());
+				done.countDown();
+			}
+		});
+		tq.setRateLimit(20.0d, 1);
+		TqGroup tgroup = new TqGroup();
+		tgroup.setWorkerPull(workerPull);
+		tgroup.addQueue(tq);
+		tgroup.start();
+		try {
+			for (int i = 0; i < tasks; i++) {
+				tgroup.addTask(tq.getName(), i);
+			}
+			assertTrue("Tasks done.", done.await(2, TimeUnit.SECONDS));
+			for (int i = 1; i < tasks; i++) {
+				long between = started.get(i) - started.get(i - 1);
+				assertTrue("Tasks start 50 ms apart: " + between, between > 40 * MS);
+			}
+		} finally {
+			tgroup.stop();
+		}
+	}
+
+	@Test
+	public void qosKeyRateLimit() throws Exception {
+
+		final CountDownLatch done = new CountDownLatch(7);
+		final List<String> executed = new CopyOnWriteArrayList<>();
+		TqQos tq = new TqQos();
+		tq.setTasksHandler(new TaskHandler() {
+			@Override
+			public void onTask(Object tdata, String qname, String qosKey, long taskId) {
+				executed.add(qosKey);
+				done.countDown();
+			}
+		});
+		tq.setRateLimitPerQosKey(10.0d, 1);
+		TqGroup tgroup = new TqGroup();
+		tgroup.addQueue(tq);
+		tgroup.setPaused(true);
+		tgroup.start();
+		try {
+			for (int i = 0; i < 3; i++) {
+				tgroup.addTask(tq.getName(), i, "a");
+				tgroup.addTask(tq.getName(), i, "b");
+			}
+			tgroup.addTask(tq.getName(), 0, null);
+			tgroup.setPaused(false);
+			Thread.sleep(50L);
+			assertEquals("One task per key and the task without a key executed.", 3, executed.size());
+			assertEquals("Both keys throttled.", 2, tq.getSizeThrottledKeys());
+			assertTrue("Tasks done.", done.await(2, TimeUnit.SECONDS));
+			assertEquals(7, executed.size());
+			assertEquals(0, tq.getSizeThrottledKeys());
+		} finally {
+			tgroup.stop();
+		}
+	}
+
+	@Test
+	public void addToThrottledKey() throws Exception {
+
+		TqQos tq = new TqQos();
+		tq.setMaxConcurrentPerQosKey(2);
+		tq.setRateLimitPerQosKey(20.0d, 1);
+		tq.addTask(0, "a");
+		tq.addTask(1, "a");
+		TqEntry first = tq.getNextTask();
+		assertEquals(0, first.getTaskData());
+		assertEquals("Key throttled after using its token.", 1, tq.getSizeThrottledKeys());
+		tq.addTask(2, "a");
+		tq.addTask(3, "a");
+		assertEquals("Adding tasks does not put a throttled key back in the ring.", 1, tq.getSizeThrottledKeys());
+		assertNull(tq.getNextTask());
+		assertEquals("Key throttled once.", 1, tq.getSizeThrottledKeys());
+		assertEquals(1, tq.getSizeKeys());
+		assertEquals(1, tq.getInProgress());
+		for (int i = 1; i < 4; i++) {
+			long end = System.nanoTime() + 2000 * MS;
+			TqEntry te = null;
+			while ((te = tq.getNextTask()) == null && System.nanoTime() < end) {
+				Thread.sleep(5L);
+				// releases the throttled key
+				tq.isTaskAvailable();
+			}
+			assertNotNull("Task " + i + " available.", te);
+			assertEquals(i, te.getTaskData());
+			assertTrue("Keys: " + tq.getSizeKeys(), tq.getSizeKeys() >= 0);
+			assertTrue("In progress: " + tq.getInProgress(), tq.getInProgress() <= 2);
+			tq.taskDone(te);
+		}
+		assertEquals(0, tq.getSize());
+		assertEquals(0, tq.getSizeKeys());
+		assertEquals(0, tq.getSizeBlockedKeys());
+		assertEquals(0, tq.getSizeThrottledKeys());
+		tq.taskDone(first);
+		assertEquals(0, tq.getInProgress());
+	}
+
+}
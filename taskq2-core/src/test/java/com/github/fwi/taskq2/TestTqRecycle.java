@@ -0,0 +1,133 @@
+package com.github.fwi.taskq2;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TestTqRecycle {
+
+	@Test
+	public void ringFifo() {
+
+		TqRingFifo tq = new TqRingFifo("q", null, 3);
+		assertEquals(4, tq.getRingSize());
+		assertEquals(4, tq.getCapacity());
+		tq.setCapacity(100);
+		assertEquals(4, tq.getCapacity());
+		for (int i = 0; i < 4; i++) {
+			tq.addTask(new TqEntry(i));
+		}
+		try {
+			tq.addTask(new TqEntry(4));
+			fail("Ring is full.");
+		} catch (IllegalStateException expected) {}
+		assertEquals(0, tq.getNextTask().getTaskData());
+		assertEquals(3, tq.getSize());
+		assertEquals(1, tq.getInProgress());
+	}
+
+	@Test
+	public void recycleEntries() throws Exception {
+
+		recycleEntries(false);
+		recycleEntries(true);
+	}
+
+	@Test
+	public void recycleWithCapacity() throws Exception {
+
+		recycleWithCapacity(false);
+		recycleWithCapacity(true);
+	}
+
+	private void recycleWithCapacity(boolean workerPull) throws Exception {
+
+		final int tasks = 50;
+		final AtomicInteger executed = new AtomicInteger();
+		TqGroup tgroup = new TqGroup();
+		tgroup.setRecycle(true);
+		tgroup.setWorkerPull(workerPull);
+		tgroup.setCapacity(10);
+		TqFifo tq = new TqFifo("q", null);
+		tq.setCapacity(5);
+		tq.setTasksHandler(new TaskHandler() {
+			@Override
+			public void onTask(Object tdata) {
+				executed.incrementAndGet();
+			}
+		});
+		tgroup.addQueue(tq);
+		tgroup.start();
+		try {
+			for (int i = 0; i < tasks; i++) {
+				assertTrue("Task " + i + " added.", tgroup.addTask("q", i, null));
+				assertTrue(tgroup.awaitAllTasksDone(1, TimeUnit.SECONDS));
+			}
+			assertEquals(tasks, executed.get());
+			assertEquals(0, tgroup.getSize());
+			assertEquals(0, tq.getSize());
+		} finally {
+			tgroup.stop();
+		}
+	}
+
+	private void recycleEntries(boolean workerPull) throws Exception {
+
+		final int tasks = 10_000;
+		final AtomicInteger executed = new AtomicInteger();
+		final Set<TqEntry> entries = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+		TqGroup tgroup = new TqGroup() {
+			@Override
+			protected void taskDone(TqBase tq, TqEntry te) {
+				entries.add(te);
+				super.taskDone(tq, te);
+			}
+		};
+		tgroup.setRecycle(true);
+		assertTrue(tgroup.isRecycle());
+		tgroup.setWorkerPull(workerPull);
+		TqRingFifo tq1 = new TqRingFifo("q1", null, 1024);
+		TqQos tq2 = new TqQos("q2", null);
+		TaskHandler handler = new TaskHandler() {
+			@Override
+			public void onTask(Object tdata) {
+				executed.incrementAndGet();
+			}
+		};
+		tq1.setTasksHandler(handler);
+		tq2.setTasksHandler(handler);
+		tgroup.addQueue(tq1);
+		tgroup.addQueue(tq2);
+		tgroup.start();
+		try {
+			try {
+				tgroup.setRecycle(false);
+				fail("Recycle mode cannot be changed after start.");
+			} catch (IllegalStateException expected) {}
+			int added = 0;
+			for (int i = 0; i < tasks; i++) {
+				while (!tgroup.addTask("q1", i)) {
+					Thread.yield();
+				}
+				assertTrue(tgroup.addTask("q2", i, "key" + (i % 10)));
+				added += 2;
+			}
+			assertTrue("All tasks done.", tgroup.awaitAllTasksDone(5, TimeUnit.SECONDS));
+			assertEquals(added, executed.get());
+			assertTrue("Entries are re-used: " + entries.size(), entries.size() < added / 2);
+			TqEntry te = new TqEntry("not recycled");
+			assertTrue(tgroup.addTask("q1", te));
+			assertTrue(tgroup.awaitAllTasksDone(1, TimeUnit.SECONDS));
+			assertEquals("Entries given to the group are not reset.", "not recycled", te.getTaskData());
+		} finally {
+			tgroup.stop();
+		}
+	}
+
+}
@@ -0,0 +1,101 @@
+package com.github.fwi.taskq2;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestTqStats {
+
+	@Test
+	public void latencyStats() throws Exception {
+
+		TqQos tq = new TqQos("q", null);
+		tq.setTasksHandler(new TaskHandler() {
+			@Override
+			public void onTask(Object tdata) {
+				try {
+					Thread.sleep(1L);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		tq.setStatsEnabled(true);
+		tq.getStats().setMaxQosKeys(3);
+		tq.getStats().setDispatchTimeEnabled(true);
+		tq.getStats().setWaitTimeSampling(1);
+		TqGroup tgroup = new TqGroup();
+		tgroup.addQueue(tq);
+		tgroup.start();
+		try {
+			for (int i = 0; i < 10; i++) {
+				tgroup.addTask("q", i, (i < 6 ? "a" : (i < 9 ? "b" : "c")));
+			}
+			assertTrue("All tasks done.", tgroup.awaitAllTasksDone(1, TimeUnit.SECONDS));
+			TqStats stats = tq.getStats();
+			assertEquals(10L, stats.getWaitTime().getCount());
+			assertEquals(10L, stats.getDispatchTime().getCount());
+			assertEquals(10L, stats.getExecutionTime().getCount());
+			assertTrue("Execution time at least 1 ms: " + stats, 
+					stats.getExecutionTime().getSnapshot().getP50() >= TimeUnit.MILLISECONDS.toNanos(1L) * 15 / 16);
+			List<TqStats.QosKeyStats> top = stats.getTopQosKeys(1);
+			assertEquals(1, top.size());
+			assertEquals("a", top.get(0).getQosKey());
+			assertEquals(6L, top.get(0).getCount());
+			assertEquals("Three Qos-keys tracked.", 3, stats.getTopQosKeys(10).size());
+		} finally {
+			tgroup.stop();
+		}
+	}
+
+	@Test
+	public void workerPullStartTime() throws Exception {
+
+		final long gapMs = 20L;
+		TqFifo tq = new TqFifo("q", null);
+		tq.setTasksHandler(new TaskHandler() {
+			@Override
+			public void onTask(Object tdata) {}
+		});
+		// one worker that takes both tasks
+		tq.setMaxConcurrent(1);
+		tq.setStatsEnabled(true);
+		tq.getStats().setWaitTimeSampling(1);
+		TqGroup tgroup = new TqGroup() {
+			@Override
+			protected void taskDone(TqBase tq, TqEntry te) {
+				super.taskDone(tq, te);
+				if (Integer.valueOf(0).equals(te.getTaskData())) {
+					// the worker is busy after the first task, the second task is added during this gap
+					try {
+						Thread.sleep(gapMs);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					addTask("q", 1);
+				}
+			}
+		};
+		tgroup.setWorkerPull(true);
+		tgroup.addQueue(tq);
+		tgroup.start();
+		try {
+			tgroup.addTask("q", 0);
+			long end = System.currentTimeMillis() + 1000L;
+			while (tgroup.getTasksExecuted() < 2L && System.currentTimeMillis() < end) {
+				Thread.sleep(1L);
+			}
+			assertEquals(2L, tgroup.getTasksExecuted());
+			TqStats stats = tq.getStats();
+			assertEquals(2L, stats.getExecutionTime().getCount());
+			assertTrue("The gap before taking a task is not execution time: " + stats, 
+					stats.getExecutionTime().getMax() < TimeUnit.MILLISECONDS.toNanos(gapMs) / 2);
+		} finally {
+			tgroup.stop();
+		}
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.github.fwi.taskq2;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestTqSubmit {
+
+	@Test
+	public void submitTasks() throws Exception {
+
+		TqFifo tq = new TqFifo("q", null);
+		tq.setTasksHandler(new TaskHandler() {
+			@Override
+			public void onTask(Object tdata) {
+				if ("fail".equals(tdata)) {
+					throw new IllegalArgumentException("Failing task for test.");
+				}
+			}
+		});
+		TqFifo tqAsync = new TqFifo("qAsync", null);
+		tqAsync.setTasksHandler(new CompletableTaskHandler() {
+			@Override
+			public CompletionStage<?> onTaskAsync(Object tdata, String qname, String qosKey, long taskId) {
+				return CompletableFuture.completedFuture("done " + tdata);
+			}
+		});
+		TqGroup tgroup = new TqGroup();
+		tgroup.addQueue(tq);
+		tgroup.addQueue(tqAsync);
+		tgroup.start();
+		try {
+			assertNull(tgroup.submit("q", "ok").get(1, TimeUnit.SECONDS));
+			try {
+				tgroup.submit("q", "fail").get(1, TimeUnit.SECONDS);
+				fail("Task failed.");
+			} catch (ExecutionException expected) {
+				assertTrue(expected.getCause() instanceof IllegalArgumentException);
+			}
+			assertEquals("done 1", tgroup.submit("qAsync", 1).get(1, TimeUnit.SECONDS));
+			try {
+				tgroup.submit("unknown", 1).get(1, TimeUnit.SECONDS);
+				fail("Queue does not exist.");
+			} catch (ExecutionException expected) {
+				assertTrue(expected.getCause() instanceof RejectedExecutionException);
+			}
+			TqEntry te = new TqEntry("plain");
+			assertTrue(tgroup.addTask("q", te));
+			assertNull("No future for plain tasks.", te.getCompletion());
+			assertTrue("All tasks done.", tgroup.awaitAllTasksDone(1, TimeUnit.SECONDS));
+			tgroup.addTask("q", "again");
+			assertTrue("Wait for all tasks done can be repeated.", tgroup.awaitAllTasksDone(1, TimeUnit.SECONDS));
+			assertEquals(5, tgroup.getTasksExecuted());
+		} finally {
+			tgroup.stop();
+		}
+	}
+
+}
@@ -1,6 +1,8 @@
 package com.github.fwi.taskq2;
 
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -83,4 +85,42 @@ public class TestTqTasksSimple {
 		}
 	}
 
+	@Test
+	public void restart() throws Exception {
+
+		final AtomicInteger executed = new AtomicInteger();
+		ExecutorService executor = Executors.newCachedThreadPool();
+		TqGroup restarted = new TqGroup() {
+			@Override
+			protected void starting() {
+				super.starting();
+				// let the execution loop start before start() returns
+				try {
+					Thread.sleep(20L);
+				} catch (InterruptedException ignored) {}
+			}
+		};
+		restarted.setExecutor(executor);
+		TqFifo rtq = new TqFifo();
+		rtq.setTasksHandler(new TaskHandler() {
+			@Override
+			public void onTask(Object tdata) {
+				executed.incrementAndGet();
+			}
+		});
+		restarted.addQueue(rtq);
+		try {
+			for (int i = 0; i < 5; i++) {
+				restarted.start();
+				assertTrue(restarted.addTask(rtq.getName(), i));
+				assertTrue("Task executed after restart " + i, restarted.awaitAllTasksDone(1L, TimeUnit.SECONDS));
+				restarted.stop();
+			}
+			assertEquals(5, executed.get());
+		} finally {
+			restarted.stop();
+			executor.shutdownNow();
+		}
+	}
+
 }
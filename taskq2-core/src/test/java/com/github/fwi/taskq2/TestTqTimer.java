@@ -0,0 +1,92 @@
+package com.github.fwi.taskq2;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestTqTimer {
+
+	@Test
+	public void delayedTasks() throws Exception {
+
+		final ConcurrentHashMap<Integer, Long> executedAt = new ConcurrentHashMap<>();
+		final CountDownLatch latch = new CountDownLatch(4);
+		TqFifo tq = new TqFifo();
+		tq.setTasksHandler(new TaskHandler() {
+			@Override
+			public void onTask(Object tdata) {
+				executedAt.put((Integer) tdata, System.nanoTime());
+				latch.countDown();
+			}
+		});
+		TqGroup tgroup = new TqGroup() {
+			@Override
+			protected TqTimer createTimer() {
+				// one turn of the wheel is 40 ms
+				return new TqTimer(this, 5L, 8);
+			}
+		};
+		tgroup.addQueue(tq);
+		tgroup.start();
+		try {
+			long start = System.nanoTime();
+			assertTrue(tgroup.addTask(tq.getName(), 150, null, 150L));
+			assertTrue(tgroup.addTask(tq.getName(), 50, null, 50L));
+			assertTrue(tgroup.addTask(tq.getName(), 0, null, 0L));
+			// longer than one turn of the wheel
+			assertTrue(tgroup.addTask(tq.getName(), 200, null, 200L));
+			assertFalse("Unknown queue", tgroup.addTask("unknown", 1, null, 10L));
+			assertEquals(3, tgroup.getDelayedSize());
+			assertTrue("Task without delay executed", waitFor(executedAt, 0));
+			assertTrue("Delayed task executed", waitFor(executedAt, 150));
+			assertNotNull("Shorter delay executed", executedAt.get(50));
+			assertTrue(executedAt.get(50) - start >= TimeUnit.MILLISECONDS.toNanos(50L));
+			assertTrue(executedAt.get(150) - start >= TimeUnit.MILLISECONDS.toNanos(150L));
+			assertTrue(executedAt.get(50) < executedAt.get(150));
+			assertTrue("Delayed task after one round", latch.await(1L, TimeUnit.SECONDS));
+			assertTrue(executedAt.get(200) - start >= TimeUnit.MILLISECONDS.toNanos(200L));
+			assertEquals(0, tgroup.getDelayedSize());
+		} finally {
+			tgroup.stop();
+		}
+	}
+
+	private boolean waitFor(ConcurrentHashMap<Integer, Long> executedAt, int task) throws InterruptedException {
+
+		for (int i = 0; i < 100 && !executedAt.containsKey(task); i++) {
+			Thread.sleep(10L);
+		}
+		return executedAt.containsKey(task);
+	}
+
+	@Test
+	public void manyTimers() throws Exception {
+
+		final int tasks = 100_000;
+		TqFifo tq = new TqFifo();
+		tq.setTasksHandler(new TaskHandler() {
+			@Override
+			public void onTask(Object tdata) {}
+		});
+		TqGroup tgroup = new TqGroup();
+		tgroup.addQueue(tq);
+		tgroup.start();
+		try {
+			for (int i = 0; i < tasks; i++) {
+				tgroup.addTask(tq.getName(), i, null, 1L + (i % 200));
+			}
+			for (int i = 0; i < 200 && tgroup.getTasksExecuted() < tasks; i++) {
+				Thread.sleep(10L);
+			}
+			assertEquals(0, tgroup.getDelayedSize());
+			assertEquals(tasks, tgroup.getTasksExecuted());
+		} finally {
+			tgroup.stop();
+		}
+	}
+
+}
@@ -0,0 +1,80 @@
+package com.github.fwi.taskq2;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TestTqWeightedQos {
+
+	@Test
+	public void weightedTenants() {
+
+		TqWeightedQos tq = new TqWeightedQos();
+		tq.setTenantWeight("a", 3);
+		for (int i = 0; i < 6; i++) {
+			tq.addTask(i, "a", "u" + (i % 2));
+			tq.addTask(i, "b", "u" + (i % 2));
+		}
+		assertEquals(2, tq.getSizeTenants());
+		StringBuilder sb = new StringBuilder();
+		TqEntry te = null;
+		while ((te = tq.getNextTask()) != null) {
+			sb.append(te.getQosKey()).append(' ');
+			tq.taskDone(te);
+		}
+		assertEquals("a/u0 a/u1 a/u0 b/u0 a/u1 a/u0 a/u1 b/u1 b/u0 b/u1 b/u0 b/u1 ", sb.toString());
+		assertEquals(0, tq.getSize());
+		assertEquals(0, tq.getSizeTenants());
+	}
+
+	@Test
+	public void usersInTurn() {
+
+		TqWeightedQos tq = new TqWeightedQos();
+		tq.setDefaultWeight(4);
+		tq.addTask(1, "t/hot");
+		tq.addTask(2, "t/hot");
+		tq.addTask(3, "t/hot");
+		tq.addTask(4, "t/cold");
+		tq.addTask(5, null);
+		tq.addTask(6, "single");
+		StringBuilder sb = new StringBuilder();
+		TqEntry te = null;
+		while ((te = tq.getNextTask()) != null) {
+			sb.append(te.getTaskData()).append(' ');
+		}
+		assertEquals("1 4 2 3 5 6 ", sb.toString());
+	}
+
+	@Test
+	public void inGroup() throws Exception {
+
+		final int tasks = 10_000;
+		final AtomicInteger executed = new AtomicInteger();
+		TqWeightedQos tq = new TqWeightedQos();
+		tq.setTasksHandler(new TaskHandler() {
+			@Override
+			public void onTask(Object tdata) {
+				executed.incrementAndGet();
+			}
+		});
+		TqGroup tgroup = new TqGroup();
+		tgroup.addQueue(tq);
+		tgroup.start();
+		try {
+			for (int i = 0; i < tasks; i++) {
+				tgroup.addTask(tq.getName(), i, "tenant" + (i % 7) + "/user" + (i % 100));
+			}
+			assertTrue("All tasks done.", tgroup.awaitAllTasksDone(5, TimeUnit.SECONDS));
+			assertEquals(tasks, executed.get());
+			assertEquals(0, tq.getSizeTenants());
+			assertEquals(0, tq.getInProgress());
+		} finally {
+			tgroup.stop();
+		}
+	}
+
+}
@@ -5,7 +5,11 @@ import static org.junit.Assert.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -93,6 +97,94 @@ public class TestTqWithQos {
 		tgroup.stop();
 	}
 
+	@Test
+	public void concurrentAddPoll() throws Exception {
+
+		final TqQos tq = new TqQos();
+		final int producers = 4;
+		final int tasksPerProducer = 10_000;
+		final int keys = 500;
+		final AtomicInteger polled = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(producers * 2);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int p = 0; p < producers; p++) {
+				final int producer = p;
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < tasksPerProducer; i++) {
+						tq.addTask(new TqEntry(i, (i % 10 == 0 ? null : producer + "-" + (i % keys))));
+					}
+				}));
+				futures.add(executor.submit(() -> {
+					while (polled.get() < producers * tasksPerProducer) {
+						TqEntry te = tq.getNextTask();
+						if (te == null) {
+							continue;
+						}
+						polled.incrementAndGet();
+						tq.taskDone(te);
+					}
+				}));
+			}
+			for (Future<?> f : futures) {
+				f.get(10, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(producers * tasksPerProducer, polled.get());
+		assertEquals(0, tq.getSize());
+		assertEquals(0, tq.getSizeKeys());
+		assertNull(tq.getNextTask());
+	}
+
+	@Test
+	public void maxConcurrentPerQosKey() throws Exception {
+
+		TqQos tq = new TqQos();
+		tq.setTasksHandler(new CountDownTaskHandler());
+		tq.setMaxConcurrent(3);
+		tq.setMaxConcurrentPerQosKey(1);
+		TqGroup tgroup = new CountDownTqGroup();
+		tgroup.addQueue(tq);
+		tgroup.start();
+		try {
+			List<CountDownTask> hotTasks = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				CountDownTask task = new CountDownTask();
+				hotTasks.add(task);
+				tgroup.addTask(tq.getName(), task, "hot");
+			}
+			CountDownTask coldTask = new CountDownTask();
+			tgroup.addTask(tq.getName(), coldTask, "cold");
+			assertTrue("Executing first hot task.", hotTasks.get(0).running.await(1, TimeUnit.SECONDS));
+			assertTrue("Executing cold task.", coldTask.running.await(1, TimeUnit.SECONDS));
+			assertFalse("Hot key at max concurrent.", hotTasks.get(1).running.await(50, TimeUnit.MILLISECONDS));
+			assertEquals("Two tasks in progress, one slot free.", 2, tq.getInProgress());
+			assertEquals(1, tq.getSizeBlockedKeys());
+			assertFalse(tq.isTaskAvailable());
+			// tasks without Qos-key are not limited per key
+			CountDownTask noKeyTask = new CountDownTask();
+			tgroup.addTask(tq.getName(), noKeyTask);
+			assertTrue("Executing task without Qos-key.", noKeyTask.running.await(1, TimeUnit.SECONDS));
+			noKeyTask.finish.countDown();
+			coldTask.finish.countDown();
+			for (int i = 0; i < hotTasks.size(); i++) {
+				CountDownTask task = hotTasks.get(i);
+				assertTrue("Executing hot task " + i, task.running.await(1, TimeUnit.SECONDS));
+				assertEquals("Hot key blocked.", (i < hotTasks.size() - 1 ? 1 : 0), tq.getSizeBlockedKeys());
+				task.finish.countDown();
+				assertTrue(task.done.await(1, TimeUnit.SECONDS));
+			}
+			assertTrue(noKeyTask.done.await(1, TimeUnit.SECONDS));
+			assertTrue(coldTask.done.await(1, TimeUnit.SECONDS));
+			assertEmpty(tgroup, tq);
+			assertEquals(0, tq.getSizeBlockedKeys());
+		} finally {
+			tgroup.stop();
+		}
+	}
+
 	private void assertEmpty(TqGroup tgroup, TqQos tq) {
 	
 		assertEquals("No qos tasks remaining.", 0, tgroup.getSize());
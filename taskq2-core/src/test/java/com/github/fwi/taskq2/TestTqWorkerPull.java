@@ -0,0 +1,155 @@
+package com.github.fwi.taskq2;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TestTqWorkerPull {
+
+	@Test
+	public void maxConcurrentWorkers() throws Exception {
+
+		TqFifo tq = new TqFifo();
+		tq.setTasksHandler(new CountDownTaskHandler());
+		tq.setMaxConcurrent(2);
+		TqGroup tgroup = new CountDownTqGroup();
+		tgroup.setWorkerPull(true);
+		tgroup.addQueue(tq);
+		tgroup.start();
+		try {
+			CountDownLatch taskRun = new CountDownLatch(2);
+			CountDownLatch taskFinish = new CountDownLatch(1);
+			CountDownLatch taskDone = new CountDownLatch(2);
+			for (int i = 0; i < 2; i++) {
+				CountDownTask task = new CountDownTask();
+				task.running = taskRun;
+				task.finish = taskFinish;
+				task.done = taskDone;
+				tgroup.addTask(tq.getName(), task);
+			}
+			CountDownTask lastTask = new CountDownTask();
+			tgroup.addTask(tq.getName(), lastTask);
+			assertTrue("Executing tasks.", taskRun.await(1, TimeUnit.SECONDS));
+			assertEquals("No more than max tasks running at the same time.", 2, tq.getInProgress());
+			assertEquals("One task waiting.", 1, tq.getSize());
+			taskFinish.countDown();
+			assertTrue("Tasks done.", taskDone.await(1, TimeUnit.SECONDS));
+			assertTrue("Executing last task.", lastTask.running.await(1, TimeUnit.SECONDS));
+			lastTask.finish.countDown();
+			assertTrue("Last task done.", lastTask.done.await(1, TimeUnit.SECONDS));
+		} finally {
+			tgroup.stop();
+		}
+	}
+
+	@Test
+	public void raiseMaxConcurrent() throws Exception {
+
+		TqFifo tq = new TqFifo();
+		tq.setTasksHandler(new CountDownTaskHandler());
+		tq.setMaxConcurrent(1);
+		TqGroup tgroup = new CountDownTqGroup();
+		tgroup.setWorkerPull(true);
+		tgroup.addQueue(tq);
+		tgroup.start();
+		try {
+			CountDownLatch taskRun = new CountDownLatch(3);
+			CountDownLatch taskFinish = new CountDownLatch(1);
+			CountDownLatch taskDone = new CountDownLatch(3);
+			for (int i = 0; i < 3; i++) {
+				CountDownTask task = new CountDownTask();
+				task.running = taskRun;
+				task.finish = taskFinish;
+				task.done = taskDone;
+				tgroup.addTask(tq.getName(), task);
+			}
+			assertFalse("One worker executing one task.", taskRun.await(100, TimeUnit.MILLISECONDS));
+			assertEquals(1, tq.getInProgress());
+			assertTrue(tgroup.setMaxConcurrent(tq.getName(), 3));
+			assertEquals(3, tq.getMaxConcurrent());
+			assertTrue("Extra workers executing tasks.", taskRun.await(1, TimeUnit.SECONDS));
+			assertEquals(3, tq.getInProgress());
+			taskFinish.countDown();
+			assertTrue("Tasks done.", taskDone.await(1, TimeUnit.SECONDS));
+			assertFalse(tgroup.setMaxConcurrent("unknown", 3));
+		} finally {
+			tgroup.stop();
+		}
+	}
+
+	@Test
+	public void pullManyTasks() throws Exception {
+
+		final int tasks = 10_000;
+		final AtomicInteger executed = new AtomicInteger();
+		TqGroup tgroup = new TqGroup();
+		tgroup.setWorkerPull(true);
+		tgroup.setWorkerSpinCount(100);
+		TqFifo tq1 = new TqFifo("q1", null);
+		TqQos tq2 = new TqQos("q2", null);
+		TaskHandler handler = new TaskHandler() {
+			@Override
+			public void onTask(Object tdata) {
+				executed.incrementAndGet();
+			}
+		};
+		tq1.setTasksHandler(handler);
+		tq2.setTasksHandler(handler);
+		tgroup.addQueue(tq1);
+		tgroup.start();
+		// queue added after start also gets workers
+		tgroup.addQueue(tq2);
+		try {
+			tgroup.setPaused("q1", true);
+			for (int i = 0; i < tasks; i++) {
+				tgroup.addTask("q1", i);
+				tgroup.addTask("q2", i, "key" + (i % 10));
+			}
+			tgroup.setPaused("q1", false);
+			assertTrue("All tasks done.", tgroup.awaitAllTasksDone(5, TimeUnit.SECONDS));
+			assertEquals(2 * tasks, executed.get());
+			assertEquals(0, tgroup.getSize());
+			assertEquals(0, tq1.getInProgress());
+			assertEquals(0, tq2.getInProgress());
+		} finally {
+			tgroup.stop();
+		}
+	}
+
+	@Test
+	public void workerSurvivesError() throws Exception {
+
+		final AtomicInteger executed = new AtomicInteger();
+		TqGroup tgroup = new TqGroup();
+		tgroup.setWorkerPull(true);
+		TqFifo tq = new TqFifo();
+		tq.setTasksHandler(new TaskHandler() {
+			@Override
+			public void onTask(Object tdata) {
+				if (Integer.valueOf(0).equals(tdata)) {
+					throw new Error("Task handler error for test.");
+				}
+				executed.incrementAndGet();
+			}
+		});
+		// one worker, tasks after the error must be executed by the same worker
+		tq.setMaxConcurrent(1);
+		tgroup.addQueue(tq);
+		tgroup.start();
+		try {
+			for (int i = 0; i < 10; i++) {
+				tgroup.addTask(tq.getName(), i);
+			}
+			assertTrue("All tasks done.", tgroup.awaitAllTasksDone(1, TimeUnit.SECONDS));
+			assertEquals(9, executed.get());
+			assertEquals(0, tq.getInProgress());
+		} finally {
+			tgroup.stop();
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+package com.github.fwi.taskq2.jfr;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.github.fwi.taskq2.TqEntry;
+import com.github.fwi.taskq2.TqFifo;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class TestTqJfr {
+
+	@Test
+	public void disabledByDefault() {
+		assertFalse(TqJfr.ENABLED);
+	}
+
+	@Test
+	public void recordTaskEvents() throws Exception {
+
+		TqFifo tq = new TqFifo("q1", null);
+		TqEntry te = new TqEntry("task", "key1", 42L);
+		Path jfrFile = Files.createTempFile("taskq2-", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("com.github.fwi.taskq2.TaskEnqueued");
+			recording.enable("com.github.fwi.taskq2.TaskDispatched");
+			recording.enable("com.github.fwi.taskq2.TaskExecuted");
+			recording.enable("com.github.fwi.taskq2.TaskDone");
+			recording.start();
+			tq.addTask(te);
+			TqJfr.taskEnqueued(tq, te);
+			tq.getNextTask();
+			TqJfr.taskDispatched(tq, te);
+			TqJfr.taskExecuted(tq, te, 1, 1000L, 3000L, true);
+			tq.taskDone(te);
+			TqJfr.taskDone(tq, te);
+			recording.stop();
+			recording.dump(jfrFile);
+			Map<String, RecordedEvent> events = new HashMap<>();
+			for (RecordedEvent event : RecordingFile.readAllEvents(jfrFile)) {
+				events.put(event.getEventType().getName(), event);
+			}
+			assertEquals(4, events.size());
+			RecordedEvent enqueued = events.get("com.github.fwi.taskq2.TaskEnqueued");
+			assertEquals("q1", enqueued.getString("queue"));
+			assertEquals("key1", enqueued.getString("qosKey"));
+			assertEquals(42L, enqueued.getLong("taskId"));
+			assertEquals(1, enqueued.getInt("queueSize"));
+			assertEquals(1, events.get("com.github.fwi.taskq2.TaskDispatched").getInt("inProgress"));
+			RecordedEvent executed = events.get("com.github.fwi.taskq2.TaskExecuted");
+			assertEquals(2000L, executed.getDuration("executionTime").toNanos());
+			assertTrue(executed.getBoolean("failed"));
+			assertEquals(1, executed.getInt("batchSize"));
+			assertEquals(42L, events.get("com.github.fwi.taskq2.TaskDone").getLong("taskId"));
+		} finally {
+			Files.deleteIfExists(jfrFile);
+		}
+	}
+
+}
@@ -0,0 +1,45 @@
+package com.github.fwi.taskq2.jmx;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import com.github.fwi.taskq2.TqFifo;
+import com.github.fwi.taskq2.TqGroup;
+import com.github.fwi.taskq2.TqQos;
+
+public class TestTqJmx {
+
+	@Test
+	public void registerGroup() throws Exception {
+
+		TqGroup tgroup = new TqGroup();
+		tgroup.addQueue(new TqFifo("q1", null));
+		tgroup.addQueue(new TqQos("q2", null));
+		List<ObjectName> names = TqJmx.register(tgroup, "test");
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			assertEquals(3, names.size());
+			ObjectName groupName = TqJmx.objectName("TqGroup", "test");
+			assertTrue(server.isRegistered(groupName));
+			assertEquals(2, ((String[]) server.getAttribute(groupName, "QueueNames")).length);
+			assertEquals(Boolean.TRUE, server.invoke(groupName, "pauseQueue", new Object[] { "q1" }, new String[] { String.class.getName() }));
+			assertTrue(tgroup.getQueue("q1").isPaused());
+			ObjectName q2Name = TqJmx.objectName(TqJmx.DOMAIN + ":type=TqQueue,group=\"test\",name=\"q2\"");
+			server.setAttribute(q2Name, new Attribute("MaxConcurrent", 7));
+			assertEquals(7, tgroup.getQueue("q2").getMaxConcurrent());
+			assertEquals(0, server.getAttribute(q2Name, "SizeQosKeys"));
+		} finally {
+			TqJmx.unregister(names);
+		}
+		assertFalse(server.isRegistered(names.get(0)));
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.github.fwi.taskq2.util;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestConcurrentLongIntMap {
+
+	@Test
+	public void referenceCounts() {
+
+		ConcurrentLongIntMap map = new ConcurrentLongIntMap(1);
+		assertEquals(1, map.increment(5L));
+		assertEquals(2, map.increment(5L));
+		assertEquals(1, map.increment(-7L));
+		assertEquals(2, map.get(5L));
+		assertTrue(map.containsKey(-7L));
+		assertFalse(map.containsKey(6L));
+		assertEquals(3, map.size());
+		assertEquals(1, map.decrement(5L));
+		assertEquals(0, map.decrement(5L));
+		assertEquals(-1, map.decrement(5L));
+		assertFalse(map.containsKey(5L));
+		assertEquals(0, map.get(0L));
+		try {
+			map.increment(0L);
+			fail("Key 0 is not allowed.");
+		} catch (IllegalArgumentException expected) {}
+	}
+
+	@Test
+	public void randomOperations() {
+
+		ConcurrentLongIntMap map = new ConcurrentLongIntMap(4);
+		Map<Long, Integer> expected = new HashMap<>();
+		Random random = new Random(42L);
+		for (int op = 0; op < 200_000; op++) {
+			long key = 1L + random.nextInt(2000);
+			if (random.nextInt(3) > 0) {
+				assertEquals(expected.merge(key, 1, Integer::sum).intValue(), map.increment(key));
+			} else {
+				Integer count = expected.get(key);
+				assertEquals((count == null ? -1 : count - 1), map.decrement(key));
+				if (count != null) {
+					if (count == 1) {
+						expected.remove(key);
+					} else {
+						expected.put(key, count - 1);
+					}
+				}
+			}
+		}
+		int total = 0;
+		for (Map.Entry<Long, Integer> e : expected.entrySet()) {
+			assertEquals(e.getValue().intValue(), map.get(e.getKey()));
+			total += e.getValue();
+		}
+		assertEquals(total, map.size());
+		for (Map.Entry<Long, Integer> e : expected.entrySet()) {
+			for (int i = e.getValue(); i > 0; i--) {
+				assertEquals(i - 1, map.decrement(e.getKey()));
+			}
+		}
+		assertEquals(0, map.size());
+		assertEquals("Tables shrink when empty", 4 * 16 * 8L, map.getTableBytes());
+	}
+
+	@Test
+	public void concurrentUpdates() throws Exception {
+
+		final ConcurrentLongIntMap map = new ConcurrentLongIntMap();
+		final int threads = 4;
+		final int keys = 50_000;
+		final CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			final long offset = t * (long) keys;
+			new Thread(() -> {
+				for (long k = 1; k <= keys; k++) {
+					map.increment(offset + k);
+					map.increment(k);
+				}
+				for (long k = 1; k <= keys; k += 2) {
+					map.decrement(offset + k);
+				}
+				done.countDown();
+			}).start();
+		}
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		assertEquals(threads * keys + threads * keys / 2, map.size());
+		assertTrue("Less than 16 bytes per reference: " + map.getTableBytes(), map.getTableBytes() < 16L * map.size());
+	}
+
+}
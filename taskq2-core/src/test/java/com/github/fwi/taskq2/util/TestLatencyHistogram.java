@@ -0,0 +1,41 @@
+package com.github.fwi.taskq2.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class TestLatencyHistogram {
+
+	@Test
+	public void buckets() {
+
+		for (long v : new long[] { 0L, 1L, 15L, 16L, 17L, 31L, 32L, 1000L, 123_456_789L, Long.MAX_VALUE }) {
+			int i = LatencyHistogram.bucketIndex(v);
+			assertTrue("Value " + v + " in bucket " + i, LatencyHistogram.bucketLowerBound(i) <= v);
+			if (i + 1 < LatencyHistogram.BUCKETS) {
+				assertTrue("Value " + v + " below next bucket", v < LatencyHistogram.bucketLowerBound(i + 1));
+			}
+			assertTrue("Relative error below 1/16", v - LatencyHistogram.bucketLowerBound(i) <= v / 16);
+		}
+		assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void percentiles() {
+
+		LatencyHistogram h = new LatencyHistogram();
+		assertEquals(0L, h.getValueAtPercentile(50.0d));
+		for (long v = 1L; v <= 1000L; v++) {
+			h.record(v * 1000L);
+		}
+		assertEquals(1000L, h.getCount());
+		assertEquals(1_000_000L, h.getMax());
+		LatencyHistogram.Snapshot s = h.getSnapshot();
+		assertEquals(500_000d, s.getP50(), 500_000d / 16);
+		assertEquals(990_000d, s.getP99(), 990_000d / 16);
+		assertEquals(1_000_000L, s.getP999());
+		h.reset();
+		assertEquals(0L, h.getCount());
+	}
+
+}
@@ -0,0 +1,84 @@
+package com.github.fwi.taskq2.util;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class TestMpmcRingBuffer {
+
+	@Test
+	public void offerPoll() {
+
+		MpmcRingBuffer<Integer> ring = new MpmcRingBuffer<>(3);
+		assertEquals(4, ring.getCapacity());
+		assertNull(ring.poll());
+		for (int i = 0; i < 4; i++) {
+			assertTrue(ring.offer(i));
+		}
+		assertFalse("Full", ring.offer(4));
+		assertEquals(4, ring.size());
+		for (int round = 0; round < 10; round++) {
+			assertEquals(Integer.valueOf(round), ring.poll());
+			assertTrue(ring.offer(round + 4));
+		}
+		assertEquals(4, ring.size());
+	}
+
+	@Test
+	public void concurrentProducersConsumers() throws Exception {
+
+		final int threads = 4;
+		final int perThread = 50_000;
+		final MpmcRingBuffer<Long> ring = new MpmcRingBuffer<>(64);
+		final AtomicLong sum = new AtomicLong();
+		final AtomicLong polled = new AtomicLong();
+		final CountDownLatch done = new CountDownLatch(2 * threads);
+		for (int t = 0; t < threads; t++) {
+			new Thread(() -> {
+				for (long i = 1; i <= perThread; i++) {
+					while (!ring.offer(i)) {
+						Thread.yield();
+					}
+				}
+				done.countDown();
+			}).start();
+			new Thread(() -> {
+				while (polled.get() < threads * perThread) {
+					Long v = ring.poll();
+					if (v == null) {
+						Thread.yield();
+					} else {
+						sum.addAndGet(v);
+						polled.incrementAndGet();
+					}
+				}
+				done.countDown();
+			}).start();
+		}
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		assertEquals((long) threads * perThread * (perThread + 1) / 2, sum.get());
+		assertTrue(ring.isEmpty());
+	}
+
+	@Test
+	public void recyclePool() {
+
+		RecyclePool<Object> pool = new RecyclePool<>(Object::new, 2, 1);
+		Object o1 = pool.take();
+		Object o2 = pool.take();
+		Object o3 = pool.take();
+		pool.release(o1);
+		pool.release(o2);
+		pool.release(o3);
+		assertEquals("One cached, two shared", 2, pool.getSharedSize());
+		assertSame(o1, pool.take());
+		assertSame(o2, pool.take());
+		assertSame(o3, pool.take());
+		assertNotNull(pool.take());
+	}
+
+}
@@ -0,0 +1,60 @@
+package com.github.fwi.taskq2.util;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.github.fwi.taskq2.TaskHandler;
+import com.github.fwi.taskq2.TqFifo;
+import com.github.fwi.taskq2.TqGroup;
+
+public class TestVirtualThreads {
+
+	@Test
+	public void availability() {
+
+		String version = System.getProperty("java.specification.version");
+		int major = (version.startsWith("1.") ? 8 : Integer.parseInt(version));
+		if (major >= 21) {
+			assertTrue("Virtual threads available with Java " + version, VirtualThreads.isAvailable());
+		} else if (major < 19) {
+			assertFalse("Virtual threads not available with Java " + version, VirtualThreads.isAvailable());
+		}
+	}
+
+	@Test
+	public void groupWithVirtualThreads() throws Exception {
+
+		final CountDownLatch latch = new CountDownLatch(10);
+		final AtomicBoolean daemon = new AtomicBoolean(true);
+		TqGroup tgroup = new TqGroup();
+		tgroup.setUseVirtualThreads(true);
+		TqFifo tq = new TqFifo();
+		tq.setTasksHandler(new TaskHandler() {
+			@Override
+			public void onTask(Object tdata) {
+				if (!Thread.currentThread().isDaemon()) {
+					daemon.set(false);
+				}
+				latch.countDown();
+			}
+		});
+		tgroup.addQueue(tq);
+		tgroup.start();
+		try {
+			for (int i = 0; i < 10; i++) {
+				tgroup.addTask(tq.getName(), i);
+			}
+			// on older Java versions platform (daemon) threads are used.
+			assertTrue("Tasks executed.", latch.await(1L, TimeUnit.SECONDS));
+			assertTrue("Task threads are daemon threads.", daemon.get());
+		} finally {
+			tgroup.stop();
+		}
+	}
+
+}
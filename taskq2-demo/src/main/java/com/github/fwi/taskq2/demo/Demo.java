@@ -14,6 +14,7 @@ import com.github.fwi.taskq2.SingletonTaskHandlerFactory;
 import com.github.fwi.taskq2.TqEntry;
 import com.github.fwi.taskq2.TqFifo;
 import com.github.fwi.taskq2.TqQos;
+import com.github.fwi.taskq2.db.TqDbAcknowledger;
 import com.github.fwi.taskq2.db.TqDbConf;
 import com.github.fwi.taskq2.db.TqDbGroup;
 import com.github.fwi.taskq2.db.TqDbInit;
@@ -149,6 +150,10 @@ public class Demo implements Closeable {
 		 */
 		TqDbPoll dbPoller = new TqDbPoll(tgroup, dbPool.getDataSource());
 		tgroup.setPoller(dbPoller);
+		/*
+		 * The acknowledger deletes the task records of finished tasks in batches (see TasksHandler.stats).
+		 */
+		tgroup.setAcknowledger(new TqDbAcknowledger(tgroup, dbPool.getDataSource()));
 
 		dgroup = new DemoGroup(dbPool, tgroup);
 		tasksHandler.setDemoGroup(dgroup);
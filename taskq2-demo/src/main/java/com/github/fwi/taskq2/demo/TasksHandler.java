@@ -191,10 +191,8 @@ public class TasksHandler implements ITaskHandler {
 		int tcount = tasksCount.incrementAndGet();
 		b64Length.addAndGet(taskData.b64.length());
 		// Done, this is the last queue.
-		try (DbConnNamedStatement<?> dbc = dgroup.getDbConn()) {
-			tgroup.deleteTask(dbc, taskId);
-			dbc.commitAndClose();
-		}
+		// The task record is deleted together with the records of other finished tasks, no need to wait for it.
+		tgroup.getAcknowledger().acknowledge(taskId);
 		log.debug("[{}] Stats collected {}.", taskId, tcount);
 		if (tcount % 2_500 == 0) {
 			log.info("Stats collected for {} tasks.", tcount);
@@ -0,0 +1,216 @@
+package com.github.fwi.taskq2.db;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.fwi.taskq2.util.DaemonThreadPool.DaemonThreadFactory;
+import com.github.fwi.taskq2.util.VirtualThreads;
+
+import nl.fw.util.jdbc.DbConn;
+import nl.fw.util.jdbc.DbConnNamedStatement;
+
+/**
+ * Write-behind acknowledgement of finished tasks: instead of deleting a task record and committing per task,
+ * task handlers call {@link #acknowledge(long)} and a background thread deletes the collected task records 
+ * in one JDBC batch and one transaction (group commit).
+ * <br>A flush happens every {@link TqDbConf#getAckFlushIntervalMs()} or sooner when {@link TqDbConf#getAckMaxTasks()} 
+ * task IDs are waiting. All task IDs in one flush share the same future that completes when the delete is committed 
+ * (durable), or completes exceptionally when the delete failed. 
+ * Task records that are not deleted remain in the database and are reloaded when they expire (see {@link TqDbConf#getExpireTimeS()}),
+ * i.e. a failed acknowledgement can result in a task being executed again.
+ * <br>Started and stopped by {@link TqDbGroup} when set via {@link TqDbGroup#setAcknowledger(TqDbAcknowledger)},
+ * the remaining task IDs are flushed on stop.
+ * <br>Like the database pollers, this class assumes the use of a connection pool.
+ */
+public class TqDbAcknowledger implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(TqDbAcknowledger.class);
+
+	private final TqDbGroup tgroup;
+	private final DataSource ds;
+
+	private final Object lock = new Object();
+	private long[] pending = new long[64];
+	private int pendingCount;
+	private CompletableFuture<Void> pendingAck = new CompletableFuture<Void>();
+	private long[] flushing = new long[64];
+
+	private volatile boolean stop;
+	private Thread flusher;
+
+	public TqDbAcknowledger(TqDbGroup tgroup, DataSource ds) {
+		super();
+		this.tgroup = tgroup;
+		this.ds = ds;
+	}
+
+	public DbConnNamedStatement<?> createDbc() {
+
+		DbConn dbc = new DbConn();
+		dbc.setDataSource(ds);
+		dbc.setNamedQueries(tgroup.getConf().getNamedQueries());
+		return dbc;
+	}
+
+	/**
+	 * Adds the task ID to the task records to delete with the next flush.
+	 * @return a future that completes when the task record is deleted and the delete is committed.
+	 * @throws IllegalStateException if this acknowledger is not running.
+	 */
+	public CompletableFuture<Void> acknowledge(long taskId) {
+
+		synchronized (lock) {
+			if (stop || flusher == null) {
+				throw new IllegalStateException("Task acknowledger is not running.");
+			}
+			if (pendingCount == pending.length) {
+				pending = Arrays.copyOf(pending, pending.length * 2);
+			}
+			pending[pendingCount++] = taskId;
+			if (pendingCount == tgroup.getConf().getAckMaxTasks()) {
+				lock.notifyAll();
+			}
+			return pendingAck;
+		}
+	}
+
+	/**
+	 * The amount of task IDs waiting to be flushed.
+	 */
+	public int getPendingCount() {
+
+		synchronized (lock) {
+			return pendingCount;
+		}
+	}
+
+	public boolean isRunning() {
+		return (flusher != null && !stop);
+	}
+
+	/**
+	 * Starts the background thread that flushes acknowledged task IDs.
+	 * If {@link TqDbGroup#isUseVirtualThreads()} is true and virtual threads are available, a virtual thread is used.
+	 */
+	public void start() {
+
+		synchronized (lock) {
+			if (flusher != null) {
+				return;
+			}
+			stop = false;
+			ThreadFactory tfactory = null;
+			if (tgroup.isUseVirtualThreads() && VirtualThreads.isAvailable()) {
+				tfactory = VirtualThreads.newThreadFactory(this.getClass().getSimpleName());
+			} else {
+				tfactory = new DaemonThreadFactory(this.getClass().getSimpleName());
+			}
+			flusher = tfactory.newThread(new Runnable() {
+				@Override
+				public void run() {
+					flushLoop();
+				}
+			});
+			flusher.start();
+		}
+		log.info("Task acknowledger started.");
+	}
+
+	@Override
+	public void close() {
+		stop();
+	}
+
+	/**
+	 * Stops accepting task IDs, flushes the remaining task IDs and waits for the background thread to finish. 
+	 */
+	public void stop() {
+
+		Thread t = null;
+		synchronized (lock) {
+			stop = true;
+			t = flusher;
+			lock.notifyAll();
+		}
+		if (t == null) {
+			return;
+		}
+		try {
+			t.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.warn("Interrupted while waiting for task acknowledger to stop.");
+		}
+		synchronized (lock) {
+			flusher = null;
+		}
+		log.info("Task acknowledger stopped.");
+	}
+
+	protected void flushLoop() {
+
+		boolean last = false;
+		while (!last) {
+			int count = 0;
+			CompletableFuture<Void> ack = null;
+			synchronized (lock) {
+				try {
+					long waitUntil = System.currentTimeMillis() + tgroup.getConf().getAckFlushIntervalMs();
+					long waitMs = 0L;
+					while (!stop && pendingCount < tgroup.getConf().getAckMaxTasks() 
+							&& (waitMs = waitUntil - System.currentTimeMillis()) > 0L) {
+						lock.wait(waitMs);
+					}
+				} catch (InterruptedException e) {
+					log.warn("Task acknowledger interrupted, flushing and stopping.");
+					stop = true;
+				}
+				last = stop;
+				if (pendingCount > 0) {
+					// swap buffers so that task handlers can continue while the flush is in progress.
+					long[] ids = pending;
+					pending = flushing;
+					flushing = ids;
+					count = pendingCount;
+					pendingCount = 0;
+					ack = pendingAck;
+					pendingAck = new CompletableFuture<Void>();
+				}
+			}
+			if (count > 0) {
+				flush(flushing, count, ack);
+			}
+		}
+	}
+
+	/**
+	 * Deletes the task records and commits, completes the future.
+	 * <br>Task records that no longer exist (e.g. taken over by another server) are not an error.
+	 */
+	protected void flush(long[] taskIds, int count, CompletableFuture<Void> ack) {
+
+		final DbConnNamedStatement<?> c = createDbc();
+		try {
+			int deleted = tgroup.deleteTasks(c, taskIds, count);
+			c.commitAndClose();
+			if (deleted != count) {
+				log.debug("Acknowledged {} tasks but deleted {} task records.", count, deleted);
+			}
+		} catch (Exception e) {
+			c.rollbackSilent();
+			c.close();
+			log.warn("Could not delete {} acknowledged task records, tasks will be reloaded when expired: {}", count, e.toString());
+			ack.completeExceptionally(e);
+			return;
+		}
+		ack.complete(null);
+	}
+
+}
@@ -89,8 +89,16 @@ public class TqDbConf {
 	private int dbReloadMinFree = 20;
 	private int dbReloadMaxAmount = 0;
 	private int dbReloadLogAmount = 0;
+	private int dbReloadBatchSize = 200;
+	private int dbReloadFetchSize = 50;
 	private boolean noFailOver;
 	private int dbGracePeriodS = 60;
+	private int storeBatchSize = 500;
+	private int idBlockSize = 1000;
+	private long ackFlushIntervalMs = 10L;
+	private boolean claimMode;
+	private long claimIntervalMs = 200L;
+	private int ackMaxTasks = 500;
 
 	/** 
 	 * Period in seconds after which a work task will be reloaded from the database 
@@ -228,6 +236,28 @@ public class TqDbConf {
 		this.dbReloadLogAmount = dbReloadLogAmount;
 	}
 
+	/**
+	 * The maximum amount of expired tasks reloaded with one set of queries (default 200).
+	 * A larger batch means less database round-trips but more task data in memory while reloading.
+	 */
+	public int getDbReloadBatchSize() { return dbReloadBatchSize; }
+
+	/** See {@link #getDbReloadBatchSize()}. */
+	public void setDbReloadBatchSize(int dbReloadBatchSize) {
+		this.dbReloadBatchSize = Math.max(1, dbReloadBatchSize);
+	}
+
+	/**
+	 * The JDBC fetch size used when loading the task data for reloaded tasks (default 50).
+	 * <br>Note that PostgreSQL only uses a cursor (and the fetch size) when auto-commit is off.
+	 */
+	public int getDbReloadFetchSize() { return dbReloadFetchSize; }
+
+	/** See {@link #getDbReloadFetchSize()}. */
+	public void setDbReloadFetchSize(int dbReloadFetchSize) {
+		this.dbReloadFetchSize = Math.max(1, dbReloadFetchSize);
+	}
+
 	/**
 	 * Default false. If true, the fail-over poller is not started 
 	 * and this server will never take-over task-records from another TaskQ server.
@@ -254,4 +284,81 @@ public class TqDbConf {
 		this.dbGracePeriodS = dbGracePeriodS;
 	}
 
+	/**
+	 * The maximum amount of tasks inserted in one JDBC batch by {@link TqDbGroup#storeTasks(nl.fw.util.jdbc.DbConnNamedStatement, String, java.util.List)}.
+	 * More tasks are inserted using several batches in the same transaction.
+	 * <br>Default 500.
+	 */
+	public int getStoreBatchSize() {
+		return storeBatchSize;
+	}
+	/** See {@link #getStoreBatchSize()} */
+	public void setStoreBatchSize(int storeBatchSize) {
+		this.storeBatchSize = Math.max(1, storeBatchSize);
+	}
+
+	/**
+	 * The amount of task IDs reserved at once by a {@link TqDbIdAllocator}.
+	 * A larger block means less database round-trips but a larger gap in task IDs when a server stops.
+	 * <br>Default 1000.
+	 */
+	public int getIdBlockSize() {
+		return idBlockSize;
+	}
+	/** See {@link #getIdBlockSize()} */
+	public void setIdBlockSize(int idBlockSize) {
+		this.idBlockSize = Math.max(1, idBlockSize);
+	}
+
+	/**
+	 * The maximum time a {@link TqDbAcknowledger} waits before deleting the records of acknowledged tasks.
+	 * <br>Default 10 milliseconds.
+	 */
+	public long getAckFlushIntervalMs() {
+		return ackFlushIntervalMs;
+	}
+	/** See {@link #getAckFlushIntervalMs()} */
+	public void setAckFlushIntervalMs(long ackFlushIntervalMs) {
+		this.ackFlushIntervalMs = Math.max(1L, ackFlushIntervalMs);
+	}
+
+	/**
+	 * The amount of acknowledged tasks that triggers a {@link TqDbAcknowledger} to delete the task records 
+	 * before {@link #getAckFlushIntervalMs()} has passed.
+	 * <br>Default 500.
+	 */
+	public int getAckMaxTasks() {
+		return ackMaxTasks;
+	}
+	/** See {@link #getAckMaxTasks()} */
+	public void setAckMaxTasks(int ackMaxTasks) {
+		this.ackMaxTasks = Math.max(1, ackMaxTasks);
+	}
+
+	/**
+	 * Default false. If true, servers in a group share tasks: new tasks are stored as ready tasks
+	 * and the database poller claims ready tasks from all servers in the group 
+	 * instead of reloading only expired tasks for this server (see {@link com.github.fwi.taskq2.db.poll.ClaimReady}).
+	 * <br>All servers in a group must use the same mode.
+	 */
+	public boolean isClaimMode() {
+		return claimMode;
+	}
+	/** See {@link #isClaimMode()} */
+	public void setClaimMode(boolean claimMode) {
+		this.claimMode = claimMode;
+	}
+
+	/** 
+	 * Interval at which the server checks for ready tasks to claim when {@link #isClaimMode()} is true.
+	 * <br>Default 200 milliseconds. 
+	 */
+	public long getClaimIntervalMs() {
+		return claimIntervalMs;
+	}
+	/** See {@link #getClaimIntervalMs()} */
+	public void setClaimIntervalMs(long claimIntervalMs) {
+		this.claimIntervalMs = claimIntervalMs;
+	}
+
 }
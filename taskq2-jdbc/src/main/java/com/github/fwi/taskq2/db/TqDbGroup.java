@@ -1,8 +1,13 @@
 package com.github.fwi.taskq2.db;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import nl.fw.util.jdbc.DbConnNamedStatement;
 import nl.fw.util.jdbc.DbConnUtil;
@@ -13,7 +18,10 @@ import org.slf4j.LoggerFactory;
 import com.github.fwi.taskq2.TqBase;
 import com.github.fwi.taskq2.TqEntry;
 import com.github.fwi.taskq2.TqGroup;
+import com.github.fwi.taskq2.db.jfr.TqDbJfr;
 import com.github.fwi.taskq2.db.poll.TqDbPoll;
+import com.github.fwi.taskq2.jfr.TqJfr;
+import com.github.fwi.taskq2.util.ConcurrentLongIntMap;
 
 public class TqDbGroup extends TqGroup {
 
@@ -22,13 +30,14 @@ public class TqDbGroup extends TqGroup {
 	private TaskDataSerializer serializer = new TaskDataSerializer();
 
 	/**
-	 * Cache-lock is used to clean the cache of task IDs no longer used.
+	 * Reference counts for the task IDs in the queues (a task ID can be queued more than once, e.g. when reloaded). 
 	 */
-	protected final Object cacheLock = new Object();
-	protected ConcurrentHashMap<Long, AtomicInteger> taskIdRefs = new ConcurrentHashMap<>();
+	protected final ConcurrentLongIntMap taskIdRefs = new ConcurrentLongIntMap();
 
 	private final TqDbServer dbServer;
 	private TqDbPoll poller;
+	private TqDbIdAllocator idAllocator;
+	private TqDbAcknowledger acknowledger;
 
 	public TqDbGroup(TqDbServer dbServer) {
 		this.dbServer = dbServer;
@@ -50,10 +59,64 @@ public class TqDbGroup extends TqGroup {
 		this.poller = poller;
 	}
 
+	/**
+	 * The allocator for task IDs, null (default) when task IDs are generated by the database.
+	 */
+	public TqDbIdAllocator getIdAllocator() {
+		return idAllocator;
+	}
+
+	/**
+	 * Set an ID allocator to insert task records with a task ID reserved in advance 
+	 * instead of a task ID generated by the database. 
+	 * This removes the generated keys lookup from {@link #storeTask(DbConnNamedStatement, String, Object, String)}
+	 * and allows {@link #storeTasks(DbConnNamedStatement, String, List)} to send the task and item batches without waiting for task IDs.
+	 * <br>See {@link TqDbIdAllocator} for the conditions: all servers in a group must use an ID allocator.
+	 */
+	public void setIdAllocator(TqDbIdAllocator idAllocator) {
+		this.idAllocator = idAllocator;
+	}
+
+	/**
+	 * The acknowledger for finished tasks, null (default) when task handlers delete task records themselves.
+	 */
+	public TqDbAcknowledger getAcknowledger() {
+		return acknowledger;
+	}
+
+	/**
+	 * Set an acknowledger that deletes the task records of finished tasks in batches (see {@link TqDbAcknowledger}).
+	 * The acknowledger is started with this group and stopped after the tasks in this group have finished.
+	 */
+	public void setAcknowledger(TqDbAcknowledger acknowledger) {
+		this.acknowledger = acknowledger;
+	}
+
+	/**
+	 * Sets the capacity of the queue to {@link TqDbConf#getMaxSizePerQ()} if the queue has no capacity set.
+	 */
+	@Override
+	public void addQueue(TqBase tq) {
+
+		if (tq.getCapacity() < 1 && getConf().getMaxSizePerQ() > 0) {
+			tq.setCapacity(getConf().getMaxSizePerQ());
+		}
+		super.addQueue(tq);
+	}
+
+	/**
+	 * Sets the capacity of this group to {@link TqDbConf#getMaxSize()} if no capacity was set.
+	 */
 	@Override
 	protected void starting() {
 		
+		if (getCapacity() < 1 && getConf().getMaxSize() > 0) {
+			setCapacity(getConf().getMaxSize());
+		}
 		super.starting();
+		if (acknowledger != null) {
+			acknowledger.start();
+		}
 		if (poller != null) {
 			poller.start();
 		}
@@ -66,6 +129,9 @@ public class TqDbGroup extends TqGroup {
 			poller.stop(taskFinishPeriodMs, taskStopPeriodMs);
 		}
 		super.stopping(taskFinishPeriodMs, taskStopPeriodMs);
+		if (acknowledger != null) {
+			acknowledger.stop();
+		}
 	}
 
 	public TaskDataSerializer getSerializer() { return serializer; }
@@ -90,7 +156,7 @@ public class TqDbGroup extends TqGroup {
 	 * @return true if task is in a queue.
 	 */
 	public boolean containsTask(long taskId) {
-		return (taskIdRefs.get(taskId) != null);
+		return taskIdRefs.containsKey(taskId);
 	}
 
 	@Override
@@ -99,64 +165,71 @@ public class TqDbGroup extends TqGroup {
 		if (te.getTaskId() == 0L) {
 			throw new IllegalArgumentException("Task ID may not be 0.");
 		}
-		TqBase tq = getQueue(qname); 
-		if (tq == null) {
-			return false;
-		}
-		if (getConf().getMaxSize() > 0 && getConf().getMaxSize() < getSize()) {
+		if (getQueue(qname) == null) {
 			return false;
 		}
-		if (getConf().getMaxSizePerQ() > 0 && getConf().getMaxSizePerQ() < tq.getSize()) {
-			return false;
-		}
-		AtomicInteger refCount = addCacheTaskId(te.getTaskId());
+		// capacity (max. size) is enforced by super.addTask
+		addCacheTaskId(te.getTaskId());
 		boolean queued = false;
 		try {
 			queued = super.addTask(qname, te); 
 		} finally {
-			if (!queued && refCount.decrementAndGet() < 1) {
-				removeCacheTaskId(te.getTaskId(), refCount);
+			if (!queued) {
+				releaseCacheTaskId(te.getTaskId());
 			}
 		}
 		return queued;
 	}
 
-	protected AtomicInteger addCacheTaskId(long taskId) {
+	/**
+	 * Used by {@link #offer(String, TqEntry, long, java.util.concurrent.TimeUnit)} and {@link #put(String, TqEntry)}.
+	 */
+	@Override
+	protected boolean addTaskWait(String qname, TqEntry te, long timeoutNanos) throws InterruptedException {
 
-		AtomicInteger refCount = null;
-		synchronized(cacheLock) {
-			if ((refCount = taskIdRefs.get(taskId)) == null) {
-				refCount = new AtomicInteger();
-				taskIdRefs.put(taskId, refCount);
+		if (te.getTaskId() == 0L) {
+			throw new IllegalArgumentException("Task ID may not be 0.");
+		}
+		if (getQueue(qname) == null) {
+			return false;
+		}
+		addCacheTaskId(te.getTaskId());
+		boolean queued = false;
+		try {
+			queued = super.addTaskWait(qname, te, timeoutNanos); 
+		} finally {
+			if (!queued) {
+				releaseCacheTaskId(te.getTaskId());
 			}
-			refCount.incrementAndGet();
 		}
-		return refCount;
+		return queued;
 	}
 
-	protected void removeCacheTaskId(long taskId, AtomicInteger refCount) {
+	/**
+	 * Removes a reference for the task ID, the task ID is removed from the cache when there are no more references.
+	 * @return the remaining reference count, -1 if the task ID was not in the cache.
+	 */
+	protected int releaseCacheTaskId(long taskId) {
+		return taskIdRefs.decrement(taskId);
+	}
 
-		synchronized(cacheLock) {
-			if (refCount.get() < 1) {
-				taskIdRefs.remove(taskId);
-			}
-		}
+	/**
+	 * Adds a reference for the task ID.
+	 * @return the reference count for the task ID.
+	 */
+	protected int addCacheTaskId(long taskId) {
+		return taskIdRefs.increment(taskId);
 	}
 
 	@Override
 	protected void taskDone(TqBase tq, TqEntry te) {
 
 		final long taskId = te.getTaskId();
-		AtomicInteger refCount = taskIdRefs.get(taskId);
-		if (refCount == null) {
+		final int refCount = releaseCacheTaskId(taskId);
+		if (refCount < 0) {
 			log.warn("Task {} is not present in task-ID cache.", taskId);
-		} else {
-			if (refCount.decrementAndGet() < 1) {
-				removeCacheTaskId(taskId, refCount);
-				if (log.isTraceEnabled()) {
-					log.trace("Task {} removed from task-ID cache.", taskId);
-				}
-			}
+		} else if (refCount == 0 && log.isTraceEnabled()) {
+			log.trace("Task {} removed from task-ID cache.", taskId);
 		}
 		super.taskDone(tq, te);
 	}
@@ -182,11 +255,19 @@ public class TqDbGroup extends TqGroup {
 	 */
 	public TqDbEntry storeTask(DbConnNamedStatement<?> c, String qname, Object taskData, String qosKey) throws SQLException {
 
+		final long start = (TqJfr.ENABLED ? System.nanoTime() : 0L);
 		TqDbEntry dbData = new TqDbEntry(qname, qosKey);
 		dbData.setServerId(getDbServer().getServerId());
 		dbData.setTaskDataBytes(getSerializer().taskDataToBytesRe(taskData));
-		dbData.setExpireDate(getExpireDate(qname));
-		c.nameStatement(TqQueryNames.INSERT_TASK, true);
+		dbData.setExpireDate(getStoreExpireDate(qname));
+		final TqDbIdAllocator ids = idAllocator;
+		if (ids == null) {
+			c.nameStatement(TqQueryNames.INSERT_TASK, true);
+		} else {
+			dbData.setTaskId(ids.nextId());
+			c.nameStatement(TqQueryNames.INSERT_TASK_ID);
+			c.getNamedStatement().setLong("id", dbData.getTaskId());
+		}
 		c.getNamedStatement().setInt("serverId", dbData.getServerId());
 		c.getNamedStatement().setString("qname", dbData.getQname());
 		c.getNamedStatement().setTimestamp("expireDate", new java.sql.Timestamp(dbData.getExpireDate()));
@@ -195,11 +276,13 @@ public class TqDbGroup extends TqGroup {
 		if (rcount != 1) {
 			throw new SQLException("Expected to insert one task record but inserted " + rcount + " record(s).");
 		}
-		Long taskId = (c.getResultSet().next() ? c.getResultSet().getLong(1) : null);
-		if (taskId == null) {
-			throw new SQLException("Unable to retrieve task row ID after task insert.");
+		if (ids == null) {
+			Long taskId = (c.getResultSet().next() ? c.getResultSet().getLong(1) : null);
+			if (taskId == null) {
+				throw new SQLException("Unable to retrieve task row ID after task insert.");
+			}
+			dbData.setTaskId(taskId);
 		}
-		dbData.setTaskId(taskId);
 		
 		c.nameStatement(TqQueryNames.INSERT_ITEM, true);
 		c.getNamedStatement().setLong("taskId", dbData.getTaskId());
@@ -208,9 +291,111 @@ public class TqDbGroup extends TqGroup {
 		if (rcount != 1) {
 			throw new SQLException("Expected to insert one item record but inserted " + rcount + " record(s).");
 		}
+		if (TqJfr.ENABLED) {
+			TqDbJfr.dbOperation("storeTask", qname, dbData.getTaskId(), start);
+		}
 		return dbData;
 	}
 
+	/**
+	 * Stores tasks with (serializable) items in the database using JDBC batches:
+	 * all task records are inserted in one batch, followed by one batch for all item records 
+	 * (instead of two statements and a generated keys lookup per task as done by {@link #storeTask(DbConnNamedStatement, String, TqEntry)}).
+	 * Large lists are split in batches of {@link TqDbConf#getStoreBatchSize()} tasks.
+	 * <br>Sets the {@link TqEntry#getTaskId()} for each entry to the generated task ID.
+	 * The database driver must return the generated keys for a batch (HSQLDB, PostgreSQL and MySQL do).
+	 * <br>With an {@link #getIdAllocator()} the task IDs are assigned before the inserts 
+	 * and the batches are executed without a generated keys lookup.
+	 * Drivers can send a batch as multi-row inserts: 
+	 * set <tt>reWriteBatchedInserts=true</tt> for PostgreSQL and <tt>rewriteBatchedStatements=true</tt> for MySQL.
+	 * <br>Does not commit or close the connection, on failure the caller must rollback.
+	 * @param c database connection
+	 * @param qname queue name
+	 * @param tqEntries the tasks to store, task data is serialized using {@link #getSerializer()}.
+	 */
+	public void storeTasks(DbConnNamedStatement<?> c, String qname, List<TqEntry> tqEntries) throws SQLException {
+
+		if (tqEntries.isEmpty()) {
+			return;
+		}
+		final long start = (TqJfr.ENABLED ? System.nanoTime() : 0L);
+		final int serverId = getDbServer().getServerId();
+		final Timestamp expireDate = new Timestamp(getStoreExpireDate(qname));
+		final int batchSize = getConf().getStoreBatchSize();
+		final TqDbIdAllocator ids = idAllocator;
+		final long[] taskIds = (ids == null ? null : new long[tqEntries.size()]);
+		// serialize all task data first, a task that cannot be serialized should not leave a partial batch.
+		final byte[][] items = new byte[tqEntries.size()][];
+		for (int i = 0; i < items.length; i++) {
+			items[i] = getSerializer().taskDataToBytesRe(tqEntries.get(i).getTaskData());
+		}
+		if (ids != null) {
+			ids.nextIds(taskIds);
+		}
+		for (int offset = 0; offset < items.length; offset += batchSize) {
+			final int end = Math.min(items.length, offset + batchSize);
+			if (ids == null) {
+				c.nameStatement(TqQueryNames.INSERT_TASK, true);
+			} else {
+				c.nameStatement(TqQueryNames.INSERT_TASK_ID);
+			}
+			PreparedStatement ps = c.getNamedStatement().getStatement();
+			for (int i = offset; i < end; i++) {
+				if (ids != null) {
+					c.getNamedStatement().setLong("id", taskIds[i]);
+				}
+				c.getNamedStatement().setInt("serverId", serverId);
+				c.getNamedStatement().setString("qname", qname);
+				c.getNamedStatement().setTimestamp("expireDate", expireDate);
+				c.getNamedStatement().setString("qosKey", tqEntries.get(i).getQosKey());
+				ps.addBatch();
+			}
+			checkBatchCounts(ps.executeBatch(), end - offset, "task");
+			int i = offset;
+			if (ids == null) {
+				try (ResultSet keys = ps.getGeneratedKeys()) {
+					while (keys.next() && i < end) {
+						tqEntries.get(i++).setTaskId(keys.getLong(1));
+					}
+				}
+				if (i != end) {
+					throw new SQLException("Expected " + (end - offset) + " generated task IDs after batch insert but received " + (i - offset) + ".");
+				}
+			} else {
+				for (; i < end; i++) {
+					tqEntries.get(i).setTaskId(taskIds[i]);
+				}
+			}
+			c.nameStatement(TqQueryNames.INSERT_ITEM);
+			ps = c.getNamedStatement().getStatement();
+			for (i = offset; i < end; i++) {
+				c.getNamedStatement().setLong("taskId", tqEntries.get(i).getTaskId());
+				c.getNamedStatement().setBytes("item", items[i]);
+				ps.addBatch();
+			}
+			checkBatchCounts(ps.executeBatch(), end - offset, "item");
+		}
+		if (TqJfr.ENABLED) {
+			TqDbJfr.dbOperation("storeTasks", qname, 0L, start);
+		}
+	}
+
+	/**
+	 * Each statement in a batch must insert one record, 
+	 * or report {@link Statement#SUCCESS_NO_INFO} (e.g. when the driver rewrites the batch to a multi-row insert).
+	 */
+	protected void checkBatchCounts(int[] counts, int expected, String recordType) throws SQLException {
+
+		if (counts.length != expected) {
+			throw new SQLException("Expected " + expected + " results for batch insert of " + recordType + " records but received " + counts.length + ".");
+		}
+		for (int count : counts) {
+			if (count != 1 && count != Statement.SUCCESS_NO_INFO) {
+				throw new SQLException("Expected to insert one " + recordType + " record per batch statement but inserted " + count + " record(s).");
+			}
+		}
+	}
+
 	/**
 	 * The expire time in milliseconds for new/updated task records:
 	 * <br><tt>now + {@link TqDbConf#getExpireTimeS()} * 1000</tt>
@@ -219,6 +404,14 @@ public class TqDbGroup extends TqGroup {
 		return (System.currentTimeMillis() + getDbServer().getDbConf().getExpireTimeS() * 1000L);
 	}
 
+	/**
+	 * The expire time in milliseconds for new task records: {@link #getExpireDate(String)}
+	 * or, when {@link TqDbConf#isClaimMode()} is true, now so that the task can be claimed by a server right away.
+	 */
+	public long getStoreExpireDate(String qname) {
+		return (getConf().isClaimMode() ? System.currentTimeMillis() : getExpireDate(qname));
+	}
+
 	/**
 	 * Loads a task with item from the database. 
 	 * Does not convert the {@link TqDbEntry#getTaskDataBytes()} to a task data object.
@@ -227,6 +420,7 @@ public class TqDbGroup extends TqGroup {
 	 */
 	public TqDbEntry loadTask(DbConnNamedStatement<?> c, long taskId) throws SQLException {
 
+		final long start = (TqJfr.ENABLED ? System.nanoTime() : 0L);
 		TqDbEntry dbData = new TqDbEntry();
 		dbData.setTaskId(taskId);
 		dbData.setServerId(getDbServer().getServerId());
@@ -240,9 +434,57 @@ public class TqDbGroup extends TqGroup {
 			dbData.setTaskDataBytes(c.getResultSet().getBytes("item"));
 			dbData.setRetryCount(c.getResultSet().getInt("retry_count"));
 		}
+		if (TqJfr.ENABLED) {
+			TqDbJfr.dbOperation("loadTask", dbData.getQname(), taskId, start);
+		}
 		return (dbData.getQname() == null ? null : dbData);
 	}
 	
+	/**
+	 * Loads tasks with items from the database in one query, used by {@link com.github.fwi.taskq2.db.poll.LoadExpired}.
+	 * The task records must have the given expire date (set for all task records in one update),
+	 * records are read using a cursor with a fetch size of {@link TqDbConf#getDbReloadFetchSize()}.
+	 * Does not convert the {@link TqDbEntry#getTaskDataBytes()} to a task data object.
+	 * <br>Does not commit or close the connection.
+	 * @param taskIds the task IDs in ascending order, only the first <tt>count</tt> task IDs are used.
+	 * @return the loaded tasks, tasks that were not found are not included.
+	 */
+	public List<TqDbEntry> loadTasks(DbConnNamedStatement<?> c, String qname, long[] taskIds, int count, long expireDate) throws SQLException {
+
+		final long start = (TqJfr.ENABLED ? System.nanoTime() : 0L);
+		final List<TqDbEntry> dbEntries = new ArrayList<TqDbEntry>(count);
+		final int serverId = getDbServer().getServerId();
+		c.nameStatement(TqQueryNames.LOAD_EXPIRED);
+		c.getNamedStatement().setInt("serverId", serverId);
+		c.getNamedStatement().setString("qname", qname);
+		c.getNamedStatement().setTimestamp("expireDate", new java.sql.Timestamp(expireDate));
+		c.getNamedStatement().setLong("minId", taskIds[0]);
+		c.getNamedStatement().setLong("maxId", taskIds[count - 1]);
+		c.getNamedStatement().getStatement().setFetchSize(getConf().getDbReloadFetchSize());
+		c.executeQuery();
+		final ResultSet rs = c.getResultSet();
+		while (rs.next()) {
+			long taskId = rs.getLong("id");
+			// the ID range can contain tasks with the same expire date that are already in memory.
+			if (Arrays.binarySearch(taskIds, 0, count, taskId) < 0) {
+				continue;
+			}
+			TqDbEntry dbData = new TqDbEntry();
+			dbData.setTaskId(taskId);
+			dbData.setServerId(serverId);
+			dbData.setQname(rs.getString("qname"));
+			dbData.setExpireDate(rs.getTimestamp("expire_date").getTime());
+			dbData.setQosKey(rs.getString("qos_key"));
+			dbData.setTaskDataBytes(rs.getBytes("item"));
+			dbData.setRetryCount(rs.getInt("retry_count"));
+			dbEntries.add(dbData);
+		}
+		if (TqJfr.ENABLED) {
+			TqDbJfr.dbOperation("loadTasks", qname, 0L, start);
+		}
+		return dbEntries;
+	}
+
 	/**
 	 * Converts a {@link TqDbEntry} to a {@link TqEntry} using the {@link #getSerializer()}.
 	 * @return null if dbData is null, else a {@link TqEntry}
@@ -290,6 +532,7 @@ public class TqDbGroup extends TqGroup {
 	 */
 	public void deleteTask(DbConnNamedStatement<?> c, long taskId) throws SQLException {
 
+		final long start = (TqJfr.ENABLED ? System.nanoTime() : 0L);
 		c.nameStatement(TqQueryNames.DELETE_TASK);
 		c.getNamedStatement().setLong("id", taskId);
 		c.getNamedStatement().setInt("serverId", getDbServer().getServerId());
@@ -297,6 +540,40 @@ public class TqDbGroup extends TqGroup {
 		if (c.getResultCount() != 1) {
 			throw new SQLException("Expected to delete 1 task record, but deleted " + c.getResultCount());
 		}
+		if (TqJfr.ENABLED) {
+			TqDbJfr.dbOperation("deleteTask", null, taskId, start);
+		}
+	}
+
+	/**
+	 * Deletes tasks from the database using one JDBC batch.
+	 * Unlike {@link #deleteTask(DbConnNamedStatement, long)}, a task record that does not exist is not an error.
+	 * <br>Does not commit or close the connection.
+	 * @param taskIds array with task IDs, only the first <tt>count</tt> task IDs are used.
+	 * @return the amount of deleted task records (not accurate if the database driver does not report update counts for a batch). 
+	 */
+	public int deleteTasks(DbConnNamedStatement<?> c, long[] taskIds, int count) throws SQLException {
+
+		if (count < 1) {
+			return 0;
+		}
+		final long start = (TqJfr.ENABLED ? System.nanoTime() : 0L);
+		final int serverId = getDbServer().getServerId();
+		c.nameStatement(TqQueryNames.DELETE_TASK);
+		PreparedStatement ps = c.getNamedStatement().getStatement();
+		for (int i = 0; i < count; i++) {
+			c.getNamedStatement().setLong("id", taskIds[i]);
+			c.getNamedStatement().setInt("serverId", serverId);
+			ps.addBatch();
+		}
+		int deleted = 0;
+		for (int rcount : ps.executeBatch()) {
+			deleted += (rcount == Statement.SUCCESS_NO_INFO ? 1 : rcount);
+		}
+		if (TqJfr.ENABLED) {
+			TqDbJfr.dbOperation("deleteTasks", null, 0L, start);
+		}
+		return deleted;
 	}
 
 	/**
@@ -305,6 +582,7 @@ public class TqDbGroup extends TqGroup {
 	 */
 	public void abandonTask(DbConnNamedStatement<?> c, long taskId) throws SQLException {
 
+		final long start = (TqJfr.ENABLED ? System.nanoTime() : 0L);
 		c.nameStatement(TqQueryNames.ABANDON_TASK);
 		c.getNamedStatement().setLong("id", taskId);
 		c.getNamedStatement().setInt("serverId", getDbServer().getServerId());
@@ -312,6 +590,9 @@ public class TqDbGroup extends TqGroup {
 		if (c.getResultCount() != 1) {
 			throw new SQLException("Expected to abandon 1 task record, but updated " + c.getResultCount());
 		}
+		if (TqJfr.ENABLED) {
+			TqDbJfr.dbOperation("abandonTask", null, taskId, start);
+		}
 	}
 
 	/**
@@ -320,6 +601,7 @@ public class TqDbGroup extends TqGroup {
 	 */
 	public void updateTaskQname(DbConnNamedStatement<?> c, String qname, long taskId) throws SQLException {
 
+		final long start = (TqJfr.ENABLED ? System.nanoTime() : 0L);
 		c.nameStatement(TqQueryNames.UPDATE_TASK_QNAME);
 		c.getNamedStatement().setLong("id", taskId);
 		c.getNamedStatement().setInt("serverId", getDbServer().getServerId());
@@ -329,6 +611,9 @@ public class TqDbGroup extends TqGroup {
 		if (c.getResultCount() != 1) {
 			throw new SQLException("Expected to update 1 task record for queue " + qname + ", but updated " + c.getResultCount());
 		}
+		if (TqJfr.ENABLED) {
+			TqDbJfr.dbOperation("updateTaskQname", qname, taskId, start);
+		}
 	}
 
 	/**
@@ -339,6 +624,7 @@ public class TqDbGroup extends TqGroup {
 	 */
 	public TqDbEntry updateTaskRetry(DbConnNamedStatement<?> c, long taskId, int retryDelta) throws SQLException {
 
+		final long start = (TqJfr.ENABLED ? System.nanoTime() : 0L);
 		TqDbEntry dbData = loadTask(c, taskId);
 		dbData.setRetryCount(dbData.getRetryCount() + retryDelta);
 		dbData.setExpireDate(getExpireDate(dbData.getQname()));
@@ -351,6 +637,9 @@ public class TqDbGroup extends TqGroup {
 		if (c.getResultCount() != 1) {
 			throw new SQLException("Expected to update 1 task record for retry, but updated " + c.getResultCount());
 		}
+		if (TqJfr.ENABLED) {
+			TqDbJfr.dbOperation("updateTaskRetry", dbData.getQname(), taskId, start);
+		}
 		return dbData;
 	}
 
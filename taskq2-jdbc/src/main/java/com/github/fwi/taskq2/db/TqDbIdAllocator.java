@@ -0,0 +1,175 @@
+package com.github.fwi.taskq2.db;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nl.fw.util.jdbc.DbConn;
+import nl.fw.util.jdbc.DbConnNamedStatement;
+
+/**
+ * Hands out task IDs from blocks reserved in the database (hi/lo allocation) 
+ * so that task records can be inserted with a known ID, without a generated keys lookup.
+ * <br>The next free task ID is stored in the <tt>taskq_props</tt> table (key {@link #NEXT_ID_KEY}), 
+ * a block of {@link TqDbConf#getIdBlockSize()} IDs is reserved by locking and updating this record 
+ * in a separate transaction that is committed immediately. 
+ * A block of IDs is never handed out twice, IDs not used before a server stops are lost (i.e. task IDs can have gaps).
+ * <br>When the record does not exist, it is created with a value after the highest task ID in the database.
+ * <br>All servers in a group must use an ID allocator once one server uses it: 
+ * IDs generated by the database (identity column) are not coordinated with the reserved blocks.
+ * When switching back to database generated IDs, restart the identity (sequence) of <tt>taskq_tasks.id</tt>
+ * at the value of the {@link #NEXT_ID_KEY} property.
+ * <br>The database polling classes and this class assume the use of a connection pool: 
+ * reserving a block requires a connection next to the connection used to insert tasks.
+ */
+public class TqDbIdAllocator {
+
+	private static final Logger log = LoggerFactory.getLogger(TqDbIdAllocator.class);
+
+	public static final String NEXT_ID_KEY = "taskq.task.next.id";
+
+	private final TqDbConf dbConf;
+	private final DataSource ds;
+
+	private long nextId;
+	private long endId;
+
+	public TqDbIdAllocator(TqDbConf dbConf, DataSource ds) {
+		super();
+		this.dbConf = dbConf;
+		this.ds = ds;
+	}
+
+	public DbConnNamedStatement<?> createDbc() {
+
+		DbConn dbc = new DbConn();
+		dbc.setDataSource(ds);
+		dbc.setNamedQueries(dbConf.getNamedQueries());
+		return dbc;
+	}
+
+	/**
+	 * @return the next unused task ID, reserves a new block of IDs if needed.
+	 */
+	public synchronized long nextId() throws SQLException {
+
+		if (nextId >= endId) {
+			reserve(dbConf.getIdBlockSize());
+		}
+		return nextId++;
+	}
+
+	/**
+	 * Fills the array with unused task IDs. 
+	 * Reserves a new block of IDs when needed, the new block is large enough to fill the remainder of the array.
+	 * <br>IDs are ascending but not necessarily consecutive.
+	 */
+	public synchronized void nextIds(long[] ids) throws SQLException {
+
+		int i = 0;
+		while (i < ids.length) {
+			if (nextId >= endId) {
+				reserve(Math.max(dbConf.getIdBlockSize(), ids.length - i));
+			}
+			while (i < ids.length && nextId < endId) {
+				ids[i++] = nextId++;
+			}
+		}
+	}
+
+	/**
+	 * The amount of reserved IDs that can be handed out without a database round-trip.
+	 */
+	public synchronized long getAvailable() {
+		return endId - nextId;
+	}
+
+	/**
+	 * Reserves a new block of IDs using a new database connection (see {@link #createDbc()}).
+	 * IDs remaining from the current block are lost.
+	 */
+	protected void reserve(int amount) throws SQLException {
+
+		DbConnNamedStatement<?> c = createDbc();
+		long blockStart = 0L;
+		try {
+			blockStart = reserve(c, amount);
+			c.commitAndClose();
+		} catch (Exception e) {
+			c.rollbackAndClose(e);
+		}
+		nextId = blockStart;
+		endId = blockStart + amount;
+		log.debug("Reserved task IDs {} to {}", nextId, endId - 1);
+	}
+
+	/**
+	 * Locks the {@link #NEXT_ID_KEY} property record and moves the value forward by the given amount.
+	 * If the record does not exist, it is inserted. When another server inserted the record first,
+	 * the connection is rolled back and the record is locked and updated instead.
+	 * <br>Does not commit or close the connection.
+	 * @return the first ID of the reserved block.
+	 */
+	protected long reserve(DbConnNamedStatement<?> c, int amount) throws SQLException {
+
+		long blockStart = lockNextId(c);
+		if (blockStart < 0L) {
+			blockStart = getMaxTaskId(c) + 1L;
+			try {
+				c.nameStatement(TqQueryNames.INSERT_PROP);
+				c.getNamedStatement().setString("key", NEXT_ID_KEY);
+				c.getNamedStatement().setString("value", Long.toString(blockStart + amount));
+				c.executeUpdate();
+				return blockStart;
+			} catch (SQLException e) {
+				if (!isDuplicateKey(e)) {
+					throw e;
+				}
+				log.debug("Property record {} inserted by another server, retrying reservation.", NEXT_ID_KEY);
+				// some databases (e.g. PostgreSQL) do not accept statements in a failed transaction.
+				c.rollbackSilent();
+			}
+			blockStart = lockNextId(c);
+			if (blockStart < 0L) {
+				throw new SQLException("Property record " + NEXT_ID_KEY + " not found after a duplicate key error.");
+			}
+		}
+		c.nameStatement(TqQueryNames.UPDATE_PROP);
+		c.getNamedStatement().setString("key", NEXT_ID_KEY);
+		c.getNamedStatement().setString("value", Long.toString(blockStart + amount));
+		if (c.executeUpdate().getResultCount() != 1) {
+			throw new SQLException("Expected to update 1 property record for " + NEXT_ID_KEY + ", but updated " + c.getResultCount());
+		}
+		return blockStart;
+	}
+
+	/**
+	 * Locks the {@link #NEXT_ID_KEY} property record.
+	 * @return the value of the record, -1 when the record does not exist.
+	 */
+	protected long lockNextId(DbConnNamedStatement<?> c) throws SQLException {
+
+		c.nameStatement(TqQueryNames.LOCK_PROP);
+		c.getNamedStatement().setString("key", NEXT_ID_KEY);
+		c.executeQuery();
+		return (c.getResultSet().next() ? Long.parseLong(c.getResultSet().getString("taskq_value").trim()) : -1L);
+	}
+
+	protected boolean isDuplicateKey(SQLException e) {
+		// SQL state class 23 is "integrity constraint violation"
+		return (e instanceof SQLIntegrityConstraintViolationException 
+				|| (e.getSQLState() != null && e.getSQLState().startsWith("23")));
+	}
+
+	protected long getMaxTaskId(DbConnNamedStatement<?> c) throws SQLException {
+
+		c.nameStatement(TqQueryNames.MAX_TASK_ID);
+		c.executeQuery();
+		return (c.getResultSet().next() ? c.getResultSet().getLong("max_id") : 0L);
+	}
+
+}
@@ -7,6 +7,9 @@ public class TqQueryNames {
 	public static final String MERGE_PROP = "TASKQ.MERGE_PROP";
 	public static final String GET_PROP = "TASKQ.GET_PROP";
 	public static final String DELETE_PROP = "TASKQ.DELETE_PROP";
+	public static final String LOCK_PROP = "TASKQ.LOCK_PROP";
+	public static final String INSERT_PROP = "TASKQ.INSERT_PROP";
+	public static final String UPDATE_PROP = "TASKQ.UPDATE_PROP";
 	
 	public static final String FIND_SERVER = "TASKQ.FIND_SERVER";
 	public static final String INSERT_SERVER = "TASKQ.INSERT_SERVER";
@@ -14,6 +17,8 @@ public class TqQueryNames {
 	
 	public static final String TASKS_ACTIVE = "TASKQ.TASKS_ACTIVE";
 	public static final String INSERT_TASK = "TASKQ.INSERT_TASK";
+	public static final String INSERT_TASK_ID = "TASKQ.INSERT_TASK_ID";
+	public static final String MAX_TASK_ID = "TASKQ.MAX_TASK_ID";
 	public static final String INSERT_ITEM = "TASKQ.INSERT_ITEM";
 	public static final String LOAD_TASK = "TASKQ.LOAD_TASK";
 	public static final String DELETE_TASK = "TASKQ.DELETE_TASK";
@@ -24,6 +29,12 @@ public class TqQueryNames {
 	public static final String HAVE_EXPIRED = "TASKQ.HAVE_EXPIRED";
 	public static final String EXPIRED_PER_Q= "TASKQ.EXPIRED_PER_Q";
 	public static final String UPDATE_EXPIRED = "TASKQ.UPDATE_EXPIRED";
+	public static final String LOAD_EXPIRED = "TASKQ.LOAD_EXPIRED";
+	
+	public static final String READY_QUEUES = "TASKQ.READY_QUEUES";
+	public static final String CLAIM_READY = "TASKQ.CLAIM_READY";
+	public static final String CLAIM_TASK = "TASKQ.CLAIM_TASK";
+	public static final String RENEW_PER_Q = "TASKQ.RENEW_PER_Q";
 	
 	public static final String DEAD_SERVERS = "TASKQ.DEAD_SERVERS";
 	public static final String LOCK_SERVER = "TASKQ.LOCK_SERVER";
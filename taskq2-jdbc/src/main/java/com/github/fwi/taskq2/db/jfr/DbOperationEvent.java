@@ -0,0 +1,31 @@
+package com.github.fwi.taskq2.db.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.github.fwi.taskq2.DbOperation")
+@Label("Database Operation")
+@Description("A task queue group stored, loaded or updated a task in the database (excluding the commit).")
+@Category({ "TaskQ2", "Database" })
+@StackTrace(false)
+class DbOperationEvent extends Event {
+
+	@Label("Operation")
+	String operation;
+
+	@Label("Queue")
+	String queue;
+
+	@Label("Task ID")
+	long taskId;
+
+	@Label("Operation Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long operationTime;
+
+}
@@ -0,0 +1,35 @@
+package com.github.fwi.taskq2.db.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.github.fwi.taskq2.DbPoll")
+@Label("Database Poll")
+@Description("A database poller (heart beat, load expired or fail over) checked the database.")
+@Category({ "TaskQ2", "Database" })
+@StackTrace(false)
+class DbPollEvent extends Event {
+
+	@Label("Poll Task")
+	String pollTask;
+
+	@Label("Poll Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long pollTime;
+
+	@Label("Tasks Reloaded")
+	int tasksReloaded;
+
+	@Label("Tasks Moved")
+	@Description("Tasks moved from dead servers to this server.")
+	int tasksMoved;
+
+	@Label("Failed")
+	boolean failed;
+
+}
@@ -0,0 +1,47 @@
+package com.github.fwi.taskq2.db.jfr;
+
+import com.github.fwi.taskq2.jfr.TqJfr;
+
+/**
+ * Emits Java Flight Recorder events for database pollers and database operations of a task queue group.
+ * Like the task events from {@link TqJfr}, callers only call these methods when {@link TqJfr#ENABLED} is true.
+ */
+public class TqDbJfr {
+
+	private TqDbJfr() {}
+
+	/**
+	 * @param pollTask the name of the poller (e.g. <tt>LoadExpired</tt>).
+	 * @param tasksReloaded the amount of expired tasks reloaded from the database.
+	 * @param tasksMoved the amount of tasks moved from dead servers to this server.
+	 */
+	public static void dbPolled(String pollTask, long startNanos, long endNanos, int tasksReloaded, int tasksMoved, boolean failed) {
+
+		DbPollEvent event = new DbPollEvent();
+		if (event.shouldCommit()) {
+			event.pollTask = pollTask;
+			event.pollTime = endNanos - startNanos;
+			event.tasksReloaded = tasksReloaded;
+			event.tasksMoved = tasksMoved;
+			event.failed = failed;
+			event.commit();
+		}
+	}
+
+	/**
+	 * @param operation the name of the operation (e.g. <tt>storeTask</tt>).
+	 * @param startNanos the value of {@link System#nanoTime()} before the operation started.
+	 */
+	public static void dbOperation(String operation, String queue, long taskId, long startNanos) {
+
+		DbOperationEvent event = new DbOperationEvent();
+		if (event.shouldCommit()) {
+			event.operation = operation;
+			event.queue = queue;
+			event.taskId = taskId;
+			event.operationTime = System.nanoTime() - startNanos;
+			event.commit();
+		}
+	}
+
+}
@@ -0,0 +1,129 @@
+package com.github.fwi.taskq2.db.poll;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import com.github.fwi.taskq2.TqBase;
+import com.github.fwi.taskq2.db.TqDbConf;
+import com.github.fwi.taskq2.db.TqDbGroup;
+
+import nl.fw.util.jdbc.DbConnNamedStatement;
+
+/**
+ * Competing-consumer alternative for {@link LoadExpired}, used when {@link TqDbConf#isClaimMode()} is true.
+ * <br>Instead of reloading only the expired tasks of this server, this poller claims ready tasks 
+ * (tasks with an expire date before now) from all servers in the same group: 
+ * the task records are locked, moved to this server and get a new expire date (the lease expiry) in one transaction.
+ * Each poll first renews the lease of claimed tasks that are still queued or executing on this server (see {@link #renewLeases()}),
+ * a task that is not in memory (e.g. the task failed) is not renewed and can be claimed again by any server when the lease expires. 
+ * <br>In claim mode, new tasks are stored as ready tasks (see {@link TqDbGroup#getStoreExpireDate(String)}) 
+ * and should not be added to a queue after storing: this poller enqueues the tasks on the server that claims them.
+ * <br>Use the <tt>taskq-db-queries-skip-locked.sql</tt> queries with PostgreSQL or MySQL 8 
+ * so that servers skip task records claimed by another server instead of waiting for the other server's transaction. 
+ * With the default queries (used with HSQLDB), servers can select the same ready tasks: 
+ * the claim update only succeeds for tasks that are still ready, so each task is claimed by one server.
+ */
+public class ClaimReady extends LoadExpired {
+
+	public ClaimReady(TqDbGroup tgroup, TqDbPollDao dao) {
+		super(tgroup, dao);
+	}
+
+	@Override
+	public long getPollIntervalMs() {
+		return getConf().getClaimIntervalMs();
+	}
+
+	@Override
+	public void pollDb() throws Exception {
+
+		if (tgroup.getDbServer().isDbAvailable() && !isStopping()) {
+			renewLeases();
+		}
+		super.pollDb();
+	}
+
+	/**
+	 * Renews the lease (expire date) of tasks claimed by this server that are still in memory (see {@link TqDbGroup#containsTask(long)})
+	 * and expire within {@link #getRenewMarginMs()}, so that another server does not claim a task that is queued or executing.
+	 * Tasks are renewed in batches of {@link TqDbConf#getDbReloadBatchSize()} tasks, queues without tasks in memory are skipped.
+	 * @return the amount of tasks renewed.
+	 */
+	protected int renewLeases() throws SQLException {
+
+		if (tgroup.getSize() < 1) {
+			return 0;
+		}
+		final int batchSize = getConf().getDbReloadBatchSize();
+		final long[] taskIds = new long[batchSize];
+		int renewed = 0;
+		for (String qname : tgroup.getQueueNames()) {
+			final TqBase q = tgroup.getQueue(qname);
+			if (q == null || q.getSize() + q.getInProgress() < 1) {
+				continue;
+			}
+			final long renewBefore = System.currentTimeMillis() + getRenewMarginMs();
+			// whole seconds, see LoadExpired
+			final long expireDate = (tgroup.getExpireDate(qname) + 999L) / 1000L * 1000L;
+			long afterId = -1L;
+			int found = batchSize;
+			while (found == batchSize && !isStopping()) {
+				final DbConnNamedStatement<?> c = dao.createDbc();
+				try {
+					found = dao.getLeasesToRenew(c, qname, renewBefore, afterId, taskIds, batchSize);
+					if (found > 0) {
+						afterId = taskIds[found - 1];
+					}
+					int held = 0;
+					for (int i = 0; i < found; i++) {
+						if (tgroup.containsTask(taskIds[i])) {
+							taskIds[held++] = taskIds[i];
+						}
+					}
+					if (held > 0) {
+						renewed += dao.updateExpired(c, qname, taskIds, held, expireDate);
+					}
+					c.commitAndClose();
+				} catch (Exception e) {
+					c.rollbackAndClose(e);
+				}
+			}
+		}
+		if (renewed > 0) {
+			log.debug("Renewed lease for {} claimed tasks.", renewed);
+		}
+		return renewed;
+	}
+
+	/**
+	 * Leases that expire within this time are renewed: two poll intervals plus one second 
+	 * (expire dates are stored in whole seconds).
+	 */
+	protected long getRenewMarginMs() {
+		return 2L * getPollIntervalMs() + 1000L;
+	}
+
+	@Override
+	protected List<String> getReloadQueues() throws SQLException {
+		return dao.getReadyQueues();
+	}
+
+	@Override
+	protected int selectTasks(DbConnNamedStatement<?> c, String qname, long[] taskIds, int maxAmount) throws SQLException {
+		return dao.claimReadyTasks(c, qname, taskIds, maxAmount);
+	}
+
+	/**
+	 * Tasks that cannot be claimed were claimed by another server, this is expected in claim mode.
+	 */
+	@Override
+	protected void logNotUpdated(String qname, int found, int claimed) {
+		log.debug("{} of {} ready tasks in queue {} claimed by another server.", found - claimed, found, qname);
+	}
+
+	@Override
+	protected int updateTasks(DbConnNamedStatement<?> c, String qname, long[] taskIds, int count, long expireDate) throws SQLException {
+		return dao.updateClaimed(c, taskIds, count, expireDate);
+	}
+
+}
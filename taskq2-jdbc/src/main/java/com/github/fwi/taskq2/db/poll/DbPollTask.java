@@ -8,6 +8,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.fwi.taskq2.db.TqDbGroup;
+import com.github.fwi.taskq2.db.jfr.TqDbJfr;
+import com.github.fwi.taskq2.jfr.TqJfr;
 
 /**
  * Base class for the poller's.
@@ -24,6 +26,10 @@ public abstract class DbPollTask implements Callable<Void> {
 	protected final TqDbPollDao dao;
 	protected final TqDbGroup tgroup;
 	protected volatile ScheduledFuture<Void> scheduledPoll;
+	/** Amount of tasks reloaded during the current poll, used for a JFR event. */
+	protected int tasksReloaded;
+	/** Amount of tasks moved from dead servers during the current poll, used for a JFR event. */
+	protected int tasksMoved;
 
 	public DbPollTask(TqDbGroup tgroup, TqDbPollDao dao) {
 		super();
@@ -67,16 +73,24 @@ public abstract class DbPollTask implements Callable<Void> {
 			logStopEvent();
 			return null;
 		}
+		final long start = (TqJfr.ENABLED ? System.nanoTime() : 0L);
+		tasksReloaded = 0;
+		tasksMoved = 0;
+		boolean failed = false;
 		try {
 			log.trace("Taskq database poller {} checking.", getName());
 			pollDb();
 		} catch (Exception e) {
+			failed = true;
 			if (isStopping() && e instanceof InterruptedException) {
 				log.debug("Taskq database poller {} interrupted at stop.", getName());
 			} else {
 				log.error("Taskq database poller {} failed.", getName(), e);
 			}
 		}
+		if (TqJfr.ENABLED) {
+			TqDbJfr.dbPolled(getName(), start, System.nanoTime(), tasksReloaded, tasksMoved, failed);
+		}
 		if (isStopping()) {
 			logStopEvent();
 		} else {
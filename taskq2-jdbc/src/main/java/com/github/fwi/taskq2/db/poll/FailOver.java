@@ -52,7 +52,7 @@ public class FailOver extends DbPollTask {
 			log.debug("Found " + serverIds.size() + " dead servers: " + serverIds);
 		}
 		for (int deadServerId : serverIds) {
-			dao.takeOver(c, deadServerId, serverId, log);
+			tasksMoved += dao.takeOver(c, deadServerId, serverId, log);
 		}
 	}
 
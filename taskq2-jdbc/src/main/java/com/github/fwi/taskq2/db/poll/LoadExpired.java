@@ -1,10 +1,16 @@
 package com.github.fwi.taskq2.db.poll;
 
 import java.sql.SQLException;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.github.fwi.taskq2.TqBase;
 import com.github.fwi.taskq2.db.TqDbConf;
+import com.github.fwi.taskq2.db.TqDbEntry;
 import com.github.fwi.taskq2.db.TqDbGroup;
 
 import nl.fw.util.jdbc.DbConnNamedStatement;
@@ -17,8 +23,9 @@ import nl.fw.util.jdbc.DbConnNamedStatement;
  * and {@link TqDbConf#getMaxSizePerQ()} settings in addition to:
  * <br> - {@link TqDbConf#getDbReloadMinFree()} and
  * <br> - {@link TqDbConf#getDbReloadMaxAmount()}.
- * <br>Reloaded tasks are enqueud using {@link TqDbGroup#loadAndEnqueueTask(DbConnNamedStatement, String, long)}
- * after their expired-date is updated.
+ * <br>Expired tasks are reloaded in batches of {@link TqDbConf#getDbReloadBatchSize()} tasks: 
+ * the expired-date is updated for all tasks in a batch, after which the tasks that are not in memory are loaded
+ * with one query (see {@link TqDbGroup#loadTasks(DbConnNamedStatement, String, long[], int, long)}).
  *
  */
 public class LoadExpired extends DbPollTask {
@@ -54,6 +61,23 @@ public class LoadExpired extends DbPollTask {
 		return (haveRoom() && haveRoom(q.getSize(), getConf().getMaxSizePerQ()));
 	}
 
+	protected int getRoom(int size, int maxSize) {
+
+		if (maxSize > 0) {
+			int minFree = (int)(maxSize * (getConf().getDbReloadMinFree() / 100.0d));
+			return Math.max(0, maxSize - minFree - size);
+		} else {
+			return Integer.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * The amount of tasks that can be reloaded for the queue, see {@link #haveRoom(TqBase)}.
+	 */
+	public int getRoom(TqBase q) {
+		return Math.min(getRoom(tgroup.getSize(), getConf().getMaxSize()), getRoom(q.getSize(), getConf().getMaxSizePerQ()));
+	}
+
 	@Override
 	public void pollDb() throws Exception {
 		
@@ -64,7 +88,7 @@ public class LoadExpired extends DbPollTask {
 			log.debug("Skipping check for expired records, maximum size reached.");
 			return;
 		}
-		List<String> expiredQueues = dao.getExpiredQueues();
+		List<String> expiredQueues = getReloadQueues();
 		if (expiredQueues.isEmpty()) {
 			log.trace("No task queues with expired records.");
 		} else {
@@ -73,15 +97,52 @@ public class LoadExpired extends DbPollTask {
 		}
 	}
 	
-	private void reloadExpired(List<String> expiredQueues) throws SQLException {
+	/**
+	 * The names of the queues with tasks to reload.
+	 */
+	protected List<String> getReloadQueues() throws SQLException {
+		return dao.getExpiredQueues();
+	}
+
+	/**
+	 * Finds the IDs of tasks to reload, see {@link TqDbPollDao#getExpiredTasks(DbConnNamedStatement, String, long[], int)}.
+	 */
+	protected int selectTasks(DbConnNamedStatement<?> c, String qname, long[] taskIds, int maxAmount) throws SQLException {
+		return dao.getExpiredTasks(c, qname, taskIds, maxAmount);
+	}
+
+	/**
+	 * Updates the expire date of the tasks to reload, see {@link TqDbPollDao#updateExpired(DbConnNamedStatement, String, long[], int, long)}.
+	 */
+	protected int updateTasks(DbConnNamedStatement<?> c, String qname, long[] taskIds, int count, long expireDate) throws SQLException {
+		return dao.updateExpired(c, qname, taskIds, count, expireDate);
+	}
+
+	/**
+	 * Called when the expire date of some of the found tasks could not be updated.
+	 */
+	protected void logNotUpdated(String qname, int found, int updated) {
+		// Most likely, records got modified/deleted.
+		// This should not happen and indicates the queue is actively working on records that we try to reload here. 
+		log.warn("Unable to update expired date on {} of {} tasks in queue {}.", found - updated, found, qname);
+	}
+
+	private void reloadExpired(List<String> expiredQueues) throws SQLException, InterruptedException {
 		
-		DbConnNamedStatement<?> c = dao.createDbc();
 		for (String qname : expiredQueues) {
-			reloadExpired(c, qname);
+			reloadExpired(qname);
 		}
 	}
 	
-	private void reloadExpired(DbConnNamedStatement<?> c, String qname) throws SQLException {
+	/**
+	 * Reloads expired tasks for one queue in rounds of at most {@link TqDbConf#getDbReloadBatchSize()} tasks.
+	 * Each round claims expired task IDs in one query, extends their expire date in one batch update
+	 * and fetches the task records that are not in memory with one query.
+	 * The fetched tasks are deserialized and enqueued in the background (see {@link #getEnqueueExecutor()}) 
+	 * while the next round queries the database. This method returns when all fetched tasks are enqueued,
+	 * or throws an {@link InterruptedException} when the poller is stopped while waiting.
+	 */
+	private void reloadExpired(String qname) throws SQLException, InterruptedException {
 		
 		final TqBase q = tgroup.getQueue(qname);
 		if (q == null) {
@@ -96,52 +157,120 @@ public class LoadExpired extends DbPollTask {
 			log.debug("No room for reloading tasks in queue {}", qname);
 			return;
 		}
-		int reloaded = 0;
+		final int batchSize = getConf().getDbReloadBatchSize();
+		final long[] taskIds = new long[batchSize];
+		final AtomicInteger enqueuing = new AtomicInteger();
+		final AtomicInteger reloaded = new AtomicInteger();
+		final Executor executor = getEnqueueExecutor();
+		CompletableFuture<Void> enqueued = CompletableFuture.completedFuture(null);
+		int loaded = 0;
 		int updated = 0;
-		// always check "isStopping": in case of trouble, reload expired will be very active,
-		// and at the same time, the whole TaskQ server can be stopped to prevent more touble and fix the problem.
-		reloadLoop: while (haveRoom(q) && !q.isPaused() && !isStopping()) {
-			if (getConf().getDbReloadMaxAmount() > 0 && reloaded >= getConf().getDbReloadMaxAmount()) {
-				break reloadLoop;
-			}
-			if (getConf().getDbReloadLogAmount() > 0 && reloaded + updated > 0 && (reloaded + updated) % getConf().getDbReloadLogAmount() == 0) {
-				log.debug("Reload expired tasks progress for queue {} at {} tasks reloaded and {} tasks updated.", qname, reloaded, updated);
-			}
-			long taskId = dao.getExpiredTask(c, qname);
-			if (taskId < 0L) {
-				break reloadLoop;
+		int logged = 0;
+		try {
+			// always check "isStopping": in case of trouble, reload expired will be very active,
+			// and at the same time, the whole TaskQ server can be stopped to prevent more touble and fix the problem.
+			while (!q.isPaused() && !isStopping()) {
+				// tasks that are loaded but not yet enqueued do not count in the queue size
+				int amount = Math.min(batchSize, getRoom(q) - enqueuing.get());
+				if (getConf().getDbReloadMaxAmount() > 0) {
+					amount = Math.min(amount, getConf().getDbReloadMaxAmount() - loaded);
+				}
+				if (amount < 1) {
+					break;
+				}
+				if (getConf().getDbReloadLogAmount() > 0 && loaded + updated - logged >= getConf().getDbReloadLogAmount()) {
+					logged = loaded + updated;
+					log.debug("Reload expired tasks progress for queue {} at {} tasks loaded and {} tasks updated.", qname, loaded, updated);
+				}
+				// whole seconds: the expire date is used to find the claimed task records and MySQL stores timestamps in seconds. 
+				final long expireDate = (tgroup.getExpireDate(qname) + 999L) / 1000L * 1000L;
+				final DbConnNamedStatement<?> c = dao.createDbc();
+				int found = 0;
+				int extended = 0;
+				List<TqDbEntry> dbEntries = null;
+				try {
+					found = selectTasks(c, qname, taskIds, amount);
+					extended = (found == 0 ? 0 : updateTasks(c, qname, taskIds, found, expireDate));
+					c.commit();
+					int toLoad = 0;
+					for (int i = 0; i < extended; i++) {
+						if (tgroup.containsTask(taskIds[i])) {
+							updated++;
+							log.trace("[{}] Updated expired date for task in queue {}.", taskIds[i], qname);
+						} else {
+							taskIds[toLoad++] = taskIds[i];
+						}
+					}
+					dbEntries = (toLoad == 0 ? Collections.<TqDbEntry>emptyList() : tgroup.loadTasks(c, qname, taskIds, toLoad, expireDate));
+					c.commitAndClose();
+				} catch (Exception e) {
+					c.rollbackAndClose(e);
+				}
+				if (!dbEntries.isEmpty()) {
+					loaded += dbEntries.size();
+					enqueuing.addAndGet(dbEntries.size());
+					final List<TqDbEntry> toEnqueue = dbEntries;
+					enqueued = enqueued.thenRunAsync(() -> enqueue(q, toEnqueue, enqueuing, reloaded), executor);
+				}
+				if (extended < found) {
+					logNotUpdated(qname, found, extended);
+					break;
+				}
+				if (found < amount) {
+					break;
+				}
 			}
+		} finally {
 			try {
-				dao.updateExpired(c, qname, taskId);
-			} catch (SQLException e) {
-				// Most likely, record got modified/deleted.
-				// This should not happen and indicates the queue is actively working on records that we try to reload here. 
-				log.warn("[{}] Unable to update expired date on task in queue {}: {}", taskId, qname, e.toString());
-				break reloadLoop;
+				enqueued.get();
+			} catch (ExecutionException e) {
+				log.error("Failed to enqueue reloaded tasks for queue [" + qname + "]", e.getCause());
 			}
-			if (tgroup.containsTask(taskId)) {
-				updated++;
-				log.trace("[{}] Updated expired date for task in queue {}.", taskId, qname);
-				continue reloadLoop;
-			} else {
+		}
+		tasksReloaded += reloaded.get();
+		if (loaded + updated == 0) {
+			log.debug("No tasks reloaded or updated in queue {}.", qname);
+		} else {
+			log.debug("Reloaded {} task(s) and only updated expired date for {} task(s) in queue {}.", reloaded.get(), updated, qname);
+		}
+	}
+
+	/**
+	 * Deserializes and enqueues reloaded tasks. 
+	 * A task that cannot be enqueued remains in the database and is reloaded when it expires again.
+	 */
+	protected void enqueue(TqBase q, List<TqDbEntry> dbEntries, AtomicInteger enqueuing, AtomicInteger reloaded) {
+
+		int notAdded = 0;
+		try {
+			for (TqDbEntry dbEntry : dbEntries) {
 				try {
-					if (!tgroup.loadAndEnqueueTask(c, qname, taskId)) {
-						log.warn("[{}] Unable to reload expired task in queue {} .", taskId, qname);
-						break reloadLoop;
+					if (tgroup.addTask(q.getName(), tgroup.toTqEntry(dbEntry))) {
+						reloaded.incrementAndGet();
+						log.trace("[{}] Reloaded task in queue {}.", dbEntry.getTaskId(), q.getName());
+					} else {
+						notAdded++;
 					}
-					reloaded++;
-					log.trace("[{}] Reloaded task in queue {}.", taskId, qname);
 				} catch (Exception e) {
-					log.error("[" + taskId + "] Failed to load task from queue [" + qname + "]", e);
-					break reloadLoop;
+					log.error("[" + dbEntry.getTaskId() + "] Failed to load task from queue [" + q.getName() + "]", e);
 				}
 			}
+		} finally {
+			enqueuing.addAndGet(-dbEntries.size());
 		}
-		if (reloaded + updated == 0) {
-			log.debug("No tasks reloaded or updated in queue {}.", qname);
-		} else {
-			log.debug("Reloaded {} task(s) and only updated expired date for {} task(s) in queue {}.", reloaded, updated, qname);
+		if (notAdded > 0) {
+			log.warn("Unable to enqueue {} reloaded expired tasks in queue {}.", notAdded, q.getName());
 		}
 	}
+
+	/**
+	 * The executor for enqueueing reloaded tasks: the enqueue executor of the database poller (see {@link TqDbPoll#getEnqueueExecutor()}), 
+	 * or the current thread when the database poller has no enqueue executor (e.g. in unit tests).
+	 */
+	protected Executor getEnqueueExecutor() {
+
+		Executor executor = (tgroup.getPoller() == null ? null : tgroup.getPoller().getEnqueueExecutor());
+		return (executor == null ? Runnable::run : executor);
+	}
 	
 }
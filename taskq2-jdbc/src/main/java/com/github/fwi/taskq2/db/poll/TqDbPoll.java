@@ -1,9 +1,12 @@
 package com.github.fwi.taskq2.db.poll;
 
 import java.io.Closeable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import javax.sql.DataSource;
@@ -13,9 +16,10 @@ import org.slf4j.LoggerFactory;
 
 import com.github.fwi.taskq2.db.TqDbGroup;
 import com.github.fwi.taskq2.util.ExecutorTerminator;
+import com.github.fwi.taskq2.util.VirtualThreads;
 import com.github.fwi.taskq2.util.DaemonThreadPool.DaemonThreadFactory;
 
-public class TqDbPoll implements Closeable {
+public class TqDbPoll implements Closeable, TqDbPollMXBean {
 
 	private static final Logger log = LoggerFactory.getLogger(TqDbPoll.class);
 	public static final int POLLING_TASKS_AMOUNT = 3;
@@ -29,6 +33,7 @@ public class TqDbPoll implements Closeable {
 
 	private ScheduledExecutorService scheduler;
 	private boolean shutdownExecutorOnClose;
+	private ExecutorService enqueueExecutor;
 
 	public TqDbPoll(TqDbGroup tgroup, DataSource ds) {
 		this.tgroup = tgroup;
@@ -41,21 +46,46 @@ public class TqDbPoll implements Closeable {
 	public ScheduledExecutorService getScheduledExecutorService() { return scheduler; }
 	public void setScheduledExecutorService(ScheduledExecutorService scheduler) { this.scheduler = scheduler; }
 
+	/**
+	 * The executor used by {@link LoadExpired} to enqueue reloaded tasks while the next batch is loaded from the database.
+	 * This executor is separate from the scheduled executor so that enqueueing cannot wait for (or delay) a polling task.
+	 */
+	public ExecutorService getEnqueueExecutor() { return enqueueExecutor; }
+
 	public boolean isShutdownExecutorOnClose() { return shutdownExecutorOnClose; }
 	public void setShutdownExecutorOnClose(boolean shutdownExecutorOnClose) { this.shutdownExecutorOnClose = shutdownExecutorOnClose; }
 
+	@Override
 	public boolean isStopping() { return stop; }
 
+	@Override
+	public int getServerId() { return tgroup.getDbServer().getServerId(); }
+	@Override
+	public String getServerName() { return tgroup.getDbServer().getServerName(); }
+	@Override
+	public boolean isDbAvailable() { return tgroup.getDbServer().isDbAvailable(); }
+	@Override
+	public long getDbLastAvailable() { return tgroup.getDbServer().getDbLastAvailable(); }
+	@Override
+	public long getDbLastUnavailable() { return tgroup.getDbServer().getDbLastUnavailable(); }
+
 	public void start() {
 		
 		if (getScheduledExecutorService() == null) {
 			setScheduledExecutorService(createScheduledExecutorService(POLLING_TASKS_AMOUNT, POLLING_TASKS_AMOUNT + 2));
 			setShutdownExecutorOnClose(true);
 		}
+		if (enqueueExecutor == null) {
+			enqueueExecutor = Executors.newSingleThreadExecutor(createThreadFactory("TqDbPollEnqueue"));
+		}
 		stop = false;
 		// start pollers
 		getScheduledExecutorService().submit(heartBeatPoll = new HeartBeat(tgroup, dao));
-		getScheduledExecutorService().submit(expiredPoll = new LoadExpired(tgroup, dao));
+		if (getGroup().getConf().isClaimMode()) {
+			getScheduledExecutorService().submit(expiredPoll = new ClaimReady(tgroup, dao));
+		} else {
+			getScheduledExecutorService().submit(expiredPoll = new LoadExpired(tgroup, dao));
+		}
 		if (!getGroup().getConf().isNoFailOver()) {
 			getScheduledExecutorService().submit(failOverPoll = new FailOver(tgroup, dao));
 		}
@@ -78,6 +108,11 @@ public class TqDbPoll implements Closeable {
 		cancelScheduled(failOverPoll);
 		cancelScheduled(expiredPoll);
 		cancelScheduled(heartBeatPoll);
+		if (enqueueExecutor != null) {
+			// reload expired waits for enqueued tasks but is interrupted by the cancel above
+			enqueueExecutor.shutdownNow();
+			enqueueExecutor = null;
+		}
 		if (isShutdownExecutorOnClose() && getScheduledExecutorService() != null) {
 			boolean closed = false;
 			if (taskFinishPeriodMs < 0L || taskStopPeriodMs < 0L) {
@@ -103,15 +138,28 @@ public class TqDbPoll implements Closeable {
 		}
 	}
 
+	/**
+	 * Creates the executor for the polling tasks.
+	 * If {@link TqDbGroup#isUseVirtualThreads()} is true and virtual threads are available,
+	 * the polling tasks run in virtual threads.
+	 */
 	public ScheduledExecutorService createScheduledExecutorService(int coreThreads, int maxPoolSize) {
 
-		ScheduledThreadPoolExecutor e = new ScheduledThreadPoolExecutor(coreThreads < 1 ? 1 : coreThreads,
-				new DaemonThreadFactory(this.getClass().getSimpleName()));
+		ThreadFactory tfactory = createThreadFactory(this.getClass().getSimpleName());
+		ScheduledThreadPoolExecutor e = new ScheduledThreadPoolExecutor(coreThreads < 1 ? 1 : coreThreads, tfactory);
 		e.setKeepAliveTime(60L, TimeUnit.SECONDS);
 		e.allowCoreThreadTimeOut(true);
 		e.setRemoveOnCancelPolicy(true);
 		e.setMaximumPoolSize(maxPoolSize < coreThreads ? coreThreads : maxPoolSize);
 		return e;
 	}
+
+	protected ThreadFactory createThreadFactory(String namePrefix) {
+
+		if (tgroup.isUseVirtualThreads() && VirtualThreads.isAvailable()) {
+			return VirtualThreads.newThreadFactory(namePrefix);
+		}
+		return new DaemonThreadFactory(namePrefix);
+	}
 	
 }
@@ -1,6 +1,8 @@
 package com.github.fwi.taskq2.db.poll;
 
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -99,6 +101,155 @@ public class TqDbPollDao {
 		return taskId;
 	}
 
+	/**
+	 * Finds the IDs of expired tasks in one query, ordered by task ID.
+	 * <br>Does not commit or close the connection.
+	 * @param taskIds array to store the task IDs in, must have room for maxAmount task IDs.
+	 * @return the amount of task IDs found.
+	 */
+	public int getExpiredTasks(DbConnNamedStatement<?> c, String qname, long[] taskIds, int maxAmount) throws SQLException {
+
+		c.nameStatement(TqQueryNames.EXPIRED_PER_Q);
+		c.getNamedStatement().setInt("serverId", tgroup.getDbServer().getServerId());
+		c.getNamedStatement().setString("qname", qname);
+		c.getNamedStatement().setInt("maxAmount", maxAmount);
+		c.getNamedStatement().getStatement().setQueryTimeout(60);
+		c.executeQuery();
+		int found = 0;
+		while (found < maxAmount && c.getResultSet().next()) {
+			taskIds[found++] = c.getResultSet().getLong("id");
+		}
+		return found;
+	}
+
+	/**
+	 * Updates the expire date for the tasks using one JDBC batch.
+	 * Task IDs for tasks that could not be updated (e.g. deleted in the mean time) are removed from the array. 
+	 * <br>Does not commit or close the connection.
+	 * @param taskIds the task IDs to update, only the first <tt>count</tt> task IDs are used.
+	 * @return the amount of task IDs remaining in the array (i.e. the amount of tasks updated).
+	 */
+	public int updateExpired(DbConnNamedStatement<?> c, String qname, long[] taskIds, int count, long expireDate) throws SQLException {
+
+		final java.sql.Timestamp expireTs = new java.sql.Timestamp(expireDate);
+		final int serverId = tgroup.getDbServer().getServerId();
+		c.nameStatement(TqQueryNames.UPDATE_EXPIRED);
+		PreparedStatement ps = c.getNamedStatement().getStatement();
+		for (int i = 0; i < count; i++) {
+			c.getNamedStatement().setTimestamp("expireDate", expireTs);
+			c.getNamedStatement().setLong("id", taskIds[i]);
+			c.getNamedStatement().setInt("serverId", serverId);
+			ps.addBatch();
+		}
+		ps.setQueryTimeout(15);
+		int[] counts = ps.executeBatch();
+		int updated = 0;
+		for (int i = 0; i < count; i++) {
+			if (i < counts.length && (counts[i] == 1 || counts[i] == Statement.SUCCESS_NO_INFO)) {
+				taskIds[updated++] = taskIds[i];
+			}
+		}
+		return updated;
+	}
+
+	/**
+	 * The names of the queues with tasks that can be claimed by any server in the group (see {@link ClaimReady}).
+	 */
+	public List<String> getReadyQueues() throws SQLException {
+
+		DbConnNamedStatement<?> c = createDbc();
+		List<String> readyQueues = new ArrayList<String>();
+		try {
+			c.nameStatement(TqQueryNames.READY_QUEUES);
+			c.getNamedStatement().setString("group", tgroup.getConf().getServerGroup());
+			c.getNamedStatement().setQueryTimeout(60);
+			c.executeQuery();
+			while (c.getResultSet().next()) {
+				readyQueues.add(c.getResultSet().getString("qname"));
+			}
+		} finally {
+			c.close();
+		}
+		return readyQueues;
+	}
+
+	/**
+	 * Selects and locks the IDs of ready tasks from all servers in the group, ordered by task ID.
+	 * With the <tt>taskq-db-queries-skip-locked.sql</tt> queries, task records locked by another server are skipped.
+	 * <br>Does not commit or close the connection, the locks are released on commit.
+	 * @param taskIds array to store the task IDs in, must have room for maxAmount task IDs.
+	 * @return the amount of task IDs found.
+	 */
+	public int claimReadyTasks(DbConnNamedStatement<?> c, String qname, long[] taskIds, int maxAmount) throws SQLException {
+
+		c.nameStatement(TqQueryNames.CLAIM_READY);
+		c.getNamedStatement().setString("group", tgroup.getConf().getServerGroup());
+		c.getNamedStatement().setString("qname", qname);
+		c.getNamedStatement().setInt("maxAmount", maxAmount);
+		c.getNamedStatement().getStatement().setQueryTimeout(60);
+		c.executeQuery();
+		int found = 0;
+		while (found < maxAmount && c.getResultSet().next()) {
+			taskIds[found++] = c.getResultSet().getLong("id");
+		}
+		return found;
+	}
+
+	/**
+	 * Moves the claimed tasks to this server and sets the lease expiry (expire date) using one JDBC batch.
+	 * Task IDs for tasks that could not be claimed (e.g. claimed by another server) are removed from the array.
+	 * <br>Does not commit or close the connection.
+	 * @param taskIds the task IDs to claim, only the first <tt>count</tt> task IDs are used.
+	 * @return the amount of task IDs remaining in the array (i.e. the amount of tasks claimed).
+	 */
+	public int updateClaimed(DbConnNamedStatement<?> c, long[] taskIds, int count, long expireDate) throws SQLException {
+
+		final java.sql.Timestamp expireTs = new java.sql.Timestamp(expireDate);
+		final int serverId = tgroup.getDbServer().getServerId();
+		c.nameStatement(TqQueryNames.CLAIM_TASK);
+		PreparedStatement ps = c.getNamedStatement().getStatement();
+		for (int i = 0; i < count; i++) {
+			c.getNamedStatement().setInt("serverId", serverId);
+			c.getNamedStatement().setTimestamp("expireDate", expireTs);
+			c.getNamedStatement().setLong("id", taskIds[i]);
+			ps.addBatch();
+		}
+		ps.setQueryTimeout(15);
+		int[] counts = ps.executeBatch();
+		int claimed = 0;
+		for (int i = 0; i < count; i++) {
+			if (i < counts.length && (counts[i] == 1 || counts[i] == Statement.SUCCESS_NO_INFO)) {
+				taskIds[claimed++] = taskIds[i];
+			}
+		}
+		return claimed;
+	}
+
+	/**
+	 * Finds the IDs of tasks for this server with an expire date (lease expiry) before the given time, ordered by task ID
+	 * (see {@link ClaimReady#renewLeases()}).
+	 * <br>Does not commit or close the connection.
+	 * @param afterId only task IDs greater than this task ID are found.
+	 * @param taskIds array to store the task IDs in, must have room for maxAmount task IDs.
+	 * @return the amount of task IDs found.
+	 */
+	public int getLeasesToRenew(DbConnNamedStatement<?> c, String qname, long renewBefore, long afterId, long[] taskIds, int maxAmount) throws SQLException {
+
+		c.nameStatement(TqQueryNames.RENEW_PER_Q);
+		c.getNamedStatement().setInt("serverId", tgroup.getDbServer().getServerId());
+		c.getNamedStatement().setString("qname", qname);
+		c.getNamedStatement().setTimestamp("renewBefore", new java.sql.Timestamp(renewBefore));
+		c.getNamedStatement().setLong("afterId", afterId);
+		c.getNamedStatement().setInt("maxAmount", maxAmount);
+		c.getNamedStatement().getStatement().setQueryTimeout(60);
+		c.executeQuery();
+		int found = 0;
+		while (found < maxAmount && c.getResultSet().next()) {
+			taskIds[found++] = c.getResultSet().getLong("id");
+		}
+		return found;
+	}
+
 	public void updateExpired(DbConnNamedStatement<?> c, String qname, long taskId) throws SQLException {
 		
 		try {
@@ -141,7 +292,11 @@ public class TqDbPollDao {
 		return serverIds;
 	}
 
-	public void takeOver(DbConnNamedStatement<?> c, int deadServerId, int serverId, Logger log) {
+	/**
+	 * Moves the task records from a dead server to this server. Commits (or rolls back) and closes the connection.
+	 * @return the amount of task records moved, 0 if the fail over failed.
+	 */
+	public int takeOver(DbConnNamedStatement<?> c, int deadServerId, int serverId, Logger log) {
 		
 		log.info("Starting fail-over of dead server {}", deadServerId);
 		try {
@@ -155,7 +310,7 @@ public class TqDbPollDao {
 			c.rollbackAndClose();
 			// Not an error: another server might have gotten lock on server-record.
 			log.warn("Failed to to get a lock on dead server record " + deadServerId + ": " + e);
-			return;
+			return 0;
 		}
 		log.debug("Locked taskq server {} for fail-over.", deadServerId);
 		int movedTasks = 0;
@@ -168,7 +323,7 @@ public class TqDbPollDao {
 		} catch (Exception e) {
 			c.rollbackAndClose();
 			log.error("Could not update task records from dead server " + deadServerId, e);
-			return;
+			return 0;
 		}
 		try {
 			c.nameStatement(TqQueryNames.ABANDON_DEAD_SERVER);
@@ -182,7 +337,9 @@ public class TqDbPollDao {
 		} catch (Exception e) {
 			c.rollbackAndClose();
 			log.error("Could not update dead server record " + deadServerId + ", all updates for task records have been reverted.", e);
+			movedTasks = 0;
 		}
+		return movedTasks;
 	}
 
 }
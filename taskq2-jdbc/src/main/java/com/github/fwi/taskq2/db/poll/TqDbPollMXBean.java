@@ -0,0 +1,23 @@
+package com.github.fwi.taskq2.db.poll;
+
+/**
+ * Management interface for the database poller, register via 
+ * <tt>TqJmx.register(poller, TqJmx.objectName("TqDbPoll", name))</tt> (see {@link com.github.fwi.taskq2.jmx.TqJmx}).
+ */
+public interface TqDbPollMXBean {
+
+	boolean isStopping();
+
+	int getServerId();
+
+	String getServerName();
+
+	boolean isDbAvailable();
+
+	/** Time (milliseconds since epoch) the database was last found available. */
+	long getDbLastAvailable();
+
+	/** Time (milliseconds since epoch) the database was last found unavailable. */
+	long getDbLastUnavailable();
+
+}
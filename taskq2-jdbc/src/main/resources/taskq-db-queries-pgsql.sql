@@ -3,3 +3,7 @@
 --[TASKQ.MERGE_PROP]
 insert into taskq_props (taskq_key, taskq_value) values (@key, @value)
 on conflict (taskq_key) do update set taskq_value=excluded.taskq_value
+
+--[TASKQ.INSERT_TASK_ID]
+insert into taskq_tasks (id, server_id, qname, expire_date, qos_key)
+values (@id, @serverId, @qname, @expireDate, @qosKey)
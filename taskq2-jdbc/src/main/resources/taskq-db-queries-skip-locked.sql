@@ -0,0 +1,8 @@
+-- "Overload" queries from taskq-db-queries.sql for claiming tasks with "skip locked" (see ClaimReady).
+-- Supported by PostgreSQL (9.5 and later) and MySQL (8.0 and later), load after the database specific queries, e.g.
+-- loadNamedQueries("taskq-db-queries.sql", "taskq-db-queries-pgsql.sql", "taskq-db-queries-skip-locked.sql")
+
+--[TASKQ.CLAIM_READY]
+select id from taskq_tasks where qname=@qname and abandoned=false and expire_date <= now()
+and server_id in (select id from taskq_servers where taskq_group=@group)
+order by id limit @maxAmount for update skip locked
@@ -14,6 +14,12 @@ when matched then update set taskq_props.taskq_value=vals.v
 when not matched then insert (taskq_key, taskq_value) values (vals.k, vals.v)
 --[TASKQ.DELETE_PROP]
 delete from taskq_props where taskq_key=@key
+--[TASKQ.LOCK_PROP]
+select taskq_value from taskq_props where taskq_key=@key for update
+--[TASKQ.INSERT_PROP]
+insert into taskq_props (taskq_key, taskq_value) values (@key, @value)
+--[TASKQ.UPDATE_PROP]
+update taskq_props set taskq_value=@value where taskq_key=@key
 
 --[TASKQ.FIND_SERVER]
 select id from taskq_servers where name=@name and taskq_group=@group
@@ -32,6 +38,12 @@ insert into taskq_items (task_id, item) values (@taskId, @item)
 --[TASKQ.INSERT_TASK]
 insert into taskq_tasks (server_id, qname, expire_date, qos_key)
 values (@serverId, @qname, @expireDate, @qosKey)
+--[TASKQ.INSERT_TASK_ID]
+-- Task ID from TqDbIdAllocator, the identity column is "generated always" in HSQLDB.
+insert into taskq_tasks (id, server_id, qname, expire_date, qos_key)
+overriding system value values (@id, @serverId, @qname, @expireDate, @qosKey)
+--[TASKQ.MAX_TASK_ID]
+select coalesce(max(id), 0) as max_id from taskq_tasks
 --[TASKQ.LOAD_TASK]
 select t.id, t.qname, t.expire_date, t.qos_key, t.retry_count, i.item
 from taskq_tasks t, taskq_items i
@@ -51,6 +63,29 @@ select distinct qname from taskq_tasks where server_id=@serverId and abandoned=f
 select id from taskq_tasks where server_id=@serverId and abandoned=false and qname=@qname and expire_date <= now() order by id limit @maxAmount
 --[TASKQ.UPDATE_EXPIRED]
 update taskq_tasks set expire_date=@expireDate where id=@id and server_id=@serverId and abandoned=false
+--[TASKQ.LOAD_EXPIRED]
+-- Task records updated by LoadExpired in one batch all have the same expire date.
+select t.id, t.qname, t.expire_date, t.qos_key, t.retry_count, i.item
+from taskq_tasks t, taskq_items i
+where t.server_id=@serverId and t.qname=@qname and abandoned=false and t.expire_date=@expireDate
+and t.id >= @minId and t.id <= @maxId and i.task_id=t.id order by t.id
+
+--[TASKQ.READY_QUEUES]
+select distinct t.qname from taskq_tasks t, taskq_servers s 
+where s.taskq_group=@group and t.server_id=s.id and t.abandoned=false and t.expire_date <= now()
+--[TASKQ.CLAIM_READY]
+-- Fallback for databases without "skip locked" (e.g. HSQLDB): servers can select the same tasks,
+-- CLAIM_TASK only updates tasks that are still ready so that each task is claimed by one server.
+-- See taskq-db-queries-skip-locked.sql for PostgreSQL and MySQL 8.
+select id from taskq_tasks where qname=@qname and abandoned=false and expire_date <= now()
+and server_id in (select id from taskq_servers where taskq_group=@group)
+order by id limit @maxAmount for update
+--[TASKQ.CLAIM_TASK]
+update taskq_tasks set server_id=@serverId, expire_date=@expireDate where id=@id and abandoned=false and expire_date <= now()
+--[TASKQ.RENEW_PER_Q]
+-- Claimed tasks of this server with a lease that expires soon, the lease is renewed for tasks still in memory.
+select id from taskq_tasks where server_id=@serverId and abandoned=false and qname=@qname and expire_date <= @renewBefore 
+and id > @afterId order by id limit @maxAmount
 
 --[TASKQ.DEAD_SERVERS]
 select id, last_active from taskq_servers where abandoned=false and taskq_group=@group and last_active < @lastActive 
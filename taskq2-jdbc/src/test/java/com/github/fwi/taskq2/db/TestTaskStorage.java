@@ -1,6 +1,16 @@
 package com.github.fwi.taskq2.db;
 
 import static org.junit.Assert.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import nl.fw.util.jdbc.DbConnNamedStatement;
 import nl.fw.util.jdbc.DbConnUtil;
 import nl.fw.util.jdbc.hikari.DbConnHik;
 
@@ -10,6 +20,8 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.fwi.taskq2.TqEntry;
+
 public class TestTaskStorage {
 
 	private static final Logger log = LoggerFactory.getLogger(TestTaskStorage.class);
@@ -86,4 +98,194 @@ public class TestTaskStorage {
 		assertEquals("tq2", tqname);
 	}
 
+	@Test
+	public void storeTasksInBatches() {
+
+		tgroup.getConf().setStoreBatchSize(4);
+		List<TqEntry> entries = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			entries.add(new TqEntry("task " + i, (i % 2 == 0 ? "key" : null)));
+		}
+		try (DbConnHik c = tdb.getDbConn()) {
+			tgroup.storeTasks(c, "tq", entries);
+			c.commit();
+			Set<Long> taskIds = new HashSet<>();
+			for (int i = 0; i < entries.size(); i++) {
+				TqEntry te = entries.get(i);
+				assertTrue("Task ID set", te.getTaskId() > 0L);
+				taskIds.add(te.getTaskId());
+				TqDbEntry dbEntry = tgroup.loadTask(c, te.getTaskId());
+				assertEquals("tq", dbEntry.getQname());
+				assertEquals(te.getQosKey(), dbEntry.getQosKey());
+				assertEquals("task " + i, tgroup.getSerializer().bytesToTaskDataRe(dbEntry.getTaskDataBytes()));
+			}
+			assertEquals("Unique task IDs", entries.size(), taskIds.size());
+			c.commit();
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail();
+		} finally {
+			tgroup.getConf().setStoreBatchSize(500);
+		}
+	}
+
+	@Test
+	public void idAllocatorsOnEmptyProps() {
+
+		final TqDbIdAllocator first = new TqDbIdAllocator(tgroup.getConf(), tdb.getDataSource());
+		final long[] firstId = new long[1];
+		// the second allocator does not find the property record and tries to insert it after the first allocator inserted it.
+		TqDbIdAllocator second = new TqDbIdAllocator(tgroup.getConf(), tdb.getDataSource()) {
+			@Override
+			protected long lockNextId(DbConnNamedStatement<?> c) throws SQLException {
+				if (firstId[0] == 0L) {
+					firstId[0] = first.nextId();
+					return -1L;
+				}
+				return super.lockNextId(c);
+			}
+		};
+		try (DbConnHik c = tdb.getDbConn()) {
+			c.nameStatement(TqQueryNames.DELETE_PROP);
+			c.getNamedStatement().setString("key", TqDbIdAllocator.NEXT_ID_KEY);
+			c.executeUpdate();
+			c.commit();
+			long secondId = second.nextId();
+			int blockSize = tgroup.getConf().getIdBlockSize();
+			assertTrue("No overlapping blocks", secondId >= firstId[0] + blockSize);
+			assertEquals(blockSize - 1L, second.getAvailable());
+			c.nameStatement(TqQueryNames.GET_PROP);
+			c.getNamedStatement().setString("key", TqDbIdAllocator.NEXT_ID_KEY);
+			c.executeQuery();
+			assertTrue(c.getResultSet().next());
+			assertEquals(secondId + blockSize, Long.parseLong(c.getResultSet().getString("taskq_value")));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail();
+		}
+	}
+
+	@Test
+	public void storeTasksWithIdAllocator() {
+
+		tgroup.getConf().setIdBlockSize(4);
+		TqDbIdAllocator idAllocator = new TqDbIdAllocator(tgroup.getConf(), tdb.getDataSource());
+		tgroup.setIdAllocator(idAllocator);
+		List<TqEntry> entries = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			entries.add(new TqEntry("task " + i));
+		}
+		try (DbConnHik c = tdb.getDbConn()) {
+			TqDbEntry first = tgroup.storeTask(c, "tq", "first task", null);
+			assertEquals("Block of 4 reserved, 1 used", 3L, idAllocator.getAvailable());
+			tgroup.storeTasks(c, "tq", entries);
+			c.commit();
+			assertEquals("New block large enough for remaining 7 tasks", 0L, idAllocator.getAvailable());
+			long previousId = first.getTaskId();
+			for (int i = 0; i < entries.size(); i++) {
+				TqEntry te = entries.get(i);
+				assertTrue("Ascending task IDs", te.getTaskId() > previousId);
+				previousId = te.getTaskId();
+				TqDbEntry dbEntry = tgroup.loadTask(c, te.getTaskId());
+				assertEquals("task " + i, tgroup.getSerializer().bytesToTaskDataRe(dbEntry.getTaskDataBytes()));
+			}
+			c.nameStatement(TqQueryNames.GET_PROP);
+			c.getNamedStatement().setString("key", TqDbIdAllocator.NEXT_ID_KEY);
+			c.executeQuery();
+			assertTrue(c.getResultSet().next());
+			assertEquals(previousId + 1L, Long.parseLong(c.getResultSet().getString("taskq_value")));
+			// other tests use database generated IDs which can overlap with the allocated IDs.
+			tgroup.deleteTask(c, first.getTaskId());
+			for (TqEntry te : entries) {
+				tgroup.deleteTask(c, te.getTaskId());
+			}
+			c.commit();
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail();
+		} finally {
+			tgroup.setIdAllocator(null);
+			tgroup.getConf().setIdBlockSize(1000);
+		}
+	}
+
+	@Test
+	public void acknowledgeTasks() {
+
+		tgroup.getConf().setAckMaxTasks(4);
+		tgroup.getConf().setAckFlushIntervalMs(50L);
+		TqDbAcknowledger acknowledger = new TqDbAcknowledger(tgroup, tdb.getDataSource());
+		List<TqEntry> entries = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			entries.add(new TqEntry("task " + i));
+		}
+		try (DbConnHik c = tdb.getDbConn()) {
+			tgroup.storeTasks(c, "tq", entries);
+			c.commit();
+			acknowledger.start();
+			Set<CompletableFuture<Void>> acks = new HashSet<>();
+			for (TqEntry te : entries) {
+				acks.add(acknowledger.acknowledge(te.getTaskId()));
+			}
+			for (CompletableFuture<Void> ack : acks) {
+				ack.get(1L, TimeUnit.SECONDS);
+			}
+			assertTrue("Task IDs grouped in flushes", acks.size() < entries.size());
+			assertEquals(0, acknowledger.getPendingCount());
+			for (TqEntry te : entries) {
+				assertNull("Task record deleted", tgroup.loadTask(c, te.getTaskId()));
+			}
+			c.commit();
+			acknowledger.stop();
+			try {
+				acknowledger.acknowledge(entries.get(0).getTaskId());
+				fail("Acknowledger is stopped.");
+			} catch (IllegalStateException expected) {}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail();
+		} finally {
+			acknowledger.stop();
+			tgroup.getConf().setAckMaxTasks(500);
+			tgroup.getConf().setAckFlushIntervalMs(10L);
+		}
+	}
+
+	@Test
+	public void acknowledgeFlushedOnStop() {
+
+		// no flush before stop
+		tgroup.getConf().setAckFlushIntervalMs(60_000L);
+		TqDbAcknowledger acknowledger = new TqDbAcknowledger(tgroup, tdb.getDataSource());
+		List<TqEntry> entries = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			entries.add(new TqEntry("task " + i));
+		}
+		try (DbConnHik c = tdb.getDbConn()) {
+			tgroup.storeTasks(c, "tq", entries);
+			c.commit();
+			acknowledger.start();
+			CompletableFuture<Void> ack = null;
+			for (TqEntry te : entries) {
+				ack = acknowledger.acknowledge(te.getTaskId());
+			}
+			assertEquals(entries.size(), acknowledger.getPendingCount());
+			assertFalse(ack.isDone());
+			acknowledger.stop();
+			assertFalse(acknowledger.isRunning());
+			ack.get(1L, TimeUnit.SECONDS);
+			assertEquals(0, acknowledger.getPendingCount());
+			for (TqEntry te : entries) {
+				assertNull("Task record deleted on stop", tgroup.loadTask(c, te.getTaskId()));
+			}
+			c.commit();
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail();
+		} finally {
+			acknowledger.stop();
+			tgroup.getConf().setAckFlushIntervalMs(10L);
+		}
+	}
+
 }
@@ -1,12 +1,19 @@
 package com.github.fwi.taskq2.db.poll;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import nl.fw.util.jdbc.DbConn;
 import nl.fw.util.jdbc.DbConnNamedStatement;
 import nl.fw.util.jdbc.DbConnUtil;
 import nl.fw.util.jdbc.hikari.DbConnHik;
@@ -17,9 +24,13 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.fwi.taskq2.ITaskHandler;
+import com.github.fwi.taskq2.SingletonTaskHandlerFactory;
+import com.github.fwi.taskq2.TqFifo;
 import com.github.fwi.taskq2.db.DbTestTask;
 import com.github.fwi.taskq2.db.TestDb;
 import com.github.fwi.taskq2.db.TqDbConf;
+import com.github.fwi.taskq2.db.TqDbGroup;
 import com.github.fwi.taskq2.db.TqDbServer;
 
 public class TestDbPoll {
@@ -139,6 +150,200 @@ public class TestDbPoll {
 		}
 	}
 
+	@Test
+	public void claimReadyPoll() {
+		
+		log.info("### Test claim-ready");
+		TqDbTest q1 = new TqDbTest("q1", DbTestTaskHandler.getFactory()); 
+		TqDbTest q2 = new TqDbTest("q2", DbTestTaskHandler.getFactory()); 
+		try {
+			tgroup.addQueue(q1);
+			tgroup.addQueue(q2);
+			getConf().setExpireTimeS(60);
+			getConf().setClaimMode(true);
+			tgroup.start();
+			tgroup.setPoller(poller);
+			ClaimReady cr = new ClaimReady(tgroup, poller.getDao());
+			// stored as ready task, not queued in memory 
+			storeTask(new DbTestTask());
+			cr.pollDb();
+			DbTestTask task = q1.getLastQueued();
+			if (!task.updated.await(1L, TimeUnit.SECONDS)) {
+				throw new RuntimeException("Task 1 was not updated.");
+			}
+			if (!task.deleted.await(1L, TimeUnit.SECONDS)) {
+				throw new RuntimeException("Task 1 was not deleted.");
+			}
+		} catch (Exception e) {
+			log.error("Claim ready test failed.", e);
+			fail();
+		} finally {
+			getConf().setClaimMode(false);
+			tgroup.setPoller(null);
+			DbConnUtil.closeSilent(tgroup);
+			tgroup.removeQueue("q1");
+			tgroup.removeQueue("q2");
+		}
+	}
+
+	@Test
+	public void claimReadyTwoServers() {
+		
+		log.info("### Test claim-ready with two servers");
+		final int tasks = 50;
+		final ConcurrentHashMap<Long, AtomicInteger> executed = new ConcurrentHashMap<>();
+		final CountDownLatch allExecuted = new CountDownLatch(tasks);
+		TqDbGroup[] groups = new TqDbGroup[2];
+		Thread[] claimers = new Thread[groups.length];
+		final AtomicBoolean stop = new AtomicBoolean();
+		try {
+			for (int i = 0; i < groups.length; i++) {
+				TqDbConf conf = new TqDbConf();
+				conf.setNamedQueries(getConf().getNamedQueries());
+				conf.setUseHostNameAsServerName(false);
+				conf.setServerPort(9400 + i);
+				conf.setClaimMode(true);
+				conf.setExpireTimeS(60);
+				// claim in small rounds so that both servers get a chance to claim tasks
+				conf.setDbReloadBatchSize(5);
+				TqDbServer dbServer = new TqDbServer(conf);
+				try (DbConnNamedStatement<?> c = poller.getDao().createDbc()) {
+					dbServer.registerServer(c);
+				}
+				final TqDbGroup group = new TqDbGroup(dbServer);
+				group.addQueue(new TqFifo("cq", new SingletonTaskHandlerFactory(new ITaskHandler() {
+					@Override
+					public void onTask(Object tdata, String qname, String qosKey, long taskId) {
+						
+						executed.computeIfAbsent(taskId, k -> new AtomicInteger()).incrementAndGet();
+						@SuppressWarnings("resource")
+						DbConnNamedStatement<?> c = new DbConn(tdb.getDataSource()).setNamedQueries(getConf().getNamedQueries());
+						try {
+							group.deleteTask(c, taskId);
+							c.commitAndClose();
+						} catch (Exception e) {
+							c.rollbackAndClose(e);
+						}
+						allExecuted.countDown();
+					}
+				})));
+				group.start();
+				groups[i] = group;
+			}
+			try (DbConnNamedStatement<?> c = poller.getDao().createDbc()) {
+				for (int i = 0; i < tasks; i++) {
+					groups[0].storeTask(c, "cq", "claim task " + i, null);
+				}
+				c.commitAndClose();
+			}
+			for (int i = 0; i < groups.length; i++) {
+				final ClaimReady cr = new ClaimReady(groups[i], new TqDbPollDao(groups[i], tdb.getDataSource()));
+				claimers[i] = new Thread(() -> {
+					while (!stop.get()) {
+						try {
+							cr.pollDb();
+							Thread.sleep(1L);
+						} catch (Exception e) {
+							log.error("Claim ready poll failed.", e);
+							return;
+						}
+					}
+				});
+				claimers[i].start();
+			}
+			assertTrue("All tasks executed.", allExecuted.await(10L, TimeUnit.SECONDS));
+			stop.set(true);
+			for (Thread t : claimers) {
+				t.join(5000L);
+			}
+			assertEquals(tasks, executed.size());
+			for (Map.Entry<Long, AtomicInteger> entry : executed.entrySet()) {
+				assertEquals("Task " + entry.getKey() + " executed once.", 1, entry.getValue().get());
+			}
+		} catch (Exception e) {
+			log.error("Claim ready with two servers test failed.", e);
+			fail();
+		} finally {
+			stop.set(true);
+			for (TqDbGroup group : groups) {
+				DbConnUtil.closeSilent(group);
+			}
+		}
+	}
+
+	@Test
+	public void claimedLeaseRenewed() {
+		
+		log.info("### Test claim-ready lease renewal");
+		final AtomicInteger[] executed = new AtomicInteger[] { new AtomicInteger(), new AtomicInteger() };
+		TqDbGroup[] groups = new TqDbGroup[2];
+		ClaimReady[] claimers = new ClaimReady[groups.length];
+		try {
+			for (int i = 0; i < groups.length; i++) {
+				TqDbConf conf = new TqDbConf();
+				conf.setNamedQueries(getConf().getNamedQueries());
+				conf.setUseHostNameAsServerName(false);
+				conf.setServerPort(9402 + i);
+				conf.setClaimMode(true);
+				conf.setClaimIntervalMs(100L);
+				// a lease that expires while the task is still queued
+				conf.setExpireTimeS(1);
+				TqDbServer dbServer = new TqDbServer(conf);
+				try (DbConnNamedStatement<?> c = poller.getDao().createDbc()) {
+					dbServer.registerServer(c);
+				}
+				final TqDbGroup group = new TqDbGroup(dbServer);
+				final AtomicInteger serverExecuted = executed[i];
+				group.addQueue(new TqFifo("lq", new SingletonTaskHandlerFactory(new ITaskHandler() {
+					@Override
+					public void onTask(Object tdata, String qname, String qosKey, long taskId) {
+						
+						serverExecuted.incrementAndGet();
+						@SuppressWarnings("resource")
+						DbConnNamedStatement<?> c = new DbConn(tdb.getDataSource()).setNamedQueries(getConf().getNamedQueries());
+						try {
+							group.deleteTask(c, taskId);
+							c.commitAndClose();
+						} catch (Exception e) {
+							c.rollbackAndClose(e);
+						}
+					}
+				})));
+				if (i > 0) {
+					group.start();
+				}
+				groups[i] = group;
+				claimers[i] = new ClaimReady(group, new TqDbPollDao(group, tdb.getDataSource()));
+			}
+			// the first server is not started: it claims the task but does not execute it
+			try (DbConnNamedStatement<?> c = poller.getDao().createDbc()) {
+				groups[0].storeTask(c, "lq", "lease task", null);
+				c.commitAndClose();
+			}
+			claimers[0].pollDb();
+			assertEquals("Task claimed and queued.", 1, groups[0].getQueue("lq").getSize());
+			final long end = System.currentTimeMillis() + 3000L;
+			while (System.currentTimeMillis() < end) {
+				Thread.sleep(100L);
+				// the other server polls first, an expired lease would be claimed by the other server
+				claimers[1].pollDb();
+				claimers[0].pollDb();
+			}
+			assertEquals("Lease renewed, task not claimed by the other server.", 0, groups[1].getQueue("lq").getSize() + executed[1].get());
+			groups[0].start();
+			assertTrue("Task executed.", groups[0].awaitAllTasksDone(1L, TimeUnit.SECONDS));
+			assertEquals(1, executed[0].get());
+			assertEquals(0, executed[1].get());
+		} catch (Exception e) {
+			log.error("Claim ready lease renewal test failed.", e);
+			fail();
+		} finally {
+			for (TqDbGroup group : groups) {
+				DbConnUtil.closeSilent(group);
+			}
+		}
+	}
+
 	private void storeTask(DbTestTask t) throws SQLException {
 		
 		try (DbConnNamedStatement<?> c = poller.getDao().createDbc()) {